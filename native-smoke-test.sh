@@ -0,0 +1,64 @@
+#!/bin/sh
+# Smoke-tests the native executable of a sample against a local ARM stub and compares its startup time
+# and peak memory with the JVM build, e.g.
+#   ./native-smoke-test.sh storage 5
+# Build both first: "mvn -Pnative package" with a GraalVM JDK. The AppCDS archive of "mvn -Pappcds verify" is
+# measured too when it exists. Needs Linux for /proc and GNU date for millisecond timestamps.
+
+if [ $# -lt 1 ]; then
+  echo "usage: $0 <resourcegroup|secret|storage|vm> [runs]" >&2
+  exit 2
+fi
+runs=${2:-5}
+
+cd "$(dirname "$0")/$1" || exit 1
+target=$(pwd -P)/target
+jar=$(ls "$target"/*-jar-with-dependencies.jar 2>/dev/null | head -n 1)
+artifact=$(sed -n 's|^  <artifactId>\(.*\)</artifactId>|\1|p' pom.xml | head -n 1)
+native=$target/$artifact
+archive=${jar%-jar-with-dependencies.jar}.jsa
+java=${JAVA_HOME:+$JAVA_HOME/bin/}java
+if [ ! -x "$native" ] || [ -z "$jar" ]; then
+  echo "need $native and the jar-with-dependencies, run mvn -Pnative package first" >&2
+  exit 1
+fi
+
+results=$(mktemp -d)
+trap 'rm -rf "$results"' EXIT
+
+# run <name> <command...>: runs the startup training once and appends "wall first rss" to $results/<name>
+run() {
+  name=$1
+  shift
+  start=$(date +%s%3N)
+  if ! "$@" --startup-training > "$results/out" 2>&1 || ! grep -q '^Served ' "$results/out"; then
+    echo "$name failed:" >&2
+    cat "$results/out" >&2
+    exit 1
+  fi
+  end=$(date +%s%3N)
+  first=$(sed -n 's/^Time to first request: \([0-9]*\) ms/\1/p' "$results/out")
+  rss=$(sed -n 's/^Peak RSS: \([0-9]*\) MB/\1/p' "$results/out")
+  echo "$((end - start)) ${first:-0} ${rss:-0}" >> "$results/$name"
+}
+
+median() {
+  cut -d ' ' -f "$2" "$results/$1" | sort -n | awk '{ v[NR] = $1 } END { print v[int((NR + 1) / 2)] }'
+}
+
+variants="native jvm"
+[ -f "$archive" ] && variants="$variants appcds"
+i=0
+while [ $i -lt "$runs" ]; do
+  # Interleave the variants, so that a slower or faster phase of the machine affects all of them.
+  run native "$native"
+  run jvm "$java" -jar "$jar"
+  [ -f "$archive" ] && run appcds "$java" -XX:SharedArchiveFile="$archive" -Xshare:auto -jar "$jar"
+  i=$((i + 1))
+done
+
+printf '%-8s %14s %18s %12s\n' "Median" "Wall ms" "First request ms" "Peak RSS MB"
+for variant in $variants; do
+  printf '%-8s %14s %18s %12s\n' "$variant" "$(median $variant 1)" "$(median $variant 2)" "$(median $variant 3)"
+done
+echo "Smoke test passed: $runs runs of each variant"
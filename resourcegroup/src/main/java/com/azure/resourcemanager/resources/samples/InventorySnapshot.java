@@ -0,0 +1,227 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.resources.samples;
+
+import com.azure.core.util.logging.ClientLogger;
+import com.azure.core.util.serializer.JacksonAdapter;
+import com.azure.core.util.serializer.SerializerAdapter;
+import com.azure.core.util.serializer.SerializerEncoding;
+import com.azure.resourcemanager.AzureResourceManager;
+import com.azure.resourcemanager.resources.models.GenericResource;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The inventory of a subscription as last seen: the ID, type and a content hash of every resource
+ * group and resource, persisted to a local file between runs.
+ * <p>
+ * Comparing a fresh snapshot with the previous one gives the added, removed and changed resources,
+ * and {@link #fetchChanged(AzureResourceManager, Diff, int)} re-reads the details of only those,
+ * so repeated audits fetch detail in proportion to churn. The content hash covers the whole listing
+ * entry of a resource; the generic resource listing carries no etag.
+ */
+public final class InventorySnapshot {
+    private static final ClientLogger LOGGER = new ClientLogger(InventorySnapshot.class);
+    private static final SerializerAdapter SERIALIZER = JacksonAdapter.createDefaultSerializerAdapter();
+    private static final String RESOURCE_GROUP_TYPE = "Microsoft.Resources/resourceGroups";
+
+    private final Map<String, Entry> entries;
+
+    private InventorySnapshot(Map<String, Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Lists the resource groups and resources of the subscription.
+     *
+     * @param azureResourceManager instance of the azure client
+     * @return the current snapshot
+     */
+    public static InventorySnapshot crawl(AzureResourceManager azureResourceManager) {
+        final Map<String, Entry> entries = new ConcurrentHashMap<>();
+        Flux.merge(
+                azureResourceManager.resourceGroups().listAsync()
+                        .doOnNext(resourceGroup -> entries.put(resourceGroup.id().toLowerCase(),
+                                new Entry(RESOURCE_GROUP_TYPE, hash(resourceGroup.innerModel())))),
+                azureResourceManager.genericResources().listAsync()
+                        .doOnNext(resource -> entries.put(resource.id().toLowerCase(),
+                                new Entry(resource.type(), hash(resource.innerModel())))))
+                .blockLast();
+        return new InventorySnapshot(new TreeMap<>(entries));
+    }
+
+    /**
+     * Loads a snapshot saved by an earlier run.
+     *
+     * @param file the snapshot file
+     * @return the saved snapshot, or an empty one if the file does not exist
+     * @throws IOException if the file cannot be read
+     */
+    public static InventorySnapshot load(Path file) throws IOException {
+        final Map<String, Entry> entries = new TreeMap<>();
+        if (Files.exists(file)) {
+            try (InputStream stream = Files.newInputStream(file)) {
+                ObjectNode json = SERIALIZER.deserialize(stream, ObjectNode.class, SerializerEncoding.JSON);
+                Iterator<Map.Entry<String, JsonNode>> fields = json.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    entries.put(field.getKey(),
+                            new Entry(field.getValue().path("type").asText(), field.getValue().path("hash").asText()));
+                }
+            }
+        }
+        return new InventorySnapshot(entries);
+    }
+
+    /**
+     * Saves the snapshot, replacing the file only once it is completely written.
+     *
+     * @param file the snapshot file
+     * @throws IOException if the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        Map<String, Map<String, String>> json = new TreeMap<>();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            Map<String, String> value = new TreeMap<>();
+            value.put("type", entry.getValue().type);
+            value.put("hash", entry.getValue().hash);
+            json.put(entry.getKey(), value);
+        }
+        Path absolute = file.toAbsolutePath();
+        Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        Files.write(temp, SERIALIZER.serialize(json, SerializerEncoding.JSON).getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Compares this snapshot with an earlier one.
+     *
+     * @param previous the earlier snapshot
+     * @return the resources added, removed and changed since the earlier snapshot
+     */
+    public Diff diff(InventorySnapshot previous) {
+        Diff diff = new Diff();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            Entry before = previous.entries.get(entry.getKey());
+            if (before == null) {
+                diff.added.add(entry.getKey());
+            } else if (!before.hash.equals(entry.getValue().hash)) {
+                diff.changed.add(entry.getKey());
+            }
+        }
+        for (String id : previous.entries.keySet()) {
+            if (!entries.containsKey(id)) {
+                diff.removed.add(id);
+            }
+        }
+        return diff;
+    }
+
+    /**
+     * Fetches the details of the added and changed resources. Resource groups are skipped, as their
+     * listing entry already holds all of their details.
+     *
+     * @param azureResourceManager instance of the azure client
+     * @param diff the changes to fetch
+     * @param concurrency the maximum number of reads in flight
+     * @return the fetched resources
+     */
+    public static List<GenericResource> fetchChanged(AzureResourceManager azureResourceManager, Diff diff, int concurrency) {
+        List<String> ids = new ArrayList<>(diff.added);
+        ids.addAll(diff.changed);
+        List<GenericResource> resources = Flux.fromIterable(ids)
+                .filter(id -> id.contains("/providers/"))
+                .flatMap(id -> azureResourceManager.genericResources().getByIdAsync(id)
+                        .onErrorResume(e -> {
+                            LOGGER.warning("failed to fetch {}", id, e);
+                            return Mono.empty();
+                        }), concurrency)
+                .collectList()
+                .block();
+        return resources == null ? Collections.emptyList() : resources;
+    }
+
+    /** @return the number of resource groups and resources in the snapshot */
+    public int size() {
+        return entries.size();
+    }
+
+    private static String hash(Object innerModel) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(SERIALIZER.serialize(innerModel, SerializerEncoding.JSON).getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw LOGGER.logExceptionAsError(new IllegalStateException("failed to hash inventory entry", e));
+        }
+    }
+
+    private static final class Entry {
+        private final String type;
+        private final String hash;
+
+        private Entry(String type, String hash) {
+            this.type = type;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * Changes between two snapshots, as lower-cased resource IDs.
+     */
+    public static final class Diff {
+        private final List<String> added = new ArrayList<>();
+        private final List<String> removed = new ArrayList<>();
+        private final List<String> changed = new ArrayList<>();
+
+        private Diff() {
+        }
+
+        /** @return the IDs of the resources that are new */
+        public List<String> added() {
+            return Collections.unmodifiableList(added);
+        }
+
+        /** @return the IDs of the resources that are gone */
+        public List<String> removed() {
+            return Collections.unmodifiableList(removed);
+        }
+
+        /** @return the IDs of the resources whose listing entry changed */
+        public List<String> changed() {
+            return Collections.unmodifiableList(changed);
+        }
+
+        @Override
+        public String toString() {
+            return "Inventory diff: " + added.size() + " added, " + removed.size() + " removed, "
+                    + changed.size() + " changed";
+        }
+    }
+}
@@ -7,26 +7,24 @@
 package com.azure.resourcemanager.resources.samples;
 
 import com.azure.core.credential.TokenCredential;
-import com.azure.core.http.HttpClient;
-import com.azure.core.http.HttpMethod;
-import com.azure.core.http.HttpRequest;
-import com.azure.core.http.HttpResponse;
 import com.azure.core.http.policy.HttpLogDetailLevel;
-import com.azure.core.management.AzureEnvironment;
 import com.azure.core.util.serializer.JacksonAdapter;
 import com.azure.core.util.serializer.SerializerEncoding;
 import com.azure.identity.ClientSecretCredentialBuilder;
 import com.azure.resourcemanager.AzureResourceManager;
 import com.azure.resourcemanager.resources.models.ResourceGroup;
 import com.azure.core.management.profile.AzureProfile;
+import com.azure.resourcemanager.samples.MultiStampRunner;
+import com.azure.resourcemanager.samples.SampleConfig;
+import com.azure.resourcemanager.samples.SampleDaemon;
+import com.azure.resourcemanager.samples.StartupTraining;
 import com.azure.resourcemanager.samples.Utils;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import java.io.FileInputStream;
-import java.io.IOException;
-import java.util.HashMap;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Azure Stack Resource sample for managing resource groups -
@@ -99,6 +97,18 @@ public final class ManageResourceGroup {
             }
 
 
+            //=============================================================
+            // Count resources per type and resource group.
+
+            System.out.println("Counting resources");
+
+            ResourceCounter.Counts counts = new ResourceCounter(azureResourceManager, 8, Duration.ofMinutes(1)).counts();
+            System.out.println(counts);
+            for (Map.Entry<String, Long> count : counts.byType().entrySet()) {
+                System.out.println("\t" + count.getKey() + ": " + count.getValue());
+            }
+
+
             //=============================================================
             // Delete a resource group.
 
@@ -119,54 +129,50 @@ public final class ManageResourceGroup {
         }
     }
 
-    private static AzureEnvironment getAzureEnvironmentFromArmEndpoint(String armEndpoint) {
-        // Create HTTP client and request
-        HttpClient httpClient = HttpClient.createDefault();
-
-        HttpRequest request = new HttpRequest(HttpMethod.GET,
-                String.format("%s/metadata/endpoints?api-version=2019-10-01", armEndpoint))
-                .setHeader("accept", "application/json");
-
-        // Execute the request and read the response
-        HttpResponse response = httpClient.send(request).block();
-        if (response.getStatusCode() != 200) {
-            throw new RuntimeException("Failed : HTTP error code : " + response.getStatusCode());
-        }
-        String body = response.getBodyAsString().block();
-        try {
-            ArrayNode metadataArray = JacksonAdapter.createDefaultSerializerAdapter()
-                    .deserialize(body, ArrayNode.class, SerializerEncoding.JSON);
-
-            if (metadataArray == null || metadataArray.isEmpty()) {
-                throw new RuntimeException("Failed to find metadata : " + body);
-            }
-
-            JsonNode metadata = metadataArray.iterator().next();
-            AzureEnvironment azureEnvironment = new AzureEnvironment(new HashMap<String, String>() {
-                {
-                    put("managementEndpointUrl", metadata.at("/authentication/audiences/0").asText());
-                    put("resourceManagerEndpointUrl", armEndpoint);
-                    put("galleryEndpointUrl", metadata.at("/gallery").asText());
-                    put("activeDirectoryEndpointUrl", metadata.at("/authentication/loginEndpoint").asText());
-                    put("activeDirectoryResourceId", metadata.at("/authentication/audiences/0").asText());
-                    put("activeDirectoryGraphResourceId", metadata.at("/graph").asText());
-                    put("storageEndpointSuffix", "." + metadata.at("/suffixes/storage").asText());
-                    put("keyVaultDnsSuffix", "." + metadata.at("/suffixes/keyVaultDns").asText());
+    /**
+     * The workflows served in daemon mode.
+     * @return the workflows by name
+     */
+    static Map<String, SampleDaemon.Workflow> daemonWorkflows() {
+        Map<String, SampleDaemon.Workflow> workflows = new LinkedHashMap<>();
+        // {"prefix": "rg"} lists the resource groups whose name starts with the prefix.
+        workflows.put("list-resource-groups", context -> {
+            String prefix = context.parameter("prefix", "");
+            int count = 0;
+            for (ResourceGroup resourceGroup : context.azure().resourceGroups().list()) {
+                if (resourceGroup.name().startsWith(prefix)) {
+                    context.progress(resourceGroup.name() + " " + resourceGroup.regionName() + " " + resourceGroup.provisioningState());
+                    count++;
                 }
-            });
-            return azureEnvironment;
-        } catch (IOException ioe) {
-            ioe.printStackTrace();
-            throw new RuntimeException(ioe);
-        }
+            }
+            context.progress(count + " resource groups");
+        });
+        return workflows;
     }
 
     /**
      * Main entry point.
-     * @param args the parameters
+     * @param args the parameters; "--stamps [config file]" runs the sample against every stamp of the config file,
+     *             "--daemon [port]" serves the workflows of {@link #daemonWorkflows()} over a local HTTP API,
+     *             "--startup-training" runs the sample against a local ARM stub instead of a stamp
      */
     public static void main(String[] args) {
         try {
+            if (StartupTraining.isRequested(args)) {
+                // Run this sample, e.g. as a native image, against a local ARM stub instead of a stamp
+                StartupTraining.run((azure, config, credential) -> runSample(azure, config.location()));
+                return;
+            }
+            if (SampleDaemon.isRequested(args)) {
+                // Keep the clients warm and run workflows on request until the process is stopped
+                SampleDaemon.run(args, "../azureSecretSpConfig.json", daemonWorkflows());
+                return;
+            }
+            if (MultiStampRunner.isRequested(args)) {
+                // Run against every stamp of the multi-stamp config at once
+                MultiStampRunner.run(args, stamp -> runSample(stamp.azure(), stamp.location()));
+                return;
+            }
 
             //=============================================================
             // Authenticate
@@ -184,7 +190,7 @@ public final class ManageResourceGroup {
             final String location = settings.get("location").asText();
 
             // Register Azure Stack cloud environment
-            final AzureProfile profile = new AzureProfile(getAzureEnvironmentFromArmEndpoint(armEndpoint));
+            final AzureProfile profile = new AzureProfile(SampleConfig.getAzureEnvironmentFromArmEndpoint(armEndpoint));
             final TokenCredential credential = new ClientSecretCredentialBuilder()
                     .tenantId(tenantId)
                     .clientId(clientId)
@@ -0,0 +1,244 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.resources.samples;
+
+import com.azure.core.exception.HttpResponseException;
+import com.azure.core.http.HttpMethod;
+import com.azure.core.http.HttpPipeline;
+import com.azure.core.http.HttpRequest;
+import com.azure.resourcemanager.AzureResourceManager;
+import com.azure.resourcemanager.resources.models.ResourceGroup;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Counts the resources of a subscription per resource type and per resource group.
+ * <p>
+ * The resource groups are counted concurrently. Each page of a resource group listing is read with a
+ * streaming JSON parser that only looks at the {@code type} of every resource and at the next link,
+ * so no model objects are created. A resource group that is deleted while it is counted is left out.
+ * Counts are cached for a short time, and concurrent callers share one count while it runs.
+ */
+public final class ResourceCounter {
+    private static final String API_VERSION = "2019-10-01";
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final AzureResourceManager azureResourceManager;
+    private final HttpPipeline httpPipeline;
+    private final String endpoint;
+    private final int concurrency;
+    private final Duration ttl;
+    private volatile Mono<Counts> cached;
+
+    /**
+     * @param azureResourceManager instance of the azure client
+     * @param concurrency the maximum number of resource groups counted at the same time
+     * @param ttl the time for which counts are reused
+     */
+    public ResourceCounter(AzureResourceManager azureResourceManager, int concurrency, Duration ttl) {
+        this.azureResourceManager = azureResourceManager;
+        // ResourceManager keeps its pipeline in its service client; its own httpPipeline() is null
+        this.httpPipeline = azureResourceManager.genericResources().manager().serviceClient().getHttpPipeline();
+        String resourceManagerEndpoint = azureResourceManager.genericResources().manager().environment().getResourceManagerEndpoint();
+        this.endpoint = resourceManagerEndpoint.endsWith("/")
+                ? resourceManagerEndpoint.substring(0, resourceManagerEndpoint.length() - 1)
+                : resourceManagerEndpoint;
+        this.concurrency = concurrency;
+        this.ttl = ttl;
+        invalidate();
+    }
+
+    /**
+     * @return the counts, reused if counted within the time to live
+     */
+    public Counts counts() {
+        return countsAsync().block();
+    }
+
+    /**
+     * @return the counts, reused if counted within the time to live
+     */
+    public Mono<Counts> countsAsync() {
+        return cached;
+    }
+
+    /**
+     * Drops the cached counts, e.g. after creating or deleting resources.
+     */
+    public void invalidate() {
+        cached = Mono.defer(this::count).cache(counts -> ttl, error -> Duration.ZERO, () -> Duration.ZERO);
+    }
+
+    private Mono<Counts> count() {
+        final long start = System.nanoTime();
+        return azureResourceManager.resourceGroups().listAsync()
+                .map(ResourceGroup::name)
+                .flatMap(resourceGroup -> countResourceGroup(resourceGroup)
+                        .map(byType -> new AbstractMap.SimpleImmutableEntry<>(resourceGroup, byType))
+                        .onErrorResume(ResourceCounter::isNotFound, e -> Mono.empty()),
+                        concurrency)
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue, () -> new TreeMap<>(String.CASE_INSENSITIVE_ORDER))
+                .map(byResourceGroupAndType -> new Counts(byResourceGroupAndType, Duration.ofNanos(System.nanoTime() - start)));
+    }
+
+    private Mono<Map<String, Long>> countResourceGroup(String resourceGroup) {
+        final Map<String, Long> byType = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        String firstPage = endpoint + "/subscriptions/" + azureResourceManager.subscriptionId()
+                + "/resourceGroups/" + encodePathSegment(resourceGroup) + "/resources?api-version=" + API_VERSION;
+        return countPage(firstPage, byType)
+                .expand(nextLink -> countPage(nextLink, byType))
+                .then(Mono.fromCallable(() -> byType));
+    }
+
+    private static boolean isNotFound(Throwable e) {
+        return e instanceof HttpResponseException && ((HttpResponseException) e).getResponse().getStatusCode() == 404;
+    }
+
+    /**
+     * Resource group names may contain parentheses and non-ASCII letters, which must be percent-encoded
+     * in the request path.
+     */
+    private static String encodePathSegment(String segment) {
+        try {
+            // URLEncoder encodes for forms, where a space is a '+'; in a path it is %20
+            return URLEncoder.encode(segment, "UTF-8").replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Counts the resources of one page by type.
+     *
+     * @return the next link, or empty on the last page
+     */
+    private Mono<String> countPage(String url, Map<String, Long> byType) {
+        return httpPipeline.send(new HttpRequest(HttpMethod.GET, url))
+                .flatMap(response -> {
+                    if (response.getStatusCode() != 200) {
+                        return response.getBodyAsString()
+                                .defaultIfEmpty("")
+                                .flatMap(body -> Mono.<String>error(new HttpResponseException(
+                                        "failed to list " + url + ": " + body, response)));
+                    }
+                    return response.getBodyAsInputStream().flatMap(stream -> Mono.justOrEmpty(parsePage(stream, byType)));
+                });
+    }
+
+    private static String parsePage(InputStream stream, Map<String, Long> byType) {
+        String nextLink = null;
+        try (JsonParser parser = JSON_FACTORY.createParser(stream)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("expected a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("value".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        countResource(parser, byType);
+                    }
+                } else if ("nextLink".equals(field) && value == JsonToken.VALUE_STRING) {
+                    nextLink = parser.getText();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return nextLink == null || nextLink.isEmpty() ? null : nextLink;
+    }
+
+    private static void countResource(JsonParser parser, Map<String, Long> byType) throws IOException {
+        String type = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("type".equals(field)) {
+                type = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        byType.merge(type == null ? "unknown" : type, 1L, Long::sum);
+    }
+
+    /**
+     * Resource counts of a subscription.
+     */
+    public static final class Counts {
+        private final Map<String, Map<String, Long>> byResourceGroupAndType;
+        private final Duration elapsed;
+
+        private Counts(Map<String, Map<String, Long>> byResourceGroupAndType, Duration elapsed) {
+            this.byResourceGroupAndType = byResourceGroupAndType;
+            this.elapsed = elapsed;
+        }
+
+        /** @return the total number of resources */
+        public long total() {
+            long total = 0;
+            for (Map<String, Long> byType : byResourceGroupAndType.values()) {
+                for (long count : byType.values()) {
+                    total += count;
+                }
+            }
+            return total;
+        }
+
+        /** @return the number of resources per resource type */
+        public Map<String, Long> byType() {
+            Map<String, Long> byType = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (Map<String, Long> counts : byResourceGroupAndType.values()) {
+                counts.forEach((type, count) -> byType.merge(type, count, Long::sum));
+            }
+            return byType;
+        }
+
+        /** @return the number of resources per resource group */
+        public Map<String, Long> byResourceGroup() {
+            Map<String, Long> byResourceGroup = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            byResourceGroupAndType.forEach((resourceGroup, byType) ->
+                    byResourceGroup.put(resourceGroup, byType.values().stream().mapToLong(Long::longValue).sum()));
+            return byResourceGroup;
+        }
+
+        /**
+         * @param resourceGroup the resource group name
+         * @return the number of resources per resource type in the resource group
+         */
+        public Map<String, Long> byType(String resourceGroup) {
+            Map<String, Long> byType = byResourceGroupAndType.get(resourceGroup);
+            return byType == null ? Collections.emptyMap() : Collections.unmodifiableMap(byType);
+        }
+
+        /** @return the time the count took */
+        public Duration elapsed() {
+            return elapsed;
+        }
+
+        @Override
+        public String toString() {
+            return total() + " resources in " + byResourceGroupAndType.size() + " resource groups, counted in "
+                    + elapsed.toMillis() + " ms";
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.resources.samples;
+
+import com.azure.resourcemanager.AzureResourceManager;
+import reactor.core.publisher.Flux;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory inverted index from tags to the IDs of resource groups and resources.
+ * <p>
+ * The index is filled from a streaming crawl of the subscription and kept fresh with
+ * {@link #put(String, Map)} and {@link #remove(String)} as resources change, or with another
+ * {@link #crawl(AzureResourceManager)} that drops the IDs no longer listed. Updates are serialized,
+ * while lookups by tag key or by key and value are lock-free hash lookups, and {@link Query} combines
+ * them with AND and OR. IDs are returned lower-cased, as resource IDs are case insensitive. Tag keys
+ * are case insensitive too, as they are in Azure Resource Manager, while tag values are not.
+ */
+public final class TagIndex {
+    private final Map<String, Map<String, Set<String>>> index = new ConcurrentHashMap<>();
+    // The IDs with any value of a tag key, kept alongside the per-value sets so that a lookup by key
+    // does not merge them.
+    private final Map<String, Set<String>> idsByTagKey = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, String>> tagsById = new ConcurrentHashMap<>();
+
+    /**
+     * Lists every resource group and resource of the subscription and indexes their tags.
+     * IDs indexed before that are no longer listed are removed.
+     *
+     * @param azureResourceManager instance of the azure client
+     * @return this index
+     */
+    public TagIndex crawl(AzureResourceManager azureResourceManager) {
+        final Set<String> seen = ConcurrentHashMap.newKeySet();
+        Flux.merge(
+                azureResourceManager.resourceGroups().listAsync()
+                        .doOnNext(resourceGroup -> {
+                            seen.add(key(resourceGroup.id()));
+                            put(resourceGroup.id(), resourceGroup.tags());
+                        }),
+                azureResourceManager.genericResources().listAsync()
+                        .doOnNext(resource -> {
+                            seen.add(key(resource.id()));
+                            put(resource.id(), resource.tags());
+                        }))
+                .blockLast();
+        for (String id : tagsById.keySet()) {
+            if (!seen.contains(id)) {
+                remove(id);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Indexes or re-indexes the tags of a resource group or resource.
+     *
+     * @param id the resource ID
+     * @param tags the current tags, null or empty if it has none
+     */
+    public synchronized void put(String id, Map<String, String> tags) {
+        final String key = key(id);
+        final Map<String, String> current = new HashMap<>();
+        if (tags != null) {
+            for (Map.Entry<String, String> tag : tags.entrySet()) {
+                current.put(tagKey(tag.getKey()), tag.getValue());
+            }
+        }
+        Map<String, String> previous = tagsById.put(key, current);
+        if (previous != null) {
+            for (Map.Entry<String, String> tag : previous.entrySet()) {
+                String value = current.get(tag.getKey());
+                if (value == null) {
+                    unlink(tag.getKey(), tag.getValue(), key);
+                    unlink(tag.getKey(), key);
+                } else if (!value.equals(tag.getValue())) {
+                    unlink(tag.getKey(), tag.getValue(), key);
+                }
+            }
+        }
+        for (Map.Entry<String, String> tag : current.entrySet()) {
+            index.computeIfAbsent(tag.getKey(), k -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(tag.getValue(), v -> ConcurrentHashMap.newKeySet())
+                    .add(key);
+            idsByTagKey.computeIfAbsent(tag.getKey(), k -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+    }
+
+    /**
+     * Removes a deleted resource group or resource from the index.
+     *
+     * @param id the resource ID
+     */
+    public synchronized void remove(String id) {
+        final String key = key(id);
+        Map<String, String> previous = tagsById.remove(key);
+        if (previous != null) {
+            for (Map.Entry<String, String> tag : previous.entrySet()) {
+                unlink(tag.getKey(), tag.getValue(), key);
+                unlink(tag.getKey(), key);
+            }
+        }
+    }
+
+    /**
+     * @param tagKey the tag key, in any case
+     * @return the IDs of everything that has the tag, with any value
+     */
+    public Set<String> withTag(String tagKey) {
+        Set<String> ids = idsByTagKey.get(tagKey(tagKey));
+        return ids == null ? Collections.emptySet() : Collections.unmodifiableSet(ids);
+    }
+
+    /**
+     * @param tagKey the tag key, in any case
+     * @param tagValue the tag value
+     * @return the IDs of everything tagged with the key and value
+     */
+    public Set<String> withTag(String tagKey, String tagValue) {
+        Map<String, Set<String>> values = index.get(tagKey(tagKey));
+        Set<String> ids = values == null ? null : values.get(tagValue);
+        return ids == null ? Collections.emptySet() : Collections.unmodifiableSet(ids);
+    }
+
+    /** @return the number of indexed resource groups and resources */
+    public int size() {
+        return tagsById.size();
+    }
+
+    private void unlink(String tagKey, String tagValue, String key) {
+        Map<String, Set<String>> values = index.get(tagKey);
+        if (values == null) {
+            return;
+        }
+        Set<String> ids = values.get(tagValue);
+        if (ids != null) {
+            ids.remove(key);
+            if (ids.isEmpty()) {
+                values.remove(tagValue, ids);
+            }
+        }
+        if (values.isEmpty()) {
+            index.remove(tagKey, values);
+        }
+    }
+
+    private void unlink(String tagKey, String key) {
+        Set<String> ids = idsByTagKey.get(tagKey);
+        if (ids != null) {
+            ids.remove(key);
+            if (ids.isEmpty()) {
+                idsByTagKey.remove(tagKey, ids);
+            }
+        }
+    }
+
+    private static String key(String id) {
+        return id.toLowerCase();
+    }
+
+    private static String tagKey(String tagKey) {
+        return tagKey.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * A tag query, evaluated against a {@link TagIndex}.
+     */
+    public abstract static class Query {
+        private Query() {
+        }
+
+        /**
+         * @param tagKey the tag key
+         * @return a query matching everything that has the tag
+         */
+        public static Query tag(String tagKey) {
+            return new Query() {
+                @Override
+                public Set<String> evaluate(TagIndex index) {
+                    return index.withTag(tagKey);
+                }
+            };
+        }
+
+        /**
+         * @param tagKey the tag key
+         * @param tagValue the tag value
+         * @return a query matching everything tagged with the key and value
+         */
+        public static Query tag(String tagKey, String tagValue) {
+            return new Query() {
+                @Override
+                public Set<String> evaluate(TagIndex index) {
+                    return index.withTag(tagKey, tagValue);
+                }
+            };
+        }
+
+        /**
+         * @param other another query
+         * @return a query matching what both queries match
+         */
+        public Query and(Query other) {
+            final Query self = this;
+            return new Query() {
+                @Override
+                public Set<String> evaluate(TagIndex index) {
+                    Set<String> left = self.evaluate(index);
+                    Set<String> right = other.evaluate(index);
+                    // Iterate the smaller side.
+                    Set<String> result = new HashSet<>(left.size() <= right.size() ? left : right);
+                    result.retainAll(left.size() <= right.size() ? right : left);
+                    return result;
+                }
+            };
+        }
+
+        /**
+         * @param other another query
+         * @return a query matching what either query matches
+         */
+        public Query or(Query other) {
+            final Query self = this;
+            return new Query() {
+                @Override
+                public Set<String> evaluate(TagIndex index) {
+                    Set<String> result = new HashSet<>(self.evaluate(index));
+                    result.addAll(other.evaluate(index));
+                    return result;
+                }
+            };
+        }
+
+        /**
+         * @param index the index to query
+         * @return the lower-cased IDs matching the query
+         */
+        public abstract Set<String> evaluate(TagIndex index);
+    }
+}
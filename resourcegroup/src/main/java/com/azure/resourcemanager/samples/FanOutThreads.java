@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The threads of {@link FanOut} before Java 21: a bounded pool of platform threads, with the
+ * operations beyond its size waiting in an unbounded queue.
+ * <p>
+ * The multi-release jar replaces this class on Java 21 and later with the version in
+ * {@code src/main/java21}, which runs every operation on its own virtual thread.
+ */
+final class FanOutThreads {
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private FanOutThreads() {
+    }
+
+    /**
+     * A method rather than a constant, so that callers compiled against the other version of this class
+     * do not inline its value.
+     *
+     * @return whether operations run on virtual threads
+     */
+    static boolean virtual() {
+        return false;
+    }
+
+    /**
+     * @param parallelism the maximum number of operations running at the same time
+     * @return an executor for the operations of one fan-out
+     */
+    static ExecutorService newExecutor(int parallelism) {
+        return new ThreadPoolExecutor(parallelism, parallelism, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "fan-out-" + THREAD_COUNT.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+}
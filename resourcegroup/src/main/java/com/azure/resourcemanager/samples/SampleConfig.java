@@ -0,0 +1,253 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import com.azure.core.credential.TokenCredential;
+import com.azure.core.http.HttpClient;
+import com.azure.core.http.HttpMethod;
+import com.azure.core.http.HttpRequest;
+import com.azure.core.http.HttpResponse;
+import com.azure.core.http.policy.HttpLogDetailLevel;
+import com.azure.core.http.policy.HttpPipelinePolicy;
+import com.azure.core.management.AzureEnvironment;
+import com.azure.core.management.profile.AzureProfile;
+import com.azure.core.util.logging.ClientLogger;
+import com.azure.core.util.serializer.JacksonAdapter;
+import com.azure.core.util.serializer.SerializerAdapter;
+import com.azure.core.util.serializer.SerializerEncoding;
+import com.azure.identity.ClientSecretCredentialBuilder;
+import com.azure.resourcemanager.AzureResourceManager;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Service principal and environment settings of one Azure Stack Hub stamp.
+ * <p>
+ * {@link #load(Path)} reads either the single-stamp format of {@code azureSecretSpConfig.json} or a
+ * {@code {"stamps": [...]}} list of the same objects, each with an optional {@code name} and an
+ * optional {@code tuning} object of numeric settings. The service principal, subscription, tenant and
+ * Resource Manager endpoint of every stamp are required.
+ */
+public final class SampleConfig {
+    private static final ClientLogger LOGGER = new ClientLogger(SampleConfig.class);
+    private static final SerializerAdapter SERIALIZER = JacksonAdapter.createDefaultSerializerAdapter();
+
+    private final String name;
+    private final String clientId;
+    private final String clientSecret;
+    private final String objectId;
+    private final String subscriptionId;
+    private final String tenantId;
+    private final String resourceManagerEndpointUrl;
+    private final String location;
+    private final JsonNode tuning;
+
+    private SampleConfig(String name, JsonNode settings) {
+        // A blank name, as in azureStackStampsConfig.json.dist, falls back to the position like a missing one.
+        String configuredName = settings.hasNonNull("name") ? settings.get("name").asText().trim() : "";
+        this.name = configuredName.isEmpty() ? name : configuredName;
+        this.clientId = required(this.name, settings, "clientId");
+        this.clientSecret = required(this.name, settings, "clientSecret");
+        this.objectId = settings.path("objectId").asText();
+        this.subscriptionId = required(this.name, settings, "subscriptionId");
+        this.tenantId = required(this.name, settings, "tenantId");
+        this.resourceManagerEndpointUrl = required(this.name, settings, "resourceManagerEndpointUrl");
+        this.location = settings.path("location").asText();
+        this.tuning = settings.path("tuning");
+    }
+
+    private static String required(String stamp, JsonNode settings, String field) {
+        String value = settings.path(field).asText();
+        if (value.isEmpty()) {
+            throw LOGGER.logExceptionAsError(new IllegalArgumentException(
+                    "stamp '" + stamp + "' has no " + field));
+        }
+        return value;
+    }
+
+    /**
+     * Reads the stamps of a configuration file.
+     *
+     * @param path the configuration file
+     * @return the stamps, in the order of the file
+     * @throws IOException if the file cannot be read or parsed
+     * @throws IllegalArgumentException if a stamp lacks a required setting
+     */
+    public static List<SampleConfig> load(Path path) throws IOException {
+        ObjectNode settings;
+        try (InputStream stream = Files.newInputStream(path)) {
+            settings = SERIALIZER.deserialize(stream, ObjectNode.class, SerializerEncoding.JSON);
+        }
+        if (!settings.has("stamps")) {
+            return Collections.singletonList(new SampleConfig("default", settings));
+        }
+        List<SampleConfig> stamps = new ArrayList<>();
+        for (JsonNode stamp : settings.get("stamps")) {
+            stamps.add(new SampleConfig("stamp" + (stamps.size() + 1), stamp));
+        }
+        return stamps;
+    }
+
+    /** @return the stamp name */
+    public String name() {
+        return name;
+    }
+
+    /** @return the service principal application ID */
+    public String clientId() {
+        return clientId;
+    }
+
+    /** @return the service principal object ID */
+    public String objectId() {
+        return objectId;
+    }
+
+    /** @return the subscription ID */
+    public String subscriptionId() {
+        return subscriptionId;
+    }
+
+    /** @return the tenant ID */
+    public String tenantId() {
+        return tenantId;
+    }
+
+    /** @return the Azure Stack Hub Resource Manager endpoint */
+    public String resourceManagerEndpointUrl() {
+        return resourceManagerEndpointUrl;
+    }
+
+    /** @return the Azure location */
+    public String location() {
+        return location;
+    }
+
+    /**
+     * @param name the name of a setting in the optional {@code tuning} object
+     * @param defaultValue the value if the setting is absent
+     * @return the setting
+     */
+    public int tuning(String name, int defaultValue) {
+        return tuning.path(name).asInt(defaultValue);
+    }
+
+    /**
+     * @param other another configuration
+     * @return true if both target the same endpoint, tenant and subscription
+     */
+    public boolean sameTarget(SampleConfig other) {
+        return other != null
+                && tenantId.equals(other.tenantId)
+                && subscriptionId.equals(other.subscriptionId)
+                && resourceManagerEndpointUrl.equals(other.resourceManagerEndpointUrl);
+    }
+
+    /**
+     * @param other another configuration
+     * @return true if both authenticate with the same service principal and secret
+     */
+    public boolean sameCredential(SampleConfig other) {
+        return other != null
+                && tenantId.equals(other.tenantId)
+                && clientId.equals(other.clientId)
+                && clientSecret.equals(other.clientSecret);
+    }
+
+    /**
+     * Discovers the endpoints of the stamp from its Resource Manager metadata.
+     *
+     * @return the profile of the stamp
+     */
+    public AzureProfile profile() {
+        return new AzureProfile(tenantId, subscriptionId, getAzureEnvironmentFromArmEndpoint(resourceManagerEndpointUrl));
+    }
+
+    /**
+     * @param profile the profile of the stamp
+     * @return the service principal credential
+     */
+    public TokenCredential credential(AzureProfile profile) {
+        return new ClientSecretCredentialBuilder()
+                .tenantId(tenantId)
+                .clientId(clientId)
+                .clientSecret(clientSecret)
+                .authorityHost(profile.getEnvironment().getActiveDirectoryEndpoint())
+                .build();
+    }
+
+    /**
+     * Authenticates against the stamp.
+     *
+     * @param credential the service principal credential
+     * @param profile the profile of the stamp
+     * @param policies additional policies of the HTTP pipeline
+     * @return the azure client
+     */
+    public AzureResourceManager authenticate(TokenCredential credential, AzureProfile profile,
+                                             HttpPipelinePolicy... policies) {
+        AzureResourceManager.Configurable configurable = AzureResourceManager
+                .configure()
+                .withLogLevel(HttpLogDetailLevel.BASIC);
+        for (HttpPipelinePolicy policy : policies) {
+            configurable = configurable.withPolicy(policy);
+        }
+        return configurable
+                .authenticate(credential, profile)
+                .withTenantId(tenantId)
+                .withSubscription(subscriptionId);
+    }
+
+    /**
+     * Discovers the endpoints of an Azure Stack Hub stamp from its Resource Manager metadata.
+     *
+     * @param armEndpoint the Resource Manager endpoint of the stamp
+     * @return the environment of the stamp
+     */
+    public static AzureEnvironment getAzureEnvironmentFromArmEndpoint(String armEndpoint) {
+        HttpRequest request = new HttpRequest(HttpMethod.GET,
+                String.format("%s/metadata/endpoints?api-version=2019-10-01", armEndpoint))
+                .setHeader("accept", "application/json");
+        HttpResponse response = HttpClient.createDefault().send(request).block();
+        if (response.getStatusCode() != 200) {
+            throw LOGGER.logExceptionAsError(new IllegalStateException(
+                    "Failed : HTTP error code : " + response.getStatusCode() + " from " + armEndpoint));
+        }
+        String body = response.getBodyAsString().block();
+        ArrayNode metadataArray;
+        try {
+            metadataArray = SERIALIZER.deserialize(body, ArrayNode.class, SerializerEncoding.JSON);
+        } catch (IOException e) {
+            throw LOGGER.logExceptionAsError(new IllegalStateException("Failed to parse metadata : " + body, e));
+        }
+        if (metadataArray == null || metadataArray.isEmpty()) {
+            throw LOGGER.logExceptionAsError(new IllegalStateException("Failed to find metadata : " + body));
+        }
+        JsonNode metadata = metadataArray.iterator().next();
+        Map<String, String> endpoints = new HashMap<>();
+        endpoints.put("managementEndpointUrl", metadata.at("/authentication/audiences/0").asText());
+        endpoints.put("resourceManagerEndpointUrl", armEndpoint);
+        endpoints.put("galleryEndpointUrl", metadata.at("/gallery").asText());
+        endpoints.put("activeDirectoryEndpointUrl", metadata.at("/authentication/loginEndpoint").asText());
+        endpoints.put("activeDirectoryResourceId", metadata.at("/authentication/audiences/0").asText());
+        endpoints.put("activeDirectoryGraphResourceId", metadata.at("/graph").asText());
+        endpoints.put("storageEndpointSuffix", "." + metadata.at("/suffixes/storage").asText());
+        endpoints.put("keyVaultDnsSuffix", "." + metadata.at("/suffixes/keyVaultDns").asText());
+        return new AzureEnvironment(endpoints);
+    }
+}
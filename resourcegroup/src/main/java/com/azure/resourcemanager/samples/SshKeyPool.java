@@ -0,0 +1,208 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import com.azure.core.util.logging.ClientLogger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pre-generates SSH key pairs on a background thread.
+ * <p>
+ * Key generation, RSA 4096 in particular, is slow enough to show up on the Linux virtual machine
+ * create path when every VM gets its own key. The pool keeps up to {@code capacity} key pairs ready,
+ * and {@link #take()} generates one inline only when the pool is empty. Hits and misses are counted.
+ */
+public final class SshKeyPool implements AutoCloseable {
+    private static final ClientLogger LOGGER = new ClientLogger(SshKeyPool.class);
+
+    /**
+     * Key algorithms of the pool.
+     */
+    public enum Algorithm {
+        /** RSA with a 2048-bit modulus. */
+        RSA_2048("RSA", 2048),
+        /** RSA with a 4096-bit modulus. */
+        RSA_4096("RSA", 4096),
+        /** Ed25519, available on Java 15 and later. */
+        ED25519("Ed25519", 0);
+
+        private final String jcaName;
+        private final int keySize;
+
+        Algorithm(String jcaName, int keySize) {
+            this.jcaName = jcaName;
+            this.keySize = keySize;
+        }
+    }
+
+    private final Algorithm algorithm;
+    private final BlockingQueue<SshKeyPair> pool;
+    private final Thread generator;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * Creates a pool and starts filling it in the background.
+     *
+     * @param algorithm the key algorithm
+     * @param capacity the maximum number of key pairs kept ready
+     * @throws IllegalStateException if the algorithm is not available on this JVM
+     */
+    public SshKeyPool(Algorithm algorithm, int capacity) {
+        this.algorithm = algorithm;
+        this.pool = new ArrayBlockingQueue<>(capacity);
+        // Fails fast when the algorithm is unavailable, e.g. Ed25519 before Java 15.
+        this.pool.offer(generate(algorithm));
+        this.generator = new Thread(this::fill, "ssh-key-pool-" + algorithm.name().toLowerCase());
+        this.generator.setDaemon(true);
+        this.generator.setPriority(Thread.MIN_PRIORITY);
+        this.generator.start();
+    }
+
+    /**
+     * Takes a key pair from the pool, or generates one if the pool is empty.
+     *
+     * @return a key pair not handed out before
+     */
+    public SshKeyPair take() {
+        SshKeyPair keyPair = pool.poll();
+        if (keyPair != null) {
+            hits.incrementAndGet();
+            return keyPair;
+        }
+        misses.incrementAndGet();
+        return generate(algorithm);
+    }
+
+    /** @return the number of key pairs taken from the pool */
+    public long hits() {
+        return hits.get();
+    }
+
+    /** @return the number of key pairs generated inline because the pool was empty */
+    public long misses() {
+        return misses.get();
+    }
+
+    /** @return the number of key pairs ready in the pool */
+    public int available() {
+        return pool.size();
+    }
+
+    /**
+     * Stops the background generation.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        generator.interrupt();
+    }
+
+    private void fill() {
+        try {
+            while (!closed) {
+                pool.put(generate(algorithm));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            LOGGER.logThrowableAsError(e);
+        }
+    }
+
+    /**
+     * Generates a key pair without a pool.
+     *
+     * @param algorithm the key algorithm
+     * @return a new key pair
+     * @throws IllegalStateException if the algorithm is not available on this JVM
+     */
+    public static SshKeyPair generate(Algorithm algorithm) {
+        try {
+            KeyPairGenerator keyGen = KeyPairGenerator.getInstance(algorithm.jcaName);
+            if (algorithm.keySize > 0) {
+                keyGen.initialize(algorithm.keySize);
+            }
+            KeyPair keyPair = keyGen.generateKeyPair();
+            return new SshKeyPair(keyPair, toOpenSshPublicKey(keyPair.getPublic()));
+        } catch (GeneralSecurityException | IOException e) {
+            throw LOGGER.logExceptionAsError(new IllegalStateException("failed to generate ssh key", e));
+        }
+    }
+
+    /**
+     * Encodes a public key in the OpenSSH {@code authorized_keys} format.
+     *
+     * @param publicKey an RSA or Ed25519 public key
+     * @return the OpenSSH public key
+     * @throws IOException if the key cannot be encoded
+     */
+    public static String toOpenSshPublicKey(PublicKey publicKey) throws IOException {
+        ByteArrayOutputStream byteOs = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(byteOs);
+        String type;
+        if (publicKey instanceof RSAPublicKey) {
+            RSAPublicKey rsaPublicKey = (RSAPublicKey) publicKey;
+            type = "ssh-rsa";
+            writeString(dos, type.getBytes(StandardCharsets.US_ASCII));
+            writeString(dos, rsaPublicKey.getPublicExponent().toByteArray());
+            writeString(dos, rsaPublicKey.getModulus().toByteArray());
+        } else if ("Ed25519".equals(publicKey.getAlgorithm()) || "EdDSA".equals(publicKey.getAlgorithm())) {
+            // The X.509 encoding of an Ed25519 key ends with the 32-byte raw public key.
+            byte[] encoded = publicKey.getEncoded();
+            type = "ssh-ed25519";
+            writeString(dos, type.getBytes(StandardCharsets.US_ASCII));
+            writeString(dos, Arrays.copyOfRange(encoded, encoded.length - 32, encoded.length));
+        } else {
+            throw LOGGER.logExceptionAsError(new IllegalArgumentException("unsupported key algorithm " + publicKey.getAlgorithm()));
+        }
+        return type + " " + new String(Base64.getEncoder().encode(byteOs.toByteArray()), StandardCharsets.US_ASCII);
+    }
+
+    private static void writeString(DataOutputStream dos, byte[] value) throws IOException {
+        dos.writeInt(value.length);
+        dos.write(value);
+    }
+
+    /**
+     * An SSH key pair with its OpenSSH public key.
+     */
+    public static final class SshKeyPair {
+        private final KeyPair keyPair;
+        private final String publicKey;
+
+        private SshKeyPair(KeyPair keyPair, String publicKey) {
+            this.keyPair = keyPair;
+            this.publicKey = publicKey;
+        }
+
+        /** @return the key pair */
+        public KeyPair keyPair() {
+            return keyPair;
+        }
+
+        /** @return the public key in the OpenSSH format */
+        public String publicKey() {
+            return publicKey;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.resources.samples;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Indexes and re-indexes tags in a {@link TagIndex} and queries them.
+ */
+public class TagIndexTest {
+    private static final String VM = "/subscriptions/sub/resourceGroups/rg/providers/Microsoft.Compute/virtualMachines/vm";
+    private static final String DISK = "/subscriptions/sub/resourceGroups/rg/providers/Microsoft.Compute/disks/Disk";
+
+    @Test
+    public void tagKeysAreCaseInsensitive() {
+        TagIndex index = new TagIndex();
+        index.put(VM, tags("Environment", "prod"));
+        index.put(DISK, tags("environment", "Prod"));
+
+        assertEquals(ids(VM, DISK), index.withTag("ENVIRONMENT"));
+        assertEquals(ids(VM), index.withTag("environment", "prod"));
+        assertEquals(ids(DISK), index.withTag("Environment", "Prod"));
+    }
+
+    @Test
+    public void keyLookupFollowsChangedAndRemovedTags() {
+        TagIndex index = new TagIndex();
+        index.put(VM, tags("env", "test", "owner", "a"));
+        index.put(DISK, tags("env", "test"));
+
+        index.put(VM, tags("env", "prod"));
+        assertEquals(ids(VM, DISK), index.withTag("env"));
+        assertEquals(ids(DISK), index.withTag("env", "test"));
+        assertEquals(ids(VM), index.withTag("env", "prod"));
+        assertEquals(ids(), index.withTag("owner"));
+
+        index.put(DISK, null);
+        assertEquals(ids(VM), index.withTag("env"));
+
+        index.remove(VM);
+        assertEquals(ids(), index.withTag("env"));
+        assertEquals(ids(), index.withTag("env", "prod"));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void queriesCombineKeysAndValues() {
+        TagIndex index = new TagIndex();
+        index.put(VM, tags("env", "prod", "owner", "a"));
+        index.put(DISK, tags("env", "test"));
+
+        assertEquals(ids(VM), TagIndex.Query.tag("Env").and(TagIndex.Query.tag("Owner")).evaluate(index));
+        assertEquals(ids(VM, DISK),
+                TagIndex.Query.tag("owner").or(TagIndex.Query.tag("env", "test")).evaluate(index));
+    }
+
+    private static Map<String, String> tags(String... keysAndValues) {
+        Map<String, String> tags = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            tags.put(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return tags;
+    }
+
+    private static Set<String> ids(String... ids) {
+        Set<String> lowerCased = new HashSet<>();
+        for (String id : ids) {
+            lowerCased.add(id.toLowerCase());
+        }
+        return lowerCased;
+    }
+}
@@ -0,0 +1,29 @@
+#!/bin/sh
+# Runs a sample from the jar-with-dependencies built by "mvn package", e.g.
+#   ./run-sample.sh vm --stamps
+# The AppCDS archive that "mvn -Pappcds verify" creates next to the jar is used when there is one; a JVM that
+# cannot use it, e.g. a different Java version, ignores it and starts as usual.
+
+if [ $# -lt 1 ]; then
+  echo "usage: $0 <resourcegroup|secret|storage|vm> [sample arguments]" >&2
+  exit 2
+fi
+module=$1
+shift
+
+# The samples read ../azureSecretSpConfig.json, so run from the module directory.
+cd "$(dirname "$0")/$module" || exit 1
+# The archive only matches the canonical jar path it was created with.
+target=$(pwd -P)/target
+jar=$(ls "$target"/*-jar-with-dependencies.jar 2>/dev/null | head -n 1)
+if [ -z "$jar" ]; then
+  echo "no jar-with-dependencies in $target, run mvn package first" >&2
+  exit 1
+fi
+java=${JAVA_HOME:+$JAVA_HOME/bin/}java
+archive=${jar%-jar-with-dependencies.jar}.jsa
+
+if [ -f "$archive" ]; then
+  exec "$java" -XX:SharedArchiveFile="$archive" -Xshare:auto $JAVA_OPTS -jar "$jar" "$@"
+fi
+exec "$java" $JAVA_OPTS -jar "$jar" "$@"
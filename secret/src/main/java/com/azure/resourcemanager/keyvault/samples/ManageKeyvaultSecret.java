@@ -7,12 +7,7 @@
 package com.azure.resourcemanager.keyvault.samples;
 
 import com.azure.core.credential.TokenCredential;
-import com.azure.core.http.HttpClient;
-import com.azure.core.http.HttpMethod;
-import com.azure.core.http.HttpRequest;
-import com.azure.core.http.HttpResponse;
 import com.azure.core.http.policy.HttpLogDetailLevel;
-import com.azure.core.management.AzureEnvironment;
 import com.azure.core.util.serializer.JacksonAdapter;
 import com.azure.core.util.serializer.SerializerEncoding;
 import com.azure.identity.ClientSecretCredentialBuilder;
@@ -20,27 +15,38 @@ import com.azure.resourcemanager.AzureResourceManager;
 import com.azure.resourcemanager.keyvault.models.SkuName;
 import com.azure.resourcemanager.keyvault.models.Vault;
 import com.azure.core.management.profile.AzureProfile;
+import com.azure.resourcemanager.samples.FanOut;
+import com.azure.resourcemanager.samples.MultiStampRunner;
+import com.azure.resourcemanager.samples.SampleConfig;
+import com.azure.resourcemanager.samples.SampleDaemon;
+import com.azure.resourcemanager.samples.StartupTraining;
 import com.azure.resourcemanager.samples.Utils;
 import com.azure.security.keyvault.secrets.SecretClient;
 import com.azure.security.keyvault.secrets.SecretClientBuilder;
 import com.azure.security.keyvault.secrets.SecretServiceVersion;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import java.io.FileInputStream;
-import java.io.IOException;
-import java.util.HashMap;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Azure Stack Key Vault sample for managing secrets -
  * - Create a key vault
  * - Set a secret
  * - Get a secret
- * - Delete a key vault.
+ * - Delete and purge a key vault.
  */
 
 public final class ManageKeyvaultSecret {
+    private static final SecureRandom SECRET_VALUES = new SecureRandom();
+
     /**
      * Main function which runs the actual sample.
      *
@@ -107,13 +113,14 @@ public final class ManageKeyvaultSecret {
 
 
             //=============================================================
-            // Delete a key vault.
+            // Delete and purge a key vault.
 
             System.out.println("Deleting key vault with name: " + vaultName);
 
-            azureResourceManager.vaults().deleteById(vault.id());
+            VaultTeardown.Result teardown = new VaultTeardown(azureResourceManager)
+                    .teardown(Collections.singletonList(vault));
 
-            System.out.println("Deleting key vault with name: " + vaultName);
+            System.out.println(teardown);
             return true;
         } finally {
 
@@ -128,54 +135,75 @@ public final class ManageKeyvaultSecret {
         }
     }
 
-    private static AzureEnvironment getAzureEnvironmentFromArmEndpoint(String armEndpoint) {
-        // Create HTTP client and request
-        HttpClient httpClient = HttpClient.createDefault();
-
-        HttpRequest request = new HttpRequest(HttpMethod.GET,
-                String.format("%s/metadata/endpoints?api-version=2019-10-01", armEndpoint))
-                .setHeader("accept", "application/json");
-
-        // Execute the request and read the response
-        HttpResponse response = httpClient.send(request).block();
-        if (response.getStatusCode() != 200) {
-            throw new RuntimeException("Failed : HTTP error code : " + response.getStatusCode());
-        }
-        String body = response.getBodyAsString().block();
-        try {
-            ArrayNode metadataArray = JacksonAdapter.createDefaultSerializerAdapter()
-                    .deserialize(body, ArrayNode.class, SerializerEncoding.JSON);
-
-            if (metadataArray == null || metadataArray.isEmpty()) {
-                throw new RuntimeException("Failed to find metadata : " + body);
+    /**
+     * The workflows served in daemon mode.
+     * @return the workflows by name
+     */
+    static Map<String, SampleDaemon.Workflow> daemonWorkflows() {
+        Map<String, SampleDaemon.Workflow> workflows = new LinkedHashMap<>();
+        // One client per vault for the life of the daemon, so that its pipeline and connections stay warm. The
+        // daemon credential follows the current service principal, so a reloaded secret needs no new client.
+        Map<String, SecretClient> secretClients = new ConcurrentHashMap<>();
+        // {"vaultUrl": "https://v1.vault.local.azurestack.external/", "count": 10, "prefix": "seed"} sets
+        // random secrets named prefix-0 .. prefix-(count-1), all at once on virtual threads on Java 21 and
+        // later, fanOutParallelism at a time otherwise.
+        workflows.put("seed-secrets", context -> {
+            String vaultUrl = context.parameter("vaultUrl", null);
+            if (vaultUrl == null) {
+                throw new IllegalArgumentException("vaultUrl is required");
             }
-
-            JsonNode metadata = metadataArray.iterator().next();
-            AzureEnvironment azureEnvironment = new AzureEnvironment(new HashMap<String, String>() {
-                {
-                    put("managementEndpointUrl", metadata.at("/authentication/audiences/0").asText());
-                    put("resourceManagerEndpointUrl", armEndpoint);
-                    put("galleryEndpointUrl", metadata.at("/gallery").asText());
-                    put("activeDirectoryEndpointUrl", metadata.at("/authentication/loginEndpoint").asText());
-                    put("activeDirectoryResourceId", metadata.at("/authentication/audiences/0").asText());
-                    put("activeDirectoryGraphResourceId", metadata.at("/graph").asText());
-                    put("storageEndpointSuffix", "." + metadata.at("/suffixes/storage").asText());
-                    put("keyVaultDnsSuffix", "." + metadata.at("/suffixes/keyVaultDns").asText());
-                }
+            String prefix = context.parameter("prefix", "seed");
+            int count = context.count("count", 10);
+            SecretClient client = secretClients.computeIfAbsent(vaultUrl.toLowerCase().replaceAll("/+$", ""),
+                    url -> new SecretClientBuilder()
+                            .vaultUrl(url)
+                            .serviceVersion(SecretServiceVersion.V7_1)
+                            .credential(context.credential())
+                            .buildClient());
+            List<String> names = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                names.add(prefix + "-" + i);
+            }
+            FanOut.map(names, FanOut.parallelism(context.config()), name -> {
+                client.setSecret(name, newSecretValue());
+                context.progress("set " + name);
+                return name;
             });
-            return azureEnvironment;
-        } catch (IOException ioe) {
-            ioe.printStackTrace();
-            throw new RuntimeException(ioe);
-        }
+        });
+        return workflows;
+    }
+
+    /** @return 32 random bytes, Base64-encoded */
+    private static String newSecretValue() {
+        byte[] value = new byte[32];
+        SECRET_VALUES.nextBytes(value);
+        return Base64.getEncoder().encodeToString(value);
     }
 
     /**
      * Main entry point.
-     * @param args the parameters
+     * @param args the parameters; "--stamps [config file]" runs the sample against every stamp of the config file,
+     *             "--daemon [port]" serves the workflows of {@link #daemonWorkflows()} over a local HTTP API,
+     *             "--startup-training" runs the sample against a local ARM stub instead of a stamp
      */
     public static void main(String[] args) {
         try {
+            if (StartupTraining.isRequested(args)) {
+                // Run this sample, e.g. as a native image, against a local ARM stub instead of a stamp
+                StartupTraining.run((azure, config, credential) ->
+                        runSample(azure, config.location(), credential, config.objectId()));
+                return;
+            }
+            if (SampleDaemon.isRequested(args)) {
+                // Keep the clients warm and run workflows on request until the process is stopped
+                SampleDaemon.run(args, "../azureSecretSpConfig.json", daemonWorkflows());
+                return;
+            }
+            if (MultiStampRunner.isRequested(args)) {
+                // Run against every stamp of the multi-stamp config at once
+                MultiStampRunner.run(args, stamp -> runSample(stamp.azure(), stamp.location(), stamp.credential(), stamp.config().objectId()));
+                return;
+            }
 
             //=============================================================
             // Authenticate
@@ -194,7 +222,7 @@ public final class ManageKeyvaultSecret {
             final String location = settings.get("location").asText();
 
             // Register Azure Stack cloud environment
-            final AzureProfile profile = new AzureProfile(getAzureEnvironmentFromArmEndpoint(armEndpoint));
+            final AzureProfile profile = new AzureProfile(SampleConfig.getAzureEnvironmentFromArmEndpoint(armEndpoint));
             final TokenCredential credential = new ClientSecretCredentialBuilder()
                     .tenantId(tenantId)
                     .clientId(clientId)
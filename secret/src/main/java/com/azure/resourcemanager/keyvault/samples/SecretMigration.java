@@ -0,0 +1,286 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.keyvault.samples;
+
+import com.azure.core.exception.ResourceNotFoundException;
+import com.azure.core.util.logging.ClientLogger;
+import com.azure.security.keyvault.secrets.SecretAsyncClient;
+import com.azure.security.keyvault.secrets.models.KeyVaultSecret;
+import com.azure.security.keyvault.secrets.models.SecretProperties;
+import reactor.core.publisher.Mono;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Copies the latest value of every secret from a source vault to a target vault.
+ * <p>
+ * Secret properties are paged from the source vault, the latest values are read with up to
+ * {@code readConcurrency} calls in flight, and the writes to the target vault run with their own
+ * {@code writeConcurrency} limit, so neither vault is throttled by the other side's limit.
+ * Secrets whose value hash already matches the target are skipped. Migrated names are appended
+ * to an optional checkpoint file, and a rerun with the same file resumes where the last run stopped.
+ */
+public final class SecretMigration {
+    private static final ClientLogger LOGGER = new ClientLogger(SecretMigration.class);
+
+    private final SecretAsyncClient source;
+    private final SecretAsyncClient target;
+    private int readConcurrency = 8;
+    private int writeConcurrency = 4;
+    private boolean dryRun;
+    private Path checkpointFile;
+
+    /**
+     * Creates a migration between two vaults.
+     *
+     * @param source the client of the vault to copy secrets from
+     * @param target the client of the vault to copy secrets to
+     */
+    public SecretMigration(SecretAsyncClient source, SecretAsyncClient target) {
+        this.source = source;
+        this.target = target;
+    }
+
+    /**
+     * @param readConcurrency the maximum number of in-flight reads on the source vault
+     * @return this migration
+     */
+    public SecretMigration withReadConcurrency(int readConcurrency) {
+        this.readConcurrency = requirePositive(readConcurrency);
+        return this;
+    }
+
+    /**
+     * @param writeConcurrency the maximum number of in-flight reads and writes on the target vault
+     * @return this migration
+     */
+    public SecretMigration withWriteConcurrency(int writeConcurrency) {
+        this.writeConcurrency = requirePositive(writeConcurrency);
+        return this;
+    }
+
+    /**
+     * Only computes the diff: secrets that would be copied are reported, nothing is written.
+     *
+     * @return this migration
+     */
+    public SecretMigration withDryRun() {
+        this.dryRun = true;
+        return this;
+    }
+
+    /**
+     * @param checkpointFile the file recording migrated secret names, created if it does not exist
+     * @return this migration
+     */
+    public SecretMigration withCheckpointFile(Path checkpointFile) {
+        this.checkpointFile = checkpointFile;
+        return this;
+    }
+
+    /**
+     * Runs the migration and blocks until every secret has been processed.
+     *
+     * @return the migration result
+     */
+    public Result migrate() {
+        final Set<String> checkpointed = loadCheckpoint();
+        final Result result = new Result(dryRun);
+
+        try (BufferedWriter checkpoint = openCheckpoint()) {
+            source.listPropertiesOfSecrets()
+                    .filter(properties -> {
+                        // Disabled secrets cannot be read, and managed secrets belong to certificates.
+                        if (!Boolean.TRUE.equals(properties.isEnabled())
+                                || Boolean.TRUE.equals(properties.isManaged())) {
+                            result.ignored.incrementAndGet();
+                            return false;
+                        }
+                        if (checkpointed.contains(properties.getName())) {
+                            result.resumed.incrementAndGet();
+                            return false;
+                        }
+                        return true;
+                    })
+                    .flatMap(properties -> source.getSecret(properties.getName())
+                            .onErrorResume(e -> {
+                                result.failed.put(properties.getName(), e);
+                                return Mono.empty();
+                            }), readConcurrency)
+                    .flatMap(secret -> copy(secret, result, checkpoint), writeConcurrency)
+                    .blockLast();
+        } catch (IOException e) {
+            throw LOGGER.logExceptionAsError(new IllegalStateException("failed to write checkpoint " + checkpointFile, e));
+        }
+        return result;
+    }
+
+    private Mono<Void> copy(KeyVaultSecret secret, Result result, BufferedWriter checkpoint) {
+        final String name = secret.getName();
+        final String sourceHash = hash(secret.getValue());
+        return target.getSecret(name)
+                .map(existing -> hash(existing.getValue()))
+                .onErrorResume(ResourceNotFoundException.class, e -> Mono.empty())
+                .defaultIfEmpty("")
+                .flatMap(targetHash -> {
+                    if (sourceHash.equals(targetHash)) {
+                        result.unchanged.incrementAndGet();
+                        return Mono.empty();
+                    }
+                    if (dryRun) {
+                        result.changed.put(name, targetHash.isEmpty() ? "added" : "modified");
+                        return Mono.empty();
+                    }
+                    return target.setSecret(copyOf(secret))
+                            .doOnSuccess(copied -> {
+                                result.changed.put(name, targetHash.isEmpty() ? "added" : "modified");
+                                recordCheckpoint(checkpoint, name);
+                            })
+                            .then();
+                })
+                .onErrorResume(e -> {
+                    result.failed.put(name, e);
+                    return Mono.empty();
+                });
+    }
+
+    private static KeyVaultSecret copyOf(KeyVaultSecret secret) {
+        SecretProperties properties = secret.getProperties();
+        return new KeyVaultSecret(secret.getName(), secret.getValue())
+                .setProperties(new SecretProperties()
+                        .setContentType(properties.getContentType())
+                        .setTags(properties.getTags())
+                        .setEnabled(properties.isEnabled())
+                        .setNotBefore(properties.getNotBefore())
+                        .setExpiresOn(properties.getExpiresOn()));
+    }
+
+    private Set<String> loadCheckpoint() {
+        if (checkpointFile == null || !Files.exists(checkpointFile)) {
+            return Collections.emptySet();
+        }
+        try {
+            return new HashSet<>(Files.readAllLines(checkpointFile, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw LOGGER.logExceptionAsError(new IllegalStateException("failed to read checkpoint " + checkpointFile, e));
+        }
+    }
+
+    private BufferedWriter openCheckpoint() throws IOException {
+        if (checkpointFile == null || dryRun) {
+            return null;
+        }
+        return Files.newBufferedWriter(checkpointFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static void recordCheckpoint(BufferedWriter checkpoint, String name) {
+        if (checkpoint == null) {
+            return;
+        }
+        // Writes complete on several threads; flush every entry so an interrupted run loses nothing.
+        synchronized (checkpoint) {
+            try {
+                checkpoint.write(name);
+                checkpoint.newLine();
+                checkpoint.flush();
+            } catch (IOException e) {
+                throw LOGGER.logExceptionAsError(new IllegalStateException("failed to write checkpoint", e));
+            }
+        }
+    }
+
+    private static String hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest((value == null ? "" : value).getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw LOGGER.logExceptionAsError(new IllegalStateException(e));
+        }
+    }
+
+    private static int requirePositive(int value) {
+        if (value < 1) {
+            throw LOGGER.logExceptionAsError(new IllegalArgumentException("concurrency must be positive"));
+        }
+        return value;
+    }
+
+    /**
+     * Outcome of a migration run.
+     */
+    public static final class Result {
+        private final boolean dryRun;
+        private final Map<String, String> changed = new ConcurrentHashMap<>();
+        private final Map<String, Throwable> failed = new ConcurrentHashMap<>();
+        private final AtomicInteger unchanged = new AtomicInteger();
+        private final AtomicInteger resumed = new AtomicInteger();
+        private final AtomicInteger ignored = new AtomicInteger();
+
+        private Result(boolean dryRun) {
+            this.dryRun = dryRun;
+        }
+
+        /** @return true if the run only computed the diff */
+        public boolean isDryRun() {
+            return dryRun;
+        }
+
+        /** @return secrets copied (or to be copied in a dry run), mapped to "added" or "modified" */
+        public Map<String, String> changed() {
+            return Collections.unmodifiableMap(changed);
+        }
+
+        /** @return secrets that failed to migrate, mapped to the error */
+        public Map<String, Throwable> failed() {
+            return Collections.unmodifiableMap(failed);
+        }
+
+        /** @return the number of secrets whose value hash already matched the target */
+        public int unchanged() {
+            return unchanged.get();
+        }
+
+        /** @return the number of secrets skipped because the checkpoint recorded them */
+        public int resumed() {
+            return resumed.get();
+        }
+
+        /** @return the number of disabled or certificate-managed secrets that were not migrated */
+        public int ignored() {
+            return ignored.get();
+        }
+
+        @Override
+        public String toString() {
+            return (dryRun ? "Secret migration diff: " : "Secret migration: ")
+                    + changed.size() + (dryRun ? " to copy, " : " copied, ")
+                    + unchanged.get() + " unchanged, "
+                    + resumed.get() + " resumed from checkpoint, "
+                    + ignored.get() + " ignored, "
+                    + failed.size() + " failed";
+        }
+    }
+}
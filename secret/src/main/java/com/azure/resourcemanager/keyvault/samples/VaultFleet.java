@@ -0,0 +1,302 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.keyvault.samples;
+
+import com.azure.core.credential.TokenCredential;
+import com.azure.core.exception.HttpResponseException;
+import com.azure.core.util.logging.ClientLogger;
+import com.azure.resourcemanager.AzureResourceManager;
+import com.azure.resourcemanager.keyvault.models.AccessPolicy;
+import com.azure.resourcemanager.keyvault.models.KeyPermissions;
+import com.azure.resourcemanager.keyvault.models.SecretPermissions;
+import com.azure.resourcemanager.keyvault.models.SkuName;
+import com.azure.resourcemanager.keyvault.models.Vault;
+import com.azure.security.keyvault.secrets.SecretAsyncClient;
+import com.azure.security.keyvault.secrets.SecretClientBuilder;
+import com.azure.security.keyvault.secrets.SecretServiceVersion;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Provisions a fleet of key vaults for a tenant.
+ * <p>
+ * Vaults are created concurrently, each with all of its access policies in the initial PUT.
+ * The initial secrets of a vault are set as soon as that vault is ready, without waiting for
+ * the rest of the fleet, and a {@link VaultReport} with the vault's time-to-ready is emitted
+ * when its secrets are set.
+ */
+public final class VaultFleet {
+    private static final ClientLogger LOGGER = new ClientLogger(VaultFleet.class);
+
+    private final AzureResourceManager azureResourceManager;
+    private final TokenCredential tokenCredential;
+    private int vaultConcurrency = 8;
+    private int secretConcurrency = 4;
+
+    /**
+     * Creates a fleet provisioner.
+     *
+     * @param azureResourceManager instance of the azure client
+     * @param tokenCredential credential for the secret clients of the new vaults
+     */
+    public VaultFleet(AzureResourceManager azureResourceManager, TokenCredential tokenCredential) {
+        this.azureResourceManager = azureResourceManager;
+        this.tokenCredential = tokenCredential;
+    }
+
+    /**
+     * @param vaultConcurrency the maximum number of vault creations in flight
+     * @return this fleet
+     * @throws IllegalArgumentException if the concurrency is not positive
+     */
+    public VaultFleet withVaultConcurrency(int vaultConcurrency) {
+        this.vaultConcurrency = requirePositive("vaultConcurrency", vaultConcurrency);
+        return this;
+    }
+
+    /**
+     * @param secretConcurrency the maximum number of secret writes in flight per vault
+     * @return this fleet
+     * @throws IllegalArgumentException if the concurrency is not positive
+     */
+    public VaultFleet withSecretConcurrency(int secretConcurrency) {
+        this.secretConcurrency = requirePositive("secretConcurrency", secretConcurrency);
+        return this;
+    }
+
+    /**
+     * Provisions the vaults and blocks until all of them are ready or failed.
+     *
+     * @param rgName the resource group of the vaults, created if it does not exist
+     * @param location the Azure location
+     * @param vaults the vaults to provision
+     * @return a report per vault, in the order the vaults became ready
+     */
+    public List<VaultReport> provision(String rgName, String location, List<VaultSpec> vaults) {
+        List<VaultReport> reports = provisionAsync(rgName, location, vaults).collectList().block();
+        return reports == null ? Collections.emptyList() : reports;
+    }
+
+    /**
+     * Provisions the vaults.
+     *
+     * @param rgName the resource group of the vaults, created if it does not exist
+     * @param location the Azure location
+     * @param vaults the vaults to provision
+     * @return a report per vault, emitted as each vault becomes ready or fails
+     */
+    public Flux<VaultReport> provisionAsync(String rgName, String location, List<VaultSpec> vaults) {
+        return ensureResourceGroup(rgName, location)
+                .thenMany(Flux.fromIterable(vaults)
+                        .flatMap(spec -> provisionVault(rgName, location, spec), vaultConcurrency));
+    }
+
+    private Mono<Void> ensureResourceGroup(String rgName, String location) {
+        return Mono.fromCallable(() -> azureResourceManager.resourceGroups().contain(rgName))
+                .flatMap(exists -> exists
+                        ? Mono.empty()
+                        : azureResourceManager.resourceGroups().define(rgName).withRegion(location).createAsync().then());
+    }
+
+    private Mono<VaultReport> provisionVault(String rgName, String location, VaultSpec spec) {
+        return Mono.defer(() -> {
+            final long start = System.nanoTime();
+            return define(rgName, location, spec).createAsync()
+                    .flatMap(vault -> {
+                        final Duration created = Duration.ofNanos(System.nanoTime() - start);
+                        System.out.println("Created key vault: " + vault.name() + " (took " + created.getSeconds() + " seconds)");
+                        return seed(vault, spec)
+                                .then(Mono.fromCallable(() ->
+                                        new VaultReport(spec.name, vault, created, Duration.ofNanos(System.nanoTime() - start), null)));
+                    })
+                    .onErrorResume(e -> {
+                        LOGGER.warning("failed to provision key vault {}", spec.name, e);
+                        return Mono.just(new VaultReport(spec.name, null, null, Duration.ofNanos(System.nanoTime() - start), e));
+                    });
+        });
+    }
+
+    private Vault.DefinitionStages.WithCreate define(String rgName, String location, VaultSpec spec) {
+        Vault.DefinitionStages.WithCreate definition = azureResourceManager.vaults().define(spec.name)
+                .withRegion(location)
+                .withExistingResourceGroup(rgName)
+                .withEmptyAccessPolicy();
+        // Every policy goes into the create request instead of a follow-up update per policy.
+        for (AccessPolicySpec policySpec : spec.accessPolicies) {
+            AccessPolicy.DefinitionStages.WithAttach<Vault.DefinitionStages.WithCreate> policy =
+                    definition.defineAccessPolicy().forObjectId(policySpec.objectId);
+            if (!policySpec.secretPermissions.isEmpty()) {
+                policy = policy.allowSecretPermissions(policySpec.secretPermissions.toArray(new SecretPermissions[0]));
+            }
+            if (!policySpec.keyPermissions.isEmpty()) {
+                policy = policy.allowKeyPermissions(policySpec.keyPermissions.toArray(new KeyPermissions[0]));
+            }
+            definition = policy.attach();
+        }
+        return definition
+                .withDeploymentEnabled()
+                .withTemplateDeploymentEnabled()
+                .withSku(SkuName.STANDARD);
+    }
+
+    private Mono<Void> seed(Vault vault, VaultSpec spec) {
+        if (spec.secrets.isEmpty()) {
+            return Mono.empty();
+        }
+        SecretAsyncClient secretClient = new SecretClientBuilder()
+                .vaultUrl(vault.vaultUri())
+                .serviceVersion(SecretServiceVersion.V7_1)
+                .credential(tokenCredential)
+                .buildAsyncClient();
+        return Flux.fromIterable(spec.secrets.entrySet())
+                .flatMap(secret -> secretClient.setSecret(secret.getKey(), secret.getValue())
+                        // The DNS name of a new vault can take a few seconds to resolve.
+                        .retryWhen(Retry.backoff(3, Duration.ofSeconds(5)).filter(VaultFleet::isTransient)),
+                        secretConcurrency)
+                .then();
+    }
+
+    /**
+     * @return true for throttling, server errors and I/O failures such as an unresolved host; a rejected
+     * request, e.g. a forbidden one, fails the same way on every retry
+     */
+    private static boolean isTransient(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpResponseException) {
+                int status = ((HttpResponseException) cause).getResponse().getStatusCode();
+                return status == 429 || status >= 500;
+            }
+            if (cause instanceof IOException || cause instanceof UncheckedIOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int requirePositive(String name, int value) {
+        if (value <= 0) {
+            throw LOGGER.logExceptionAsError(new IllegalArgumentException(name + " must be positive, was " + value));
+        }
+        return value;
+    }
+
+    /**
+     * A vault to provision, with its access policies and initial secrets.
+     */
+    public static final class VaultSpec {
+        private final String name;
+        private final List<AccessPolicySpec> accessPolicies = new ArrayList<>();
+        private final Map<String, String> secrets = new LinkedHashMap<>();
+
+        /**
+         * @param name the vault name
+         */
+        public VaultSpec(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Adds an access policy to the vault.
+         *
+         * @param objectId the object ID the policy applies to
+         * @param secretPermissions the secret permissions to grant
+         * @param keyPermissions the key permissions to grant
+         * @return this spec
+         */
+        public VaultSpec withAccessPolicy(String objectId, List<SecretPermissions> secretPermissions,
+                                         List<KeyPermissions> keyPermissions) {
+            accessPolicies.add(new AccessPolicySpec(objectId, secretPermissions, keyPermissions));
+            return this;
+        }
+
+        /**
+         * Adds an initial secret to the vault.
+         *
+         * @param name the secret name
+         * @param value the secret value
+         * @return this spec
+         */
+        public VaultSpec withSecret(String name, String value) {
+            secrets.put(name, value);
+            return this;
+        }
+    }
+
+    private static final class AccessPolicySpec {
+        private final String objectId;
+        private final List<SecretPermissions> secretPermissions;
+        private final List<KeyPermissions> keyPermissions;
+
+        private AccessPolicySpec(String objectId, List<SecretPermissions> secretPermissions,
+                                 List<KeyPermissions> keyPermissions) {
+            this.objectId = objectId;
+            this.secretPermissions = secretPermissions == null ? Collections.emptyList() : secretPermissions;
+            this.keyPermissions = keyPermissions == null ? Collections.emptyList() : keyPermissions;
+        }
+    }
+
+    /**
+     * Provisioning outcome of one vault.
+     */
+    public static final class VaultReport {
+        private final String name;
+        private final Vault vault;
+        private final Duration timeToCreated;
+        private final Duration timeToReady;
+        private final Throwable error;
+
+        private VaultReport(String name, Vault vault, Duration timeToCreated, Duration timeToReady, Throwable error) {
+            this.name = name;
+            this.vault = vault;
+            this.timeToCreated = timeToCreated;
+            this.timeToReady = timeToReady;
+            this.error = error;
+        }
+
+        /** @return the vault name */
+        public String name() {
+            return name;
+        }
+
+        /** @return the created vault, or null if provisioning failed */
+        public Vault vault() {
+            return vault;
+        }
+
+        /** @return the time until the vault was created, or null if creation failed */
+        public Duration timeToCreated() {
+            return timeToCreated;
+        }
+
+        /** @return the time until the vault was created and seeded, or until it failed */
+        public Duration timeToReady() {
+            return timeToReady;
+        }
+
+        /** @return the provisioning error, or null if the vault is ready */
+        public Throwable error() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return "Key vault " + name + (error == null
+                    ? ": ready in " + timeToReady.toMillis() + " ms (created in " + timeToCreated.toMillis() + " ms)"
+                    : ": failed after " + timeToReady.toMillis() + " ms - " + error.getMessage());
+        }
+    }
+}
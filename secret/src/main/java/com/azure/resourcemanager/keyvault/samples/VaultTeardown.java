@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.keyvault.samples;
+
+import com.azure.core.management.exception.ManagementException;
+import com.azure.resourcemanager.AzureResourceManager;
+import com.azure.resourcemanager.keyvault.models.DeletedVault;
+import com.azure.resourcemanager.keyvault.models.Vault;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Deletes key vaults and purges their soft-deleted remnants.
+ * <p>
+ * A soft-deleted vault keeps its name reserved and shows up in every deleted-vault listing until
+ * it is purged. Vaults are deleted and purged concurrently by a bounded number of workers. Each
+ * purge is a non-blocking long-running operation, so waiting on many purges does not tie up threads,
+ * and remnants left by earlier runs are found with a single deleted-vault listing rather than one
+ * lookup per name.
+ */
+public final class VaultTeardown {
+    private final AzureResourceManager azureResourceManager;
+    private int concurrency = 8;
+
+    /**
+     * @param azureResourceManager instance of the azure client
+     */
+    public VaultTeardown(AzureResourceManager azureResourceManager) {
+        this.azureResourceManager = azureResourceManager;
+    }
+
+    /**
+     * @param concurrency the maximum number of vaults deleted or purged at the same time
+     * @return this teardown
+     */
+    public VaultTeardown withConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * Deletes the vaults and purges them, blocking until all of them are gone.
+     *
+     * @param vaults the vaults to tear down
+     * @return the teardown result
+     */
+    public Result teardown(Collection<Vault> vaults) {
+        final Result result = new Result();
+        Flux.fromIterable(vaults)
+                .flatMap(vault -> azureResourceManager.vaults().deleteByIdAsync(vault.id())
+                        .then(purge(vault.name(), vault.regionName(), result))
+                        .onErrorResume(e -> {
+                            result.failed.put(vault.name(), e);
+                            return Mono.empty();
+                        }), concurrency)
+                .blockLast();
+        return result;
+    }
+
+    /**
+     * Purges soft-deleted vaults, such as the ones left behind by earlier runs.
+     *
+     * @param filter selects the deleted vaults to purge, e.g. by name prefix
+     * @return the purge result
+     */
+    public Result purgeDeleted(Predicate<DeletedVault> filter) {
+        final Result result = new Result();
+        azureResourceManager.vaults().listDeletedAsync()
+                .filter(filter)
+                .flatMap(deleted -> purge(deleted.name(), deleted.location(), result), concurrency)
+                .blockLast();
+        return result;
+    }
+
+    private Mono<Void> purge(String name, String location, Result result) {
+        return azureResourceManager.vaults().purgeDeletedAsync(name, location)
+                .doOnSuccess(ignored -> result.purged.add(name))
+                .onErrorResume(ManagementException.class, e -> {
+                    // Vaults without soft delete are gone as soon as they are deleted.
+                    if (e.getResponse() != null && e.getResponse().getStatusCode() == 404) {
+                        result.purged.add(name);
+                    } else {
+                        result.failed.put(name, e);
+                    }
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Outcome of a teardown.
+     */
+    public static final class Result {
+        private final Set<String> purged = ConcurrentHashMap.newKeySet();
+        private final Map<String, Throwable> failed = new ConcurrentHashMap<>();
+
+        private Result() {
+        }
+
+        /** @return the names of the vaults that are gone and no longer reserve their names */
+        public Set<String> purged() {
+            return Collections.unmodifiableSet(purged);
+        }
+
+        /** @return the vaults that failed to delete or purge, mapped to the error */
+        public Map<String, Throwable> failed() {
+            return Collections.unmodifiableMap(failed);
+        }
+
+        @Override
+        public String toString() {
+            return "Key vault teardown: " + purged.size() + " purged, " + failed.size() + " failed";
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import com.azure.core.util.logging.ClientLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Creates and benchmarks the application class-data-sharing (AppCDS) archive of a sample jar.
+ * <p>
+ * {@code create <archive>} runs the {@code Main-Class} of the jar with {@code --startup-training} in a
+ * child JVM that records the classes it loads, then dumps those classes into the archive. The child
+ * JVMs use the classpath of this process, which must be the jar-with-dependencies the archive is for,
+ * and a JVM using the archive must be started with the same jar path. Lambda proxy classes are left
+ * out of the archive, since dumping them crashes some JDK 17 builds; they are generated at run time as
+ * usual.
+ * <p>
+ * {@code benchmark <archive> [runs]} alternates training runs with and without the archive and prints
+ * the median time to the first Resource Manager response and to the end of the run.
+ */
+public final class AppCdsArchive {
+    private static final ClientLogger LOGGER = new ClientLogger(AppCdsArchive.class);
+    private static final Pattern TIMING = Pattern.compile("Time to (first request|end of run): (\\d+) ms");
+    private static final Duration TIMEOUT = Duration.ofMinutes(10);
+
+    private AppCdsArchive() {
+    }
+
+    /**
+     * Main entry point.
+     * @param args "create &lt;archive&gt;" or "benchmark &lt;archive&gt; [runs]"
+     */
+    public static void main(String[] args) {
+        try {
+            if (args.length >= 2 && "create".equals(args[0])) {
+                create(Paths.get(args[1]));
+            } else if (args.length >= 2 && "benchmark".equals(args[0])) {
+                benchmark(Paths.get(args[1]), args.length > 2 ? Integer.parseInt(args[2]) : 5);
+            } else {
+                System.out.println("usage: AppCdsArchive create <archive> | benchmark <archive> [runs]");
+                System.exit(2);
+            }
+        } catch (Exception e) {
+            System.out.println(e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Creates the archive for the classpath of this process.
+     *
+     * @param archive the archive file
+     * @throws IOException if a child JVM cannot be run or fails
+     */
+    public static void create(Path archive) throws IOException {
+        Path classList = archive.resolveSibling(archive.getFileName() + ".classlist");
+        long start = System.nanoTime();
+        Files.createDirectories(archive.toAbsolutePath().getParent());
+        run(java("-XX:DumpLoadedClassList=" + classList.toAbsolutePath(), mainClass(), StartupTraining.TRAINING_ARGUMENT));
+
+        List<String> classes = Files.readAllLines(classList).stream()
+                .filter(line -> !line.startsWith("@lambda-proxy"))
+                .collect(Collectors.toList());
+        Files.write(classList, classes);
+
+        Files.deleteIfExists(archive);
+        run(java("-Xshare:dump", "-XX:SharedClassListFile=" + classList.toAbsolutePath(),
+                "-XX:SharedArchiveFile=" + archive.toAbsolutePath()));
+        System.out.printf("Archived %d classes into %s (%d MB) in %d s%n", classes.size(), archive,
+                Files.size(archive) >> 20, Duration.ofNanos(System.nanoTime() - start).getSeconds());
+    }
+
+    /**
+     * Times training runs with and without the archive.
+     *
+     * @param archive the archive file
+     * @param runs the number of runs of each kind
+     * @throws IOException if a child JVM cannot be run or fails
+     */
+    public static void benchmark(Path archive, int runs) throws IOException {
+        if (!Files.isRegularFile(archive)) {
+            throw LOGGER.logExceptionAsError(new IllegalArgumentException("no archive at " + archive));
+        }
+        String mainClass = mainClass();
+        List<long[]> baseline = new ArrayList<>();
+        List<long[]> shared = new ArrayList<>();
+        for (int i = 0; i < runs; i++) {
+            // Alternate, so that a slower or faster phase of the machine affects both equally.
+            baseline.add(timings(run(java(mainClass, StartupTraining.TRAINING_ARGUMENT))));
+            shared.add(timings(run(java("-XX:SharedArchiveFile=" + archive.toAbsolutePath(), "-Xshare:on",
+                    mainClass, StartupTraining.TRAINING_ARGUMENT))));
+        }
+        System.out.printf("%-24s %14s %14s %12s%n", "Median of " + runs + " runs", "Default CDS", "AppCDS", "Improvement");
+        print("Time to first request", baseline, shared, 0);
+        print("Time to end of run", baseline, shared, 1);
+    }
+
+    private static void print(String name, List<long[]> baseline, List<long[]> shared, int index) {
+        long before = median(baseline, index);
+        long after = median(shared, index);
+        System.out.printf("%-24s %11d ms %11d ms %11.1f%%%n", name, before, after,
+                before == 0 ? 0.0 : 100.0 * (before - after) / before);
+    }
+
+    private static long median(List<long[]> timings, int index) {
+        List<Long> values = new ArrayList<>();
+        for (long[] timing : timings) {
+            values.add(timing[index]);
+        }
+        Collections.sort(values);
+        return values.get(values.size() / 2);
+    }
+
+    private static long[] timings(ProcessRunner.ProcessResult result) {
+        long[] timings = new long[2];
+        for (String line : result.stdout()) {
+            Matcher matcher = TIMING.matcher(line);
+            if (matcher.find()) {
+                timings["first request".equals(matcher.group(1)) ? 0 : 1] = Long.parseLong(matcher.group(2));
+            }
+        }
+        return timings;
+    }
+
+    private static String[] java(String... arguments) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(classPath());
+        command.addAll(Arrays.asList(arguments));
+        return command.toArray(new String[0]);
+    }
+
+    /** The sample of the jar-with-dependencies, which is the first entry of the classpath. */
+    private static String mainClass() throws IOException {
+        String jar = System.getProperty("java.class.path").split(File.pathSeparator)[0];
+        try (JarFile jarFile = new JarFile(jar)) {
+            Manifest manifest = jarFile.getManifest();
+            String mainClass = manifest == null ? null : manifest.getMainAttributes().getValue(Attributes.Name.MAIN_CLASS);
+            if (mainClass == null) {
+                throw LOGGER.logExceptionAsError(new IllegalStateException("no Main-Class in the manifest of " + jar));
+            }
+            return mainClass;
+        }
+    }
+
+    /**
+     * The archive records the classpath it was dumped with, so use canonical paths that a launcher can
+     * reproduce.
+     */
+    private static String classPath() throws IOException {
+        List<String> entries = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            entries.add(new File(entry).getCanonicalPath());
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+
+    private static ProcessRunner.ProcessResult run(String[] command) throws IOException {
+        ProcessRunner.ProcessResult result = ProcessRunner.run(command, TIMEOUT, null, null);
+        if (result.exitCode() != 0) {
+            throw LOGGER.logExceptionAsError(new IllegalStateException(result + "\n"
+                    + String.join("\n", result.stdout()) + "\n" + String.join("\n", result.stderr())));
+        }
+        return result;
+    }
+}
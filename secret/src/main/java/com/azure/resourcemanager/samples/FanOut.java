@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import com.azure.core.util.logging.ClientLogger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a blocking fluent operation, such as a create, for many items at the same time.
+ * <p>
+ * On Java 21 and later each operation runs on its own virtual thread, so thousands of operations can
+ * be in flight without sizing a pool. On earlier versions the operations share a pool of at most
+ * {@code parallelism} platform threads. The sample jars are multi-release jars, and the JVM picks the
+ * right version of {@link FanOutThreads} when it loads it.
+ * <p>
+ * Every operation runs to completion even when another one fails, so that no create is abandoned
+ * halfway. The first failure is then thrown with the others added as suppressed exceptions. When the
+ * calling thread is interrupted, the operations that have not started yet are skipped, and the call
+ * still waits for the running ones before it returns.
+ */
+public final class FanOut {
+    private static final ClientLogger LOGGER = new ClientLogger(FanOut.class);
+
+    /** The platform pool size used when the configuration has no {@code fanOutParallelism} tuning. */
+    public static final int DEFAULT_PARALLELISM = 16;
+
+    /**
+     * A blocking operation on one item.
+     *
+     * @param <T> the item type
+     * @param <R> the result type
+     */
+    @FunctionalInterface
+    public interface Operation<T, R> {
+        /**
+         * @param item the item
+         * @return the result
+         * @throws Exception if the operation failed
+         */
+        R apply(T item) throws Exception;
+    }
+
+    private FanOut() {
+    }
+
+    /**
+     * @return true if operations run on virtual threads, false if they run on a bounded platform pool
+     */
+    public static boolean virtualThreads() {
+        return FanOutThreads.virtual();
+    }
+
+    /**
+     * @param config the sample configuration
+     * @return the platform pool size from the {@code fanOutParallelism} tuning of the configuration
+     */
+    public static int parallelism(SampleConfig config) {
+        return config.tuning("fanOutParallelism", DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * Runs the operation for every item and blocks until all of them have finished.
+     *
+     * @param items the items
+     * @param parallelism the maximum number of operations on platform threads at the same time; ignored
+     *                    on virtual threads
+     * @param operation the blocking operation
+     * @param <T> the item type
+     * @param <R> the result type
+     * @return the results, in the order of the items
+     * @throws Exception the first failure of an operation, or an {@link IllegalStateException} if the
+     *                   calling thread was interrupted
+     */
+    public static <T, R> List<R> map(Collection<? extends T> items, int parallelism,
+                                     Operation<? super T, ? extends R> operation) throws Exception {
+        if (items.isEmpty()) {
+            return new ArrayList<>();
+        }
+        ExecutorService executor = FanOutThreads.newExecutor(Math.max(1, Math.min(parallelism, items.size())));
+        List<Future<? extends R>> futures = new ArrayList<>();
+        try {
+            for (T item : items) {
+                futures.add(executor.submit(() -> operation.apply(item)));
+            }
+            List<R> results = new ArrayList<>();
+            Exception failure = null;
+            for (Future<? extends R> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    Exception cause = e.getCause() instanceof Exception
+                            ? (Exception) e.getCause()
+                            : new IllegalStateException("operation failed", e.getCause());
+                    if (failure == null) {
+                        failure = cause;
+                    } else {
+                        failure.addSuppressed(cause);
+                    }
+                    results.add(null);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return results;
+        } catch (InterruptedException e) {
+            awaitRunning(executor, futures);
+            Thread.currentThread().interrupt();
+            throw LOGGER.logExceptionAsError(new IllegalStateException("interrupted while waiting for operations", e));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Skips the operations that have not started and waits, without giving in to further interrupts,
+     * for the ones that have.
+     */
+    private static void awaitRunning(ExecutorService executor, List<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(false);
+        }
+        executor.shutdown();
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    return;
+                }
+                LOGGER.info("still waiting for running operations after an interrupt");
+            } catch (InterruptedException ignored) {
+                // The caller restores the interrupt once the operations have finished.
+            }
+        }
+    }
+}
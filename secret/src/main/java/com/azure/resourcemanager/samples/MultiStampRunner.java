@@ -0,0 +1,328 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import com.azure.core.credential.TokenCredential;
+import com.azure.core.http.HttpPipelineCallContext;
+import com.azure.core.http.HttpPipelineNextPolicy;
+import com.azure.core.http.HttpResponse;
+import com.azure.core.http.policy.HttpPipelinePolicy;
+import com.azure.core.management.profile.AzureProfile;
+import com.azure.resourcemanager.AzureResourceManager;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a sample workflow against many Azure Stack Hub stamps at the same time.
+ * <p>
+ * The stamps are read from a multi-stamp configuration file, see {@link SampleConfig#load}. Each
+ * stamp authenticates and runs the workflow on its own thread; a stamp that fails is reported and does
+ * not affect the others. Every request of a stamp is timed, and the runner prints a summary of all
+ * stamps followed by a latency table per stamp, by HTTP method and resource type.
+ */
+public final class MultiStampRunner {
+    /** The command line argument that selects the multi-stamp mode. */
+    public static final String STAMPS_ARGUMENT = "--stamps";
+    /** The configuration file used when {@code --stamps} is not followed by a path. */
+    public static final String DEFAULT_STAMPS_CONFIG = "../azureStackStampsConfig.json";
+
+    /**
+     * A sample workflow run against one stamp.
+     */
+    @FunctionalInterface
+    public interface Workflow {
+        /**
+         * @param stamp the stamp
+         * @return true if the workflow ran successfully
+         * @throws Exception if the workflow failed
+         */
+        boolean run(Stamp stamp) throws Exception;
+    }
+
+    private MultiStampRunner() {
+    }
+
+    /**
+     * @param args the command line arguments of a sample
+     * @return true if the arguments select the multi-stamp mode
+     */
+    public static boolean isRequested(String[] args) {
+        return Arrays.asList(args).contains(STAMPS_ARGUMENT);
+    }
+
+    /**
+     * Runs a workflow against the stamps selected by the command line arguments:
+     * {@code --stamps [config file] [--parallelism n]}.
+     *
+     * @param args the command line arguments of a sample
+     * @param workflow the workflow
+     * @return the result of every stamp
+     * @throws IOException if the configuration file cannot be read
+     * @throws IllegalStateException if the workflow failed on any stamp, after all stamps have finished
+     */
+    public static List<StampResult> run(String[] args, Workflow workflow) throws IOException {
+        List<String> arguments = Arrays.asList(args);
+        int index = arguments.indexOf(STAMPS_ARGUMENT);
+        String config = index + 1 < args.length && !args[index + 1].startsWith("--")
+                ? args[index + 1]
+                : DEFAULT_STAMPS_CONFIG;
+        int parallelismIndex = arguments.indexOf("--parallelism");
+        List<SampleConfig> stamps = SampleConfig.load(Paths.get(config));
+        int parallelism = parallelismIndex >= 0 && parallelismIndex + 1 < args.length
+                ? Integer.parseInt(args[parallelismIndex + 1])
+                : stamps.size();
+        List<StampResult> results = run(stamps, parallelism, workflow);
+        print(results);
+        long failed = results.stream().filter(result -> !result.succeeded).count();
+        if (failed > 0) {
+            throw new IllegalStateException(failed + " of " + results.size() + " stamps failed");
+        }
+        return results;
+    }
+
+    /**
+     * Runs a workflow against stamps concurrently and waits for all of them.
+     *
+     * @param stamps the stamps
+     * @param parallelism the maximum number of stamps running at the same time
+     * @param workflow the workflow
+     * @return the result of every stamp, in the order of the stamps
+     */
+    public static List<StampResult> run(List<SampleConfig> stamps, int parallelism, Workflow workflow) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, stamps.size())));
+        try {
+            List<Future<StampResult>> futures = new ArrayList<>();
+            for (SampleConfig stamp : stamps) {
+                futures.add(executor.submit(() -> runStamp(stamp, workflow)));
+            }
+            List<StampResult> results = new ArrayList<>();
+            for (Future<StampResult> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while running stamps", e);
+        } catch (ExecutionException e) {
+            // runStamp catches everything a workflow throws.
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static StampResult runStamp(SampleConfig config, Workflow workflow) {
+        final LatencyPolicy latencies = new LatencyPolicy();
+        final long start = System.nanoTime();
+        long authenticateMillis = 0;
+        try {
+            AzureProfile profile = config.profile();
+            TokenCredential credential = config.credential(profile);
+            AzureResourceManager azure = config.authenticate(credential, profile, latencies);
+            authenticateMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            boolean succeeded = workflow.run(new Stamp(config, azure, credential));
+            return new StampResult(config.name(), succeeded, null, authenticateMillis,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), latencies.snapshot());
+        } catch (Exception | AssertionError e) {
+            return new StampResult(config.name(), false, e, authenticateMillis,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), latencies.snapshot());
+        }
+    }
+
+    /**
+     * Prints the summary of all stamps and the latency table of each stamp.
+     *
+     * @param results the results
+     */
+    public static void print(List<StampResult> results) {
+        StringBuilder sb = new StringBuilder("\nStamps:\n");
+        sb.append(String.format("%-24s %-8s %10s %10s %9s%n", "Stamp", "Result", "Auth ms", "Total ms", "Requests"));
+        for (StampResult result : results) {
+            long requests = 0;
+            for (long[] samples : result.latencies.values()) {
+                requests += samples.length;
+            }
+            sb.append(String.format("%-24s %-8s %10d %10d %9d%n", result.name, result.succeeded ? "OK" : "FAILED",
+                    result.authenticateMillis, result.totalMillis, requests));
+            if (result.error != null) {
+                sb.append("    ").append(result.error).append('\n');
+            }
+        }
+        for (StampResult result : results) {
+            sb.append("\nLatency of ").append(result.name).append(":\n");
+            sb.append(String.format("%-64s %6s %8s %8s %8s%n", "Operation", "Count", "p50 ms", "p95 ms", "Max ms"));
+            for (Map.Entry<String, long[]> operation : result.latencies.entrySet()) {
+                long[] samples = operation.getValue();
+                sb.append(String.format("%-64s %6d %8d %8d %8d%n", operation.getKey(), samples.length,
+                        percentile(samples, 50), percentile(samples, 95), samples[samples.length - 1]));
+            }
+        }
+        System.out.println(sb);
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(sorted.length * percentile / 100) - 1;
+        return sorted[Math.max(0, index)];
+    }
+
+    /**
+     * A stamp the workflow runs against.
+     */
+    public static final class Stamp {
+        private final SampleConfig config;
+        private final AzureResourceManager azure;
+        private final TokenCredential credential;
+
+        private Stamp(SampleConfig config, AzureResourceManager azure, TokenCredential credential) {
+            this.config = config;
+            this.azure = azure;
+            this.credential = credential;
+        }
+
+        /** @return the configuration of the stamp */
+        public SampleConfig config() {
+            return config;
+        }
+
+        /** @return the azure client of the stamp */
+        public AzureResourceManager azure() {
+            return azure;
+        }
+
+        /** @return the service principal credential */
+        public TokenCredential credential() {
+            return credential;
+        }
+
+        /** @return the Azure location of the stamp */
+        public String location() {
+            return config.location();
+        }
+    }
+
+    /**
+     * The outcome of a workflow on one stamp.
+     */
+    public static final class StampResult {
+        private final String name;
+        private final boolean succeeded;
+        private final Throwable error;
+        private final long authenticateMillis;
+        private final long totalMillis;
+        private final Map<String, long[]> latencies;
+
+        private StampResult(String name, boolean succeeded, Throwable error, long authenticateMillis,
+                            long totalMillis, Map<String, long[]> latencies) {
+            this.name = name;
+            this.succeeded = succeeded;
+            this.error = error;
+            this.authenticateMillis = authenticateMillis;
+            this.totalMillis = totalMillis;
+            this.latencies = latencies;
+        }
+
+        /** @return the stamp name */
+        public String name() {
+            return name;
+        }
+
+        /** @return true if the workflow ran successfully */
+        public boolean isSucceeded() {
+            return succeeded;
+        }
+
+        /** @return the error the stamp failed with, or null */
+        public Throwable error() {
+            return error;
+        }
+
+        /** @return the time spent discovering endpoints and authenticating */
+        public long authenticateMillis() {
+            return authenticateMillis;
+        }
+
+        /** @return the time from start to end of the stamp */
+        public long totalMillis() {
+            return totalMillis;
+        }
+
+        /** @return the sorted request latencies in milliseconds, by HTTP method and resource type */
+        public Map<String, long[]> latencies() {
+            return Collections.unmodifiableMap(latencies);
+        }
+    }
+
+    /**
+     * Times the requests of one stamp.
+     */
+    private static final class LatencyPolicy implements HttpPipelinePolicy {
+        private final Map<String, List<Long>> latencies = new TreeMap<>();
+
+        @Override
+        public Mono<HttpResponse> process(HttpPipelineCallContext context, HttpPipelineNextPolicy next) {
+            final String operation = context.getHttpRequest().getHttpMethod() + " " + operation(context.getHttpRequest().getUrl());
+            final long start = System.nanoTime();
+            return next.process().doOnEach(signal -> {
+                if (signal.isOnNext() || signal.isOnError()) {
+                    record(operation, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                }
+            });
+        }
+
+        private synchronized void record(String operation, long millis) {
+            latencies.computeIfAbsent(operation, key -> new ArrayList<>()).add(millis);
+        }
+
+        private synchronized Map<String, long[]> snapshot() {
+            Map<String, long[]> snapshot = new TreeMap<>();
+            latencies.forEach((operation, samples) ->
+                    snapshot.put(operation, samples.stream().mapToLong(Long::longValue).sorted().toArray()));
+            return snapshot;
+        }
+
+        /**
+         * Reduces an ARM URL to its resource type, e.g. "Microsoft.Compute/virtualMachines", so that
+         * requests to different resources of the same type are grouped.
+         */
+        private static String operation(URL url) {
+            String[] segments = url.getPath().split("/");
+            int providers = -1;
+            for (int i = 0; i < segments.length; i++) {
+                if ("providers".equalsIgnoreCase(segments[i])) {
+                    providers = i;
+                }
+            }
+            if (providers >= 0 && providers + 1 < segments.length) {
+                StringBuilder type = new StringBuilder(segments[providers + 1]);
+                for (int i = providers + 2; i < segments.length; i += 2) {
+                    type.append('/').append(segments[i]);
+                }
+                return type.toString();
+            }
+            for (int i = segments.length - 1; i >= 0; i--) {
+                if ("resourceGroups".equalsIgnoreCase(segments[i]) || "subscriptions".equalsIgnoreCase(segments[i])) {
+                    return segments[i];
+                }
+            }
+            return url.getHost() + url.getPath();
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import com.azure.core.util.logging.ClientLogger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs external commands.
+ * <p>
+ * Standard output and standard error are drained concurrently while the process runs, so a child
+ * that fills one pipe buffer cannot deadlock against a parent waiting on the other. Output lines can
+ * be streamed to callbacks as they arrive, commands can be given a timeout or be cancelled, and
+ * {@link #runAll(List, int, Duration)} runs many commands in parallel on a bounded pool.
+ */
+public final class ProcessRunner {
+    private static final ClientLogger LOGGER = new ClientLogger(ProcessRunner.class);
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+    private static final ExecutorService DRAINERS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "process-runner-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ProcessRunner() {
+    }
+
+    /**
+     * Runs a command and blocks until it has exited, timed out or been interrupted.
+     *
+     * @param command the command and its arguments
+     * @param timeout the time after which the process is killed, or null to wait indefinitely
+     * @param onStdout receives each line of standard output as it arrives, or null
+     * @param onStderr receives each line of standard error as it arrives, or null
+     * @return the result of the command
+     * @throws IOException if the process cannot be started or is interrupted
+     */
+    public static ProcessResult run(String[] command, Duration timeout,
+                                    Consumer<String> onStdout, Consumer<String> onStderr) throws IOException {
+        return execute(command, timeout, onStdout, onStderr, new Execution());
+    }
+
+    /**
+     * Starts a command without blocking.
+     *
+     * @param command the command and its arguments
+     * @param timeout the time after which the process is killed, or null to wait indefinitely
+     * @param onStdout receives each line of standard output as it arrives, or null
+     * @param onStderr receives each line of standard error as it arrives, or null
+     * @return the running command, which can be awaited or cancelled
+     */
+    public static Execution start(String[] command, Duration timeout,
+                                  Consumer<String> onStdout, Consumer<String> onStderr) {
+        Execution execution = new Execution();
+        DRAINERS.execute(() -> complete(execution, command, timeout, onStdout, onStderr));
+        return execution;
+    }
+
+    /**
+     * Runs commands in parallel and blocks until all of them have finished.
+     *
+     * @param commands the commands and their arguments
+     * @param parallelism the maximum number of processes running at the same time
+     * @param timeout the time after which each process is killed, or null to wait indefinitely
+     * @return the results, in the order of the commands
+     * @throws IOException if a process cannot be started or the wait is interrupted
+     */
+    public static List<ProcessResult> runAll(List<String[]> commands, int parallelism, Duration timeout) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, commands.size())));
+        try {
+            List<Future<ProcessResult>> futures = new ArrayList<>();
+            for (String[] command : commands) {
+                futures.add(pool.submit(() -> run(command, timeout, null, null)));
+            }
+            List<ProcessResult> results = new ArrayList<>();
+            for (Future<ProcessResult> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for commands");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw LOGGER.logExceptionAsError(new IllegalStateException("command failed", e.getCause()));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void complete(Execution execution, String[] command, Duration timeout,
+                                 Consumer<String> onStdout, Consumer<String> onStderr) {
+        try {
+            execution.result.complete(execute(command, timeout, onStdout, onStderr, execution));
+        } catch (IOException | RuntimeException e) {
+            execution.result.completeExceptionally(e);
+        }
+    }
+
+    private static ProcessResult execute(String[] command, Duration timeout, Consumer<String> onStdout,
+                                         Consumer<String> onStderr, Execution execution) throws IOException {
+        final long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).start();
+        execution.process = process;
+        if (execution.cancelled.get()) {
+            process.destroyForcibly();
+        }
+        process.getOutputStream().close();
+        final List<String> stdoutLines = Collections.synchronizedList(new ArrayList<>());
+        final List<String> stderrLines = Collections.synchronizedList(new ArrayList<>());
+        Future<?> stdout = DRAINERS.submit(() -> drain(process.getInputStream(), stdoutLines, onStdout));
+        Future<?> stderr = DRAINERS.submit(() -> drain(process.getErrorStream(), stderrLines, onStderr));
+        try {
+            boolean exited = true;
+            if (timeout == null) {
+                process.waitFor();
+            } else {
+                exited = process.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            }
+            if (!exited) {
+                process.destroyForcibly();
+                process.waitFor();
+            }
+            boolean killed = !exited || execution.cancelled.get();
+            await(stdout, killed);
+            await(stderr, killed);
+            return new ProcessResult(command, process.exitValue(), new ArrayList<>(stdoutLines), new ArrayList<>(stderrLines),
+                    Duration.ofNanos(System.nanoTime() - start), !exited, execution.cancelled.get());
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while running " + String.join(" ", command));
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof UncheckedIOException
+                    ? ((UncheckedIOException) e.getCause()).getCause()
+                    : new IOException("failed to read output of " + String.join(" ", command), e.getCause());
+        }
+    }
+
+    private static void await(Future<?> drainer, boolean killed) throws InterruptedException, ExecutionException {
+        if (!killed) {
+            drainer.get();
+            return;
+        }
+        // Grandchildren of a killed process can hold its pipes open; keep what was read so far.
+        try {
+            drainer.get(1, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            drainer.cancel(true);
+        }
+    }
+
+    private static void drain(InputStream stream, List<String> lines, Consumer<String> onLine) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+                if (onLine != null) {
+                    onLine.accept(line);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A command started with {@link #start(String[], Duration, Consumer, Consumer)}.
+     */
+    public static final class Execution {
+        private final CompletableFuture<ProcessResult> result = new CompletableFuture<>();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private volatile Process process;
+
+        private Execution() {
+        }
+
+        /** @return the result, completed when the process has exited */
+        public CompletableFuture<ProcessResult> result() {
+            return result;
+        }
+
+        /**
+         * Kills the process. The result still completes, with {@link ProcessResult#isCancelled()} set.
+         */
+        public void cancel() {
+            cancelled.set(true);
+            Process running = process;
+            if (running != null) {
+                running.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * The result of a command.
+     */
+    public static final class ProcessResult {
+        private final String[] command;
+        private final int exitCode;
+        private final List<String> stdout;
+        private final List<String> stderr;
+        private final Duration duration;
+        private final boolean timedOut;
+        private final boolean cancelled;
+
+        private ProcessResult(String[] command, int exitCode, List<String> stdout, List<String> stderr,
+                              Duration duration, boolean timedOut, boolean cancelled) {
+            this.command = command;
+            this.exitCode = exitCode;
+            this.stdout = Collections.unmodifiableList(stdout);
+            this.stderr = Collections.unmodifiableList(stderr);
+            this.duration = duration;
+            this.timedOut = timedOut;
+            this.cancelled = cancelled;
+        }
+
+        /** @return the command and its arguments */
+        public List<String> command() {
+            return Arrays.asList(command);
+        }
+
+        /** @return the exit code of the process */
+        public int exitCode() {
+            return exitCode;
+        }
+
+        /** @return the lines of standard output */
+        public List<String> stdout() {
+            return stdout;
+        }
+
+        /** @return the lines of standard error */
+        public List<String> stderr() {
+            return stderr;
+        }
+
+        /** @return the time from start to exit */
+        public Duration duration() {
+            return duration;
+        }
+
+        /** @return true if the process was killed because it ran into the timeout */
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
+        /** @return true if the process was killed by {@link Execution#cancel()} */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public String toString() {
+            return String.join(" ", command) + ": exit code " + exitCode + " after " + duration.toMillis() + " ms"
+                    + (timedOut ? " (timed out)" : "") + (cancelled ? " (cancelled)" : "");
+        }
+    }
+}
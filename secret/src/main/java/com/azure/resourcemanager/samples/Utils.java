@@ -151,32 +151,22 @@ import com.azure.resourcemanager.storage.models.StorageAccount;
 import com.azure.resourcemanager.storage.models.StorageAccountEncryptionStatus;
 import com.azure.resourcemanager.storage.models.StorageAccountKey;
 import com.azure.resourcemanager.storage.models.StorageService;
-import org.apache.commons.net.ftp.FTP;
-import org.apache.commons.net.ftp.FTPClient;
 import reactor.core.publisher.Mono;
-import reactor.util.retry.Retry;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.security.KeyPair;
-import java.security.KeyPairGenerator;
-import java.security.NoSuchAlgorithmException;
-import java.security.PublicKey;
-import java.security.interfaces.RSAPublicKey;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Base64;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -193,8 +183,7 @@ import java.util.stream.Collectors;
 public final class Utils {
 
     private static final ClientLogger LOGGER = new ClientLogger(Utils.class);
-
-    private static String sshPublicKey;
+    private static final NameAllocator NAME_ALLOCATOR = new NameAllocator();
 
     private Utils() {
     }
@@ -207,36 +196,38 @@ public final class Utils {
     }
 
     /**
-     * @return an SSH public key
+     * @return an SSH public key, the same one on every call
      */
     public static String sshPublicKey() {
-        if (sshPublicKey == null) {
-            try {
-                KeyPairGenerator keyGen = KeyPairGenerator.getInstance("RSA");
-                keyGen.initialize(1024);
-                KeyPair pair = keyGen.generateKeyPair();
-                PublicKey publicKey = pair.getPublic();
+        return SshKeyHolder.PUBLIC_KEY;
+    }
 
-                RSAPublicKey rsaPublicKey = (RSAPublicKey) publicKey;
-                ByteArrayOutputStream byteOs = new ByteArrayOutputStream();
-                DataOutputStream dos = new DataOutputStream(byteOs);
-                dos.writeInt("ssh-rsa".getBytes(StandardCharsets.US_ASCII).length);
-                dos.write("ssh-rsa".getBytes(StandardCharsets.US_ASCII));
-                dos.writeInt(rsaPublicKey.getPublicExponent().toByteArray().length);
-                dos.write(rsaPublicKey.getPublicExponent().toByteArray());
-                dos.writeInt(rsaPublicKey.getModulus().toByteArray().length);
-                dos.write(rsaPublicKey.getModulus().toByteArray());
-                String publicKeyEncoded = new String(Base64.getEncoder().encode(byteOs.toByteArray()), StandardCharsets.US_ASCII);
-                sshPublicKey = "ssh-rsa " + publicKeyEncoded;
-            } catch (NoSuchAlgorithmException | IOException e) {
-                throw LOGGER.logExceptionAsError(new IllegalStateException("failed to generate ssh key", e));
-            }
-        }
-        return sshPublicKey;
+    /**
+     * @return a new SSH public key on every call, taken from a pool that is filled in the background
+     */
+    public static String newSshPublicKey() {
+        return SshKeyPoolHolder.POOL.take().publicKey();
     }
 
     /**
-     * Creates a randomized resource name.
+     * @return the pool behind {@link #newSshPublicKey()}, started on first use
+     */
+    public static SshKeyPool sshKeyPool() {
+        return SshKeyPoolHolder.POOL;
+    }
+
+    // Initialized on first use by the class loader, which makes the lazy initialization thread safe.
+    // A single key needs no pool, so samples that never ask for per-VM keys start no generator thread.
+    private static final class SshKeyHolder {
+        private static final String PUBLIC_KEY = SshKeyPool.generate(SshKeyPool.Algorithm.RSA_2048).publicKey();
+    }
+
+    private static final class SshKeyPoolHolder {
+        private static final SshKeyPool POOL = new SshKeyPool(SshKeyPool.Algorithm.RSA_2048, 8);
+    }
+
+    /**
+     * Creates a randomized resource name, unique among the names created by this process.
      * Please provider your own implementation, or avoid using the method, if code is to be used in production.
      *
      * @param azure the AzureResourceManager instance.
@@ -245,11 +236,11 @@ public final class Utils {
      * @return the randomized resource name.
      */
     public static String randomResourceName(AzureResourceManager azure, String prefix, int maxLen) {
-        return azure.resourceGroups().manager().internalContext().randomResourceName(prefix, maxLen);
+        return NAME_ALLOCATOR.next("", prefix, maxLen);
     }
 
     /**
-     * Generates the specified number of random resource names with the same prefix.
+     * Generates the specified number of random resource names with the same prefix, reserved as one batch.
      * Please provider your own implementation, or avoid using the method, if code is to be used in production.
      *
      * @param azure the AzureResourceManager instance.
@@ -259,11 +250,15 @@ public final class Utils {
      * @return the randomized resource names.
      */
     public static String[] randomResourceNames(AzureResourceManager azure, String prefix, int maxLen, int count) {
-        String[] names = new String[count];
-        for (int i = 0; i < count; i++) {
-            names[i] = randomResourceName(azure, prefix, maxLen);
-        }
-        return names;
+        return NAME_ALLOCATOR.reserve("", prefix, maxLen, count).toArray(new String[0]);
+    }
+
+    /**
+     * @return the allocator behind {@link #randomResourceName(AzureResourceManager, String, int)}, which can also
+     * reserve names per scope and verify globally unique names
+     */
+    public static NameAllocator nameAllocator() {
+        return NAME_ALLOCATOR;
     }
 
     /**
@@ -278,7 +273,7 @@ public final class Utils {
     }
 
     /**
-     * Creates a randomized resource name.
+     * Creates a randomized resource name, unique among the names created by this process.
      * Please provider your own implementation, or avoid using the method, if code is to be used in production.
      *
      * @param authenticated the AzureResourceManager.Authenticated instance.
@@ -287,7 +282,7 @@ public final class Utils {
      * @return the randomized resource name.
      */
     public static String randomResourceName(AzureResourceManager.Authenticated authenticated, String prefix, int maxLen) {
-        return authenticated.roleAssignments().manager().internalContext().randomResourceName(prefix, maxLen);
+        return NAME_ALLOCATOR.next("", prefix, maxLen);
     }
 
     /**
@@ -1334,6 +1329,8 @@ public final class Utils {
 
     /**
      * This method creates a certificate for given password.
+     * <p>
+     * The certificate is generated in process, see {@link SelfSignedCertificates}.
      *
      * @param certPath location of certificate file
      * @param pfxPath location of pfx file
@@ -1341,7 +1338,6 @@ public final class Utils {
      * @param password alias password
      * @param cnName domain name
      * @param dnsName dns name in subject alternate name
-     * @throws Exception exceptions from the creation
      * @throws IOException IO Exception
      */
     public static void createCertificate(String certPath, String pfxPath, String alias,
@@ -1349,94 +1345,37 @@ public final class Utils {
         if (new File(pfxPath).exists()) {
             return;
         }
-        String validityInDays = "3650";
-        String keyAlg = "RSA";
-        String sigAlg = "SHA1withRSA";
-        String keySize = "2048";
-        String storeType = "pkcs12";
-        String command = "keytool";
-        String jdkPath = System.getProperty("java.home");
-        if (jdkPath != null && !jdkPath.isEmpty()) {
-            jdkPath = jdkPath.concat("\\bin");
-            if (new File(jdkPath).isDirectory()) {
-                command = String.format("%s%s%s", jdkPath, File.separator, command);
-            }
-        } else {
-            return;
-        }
-
-        // Create Pfx file
-        String[] commandArgs = {command, "-genkey", "-alias", alias,
-                "-keystore", pfxPath, "-storepass", password, "-validity",
-                validityInDays, "-keyalg", keyAlg, "-sigalg", sigAlg, "-keysize", keySize,
-                "-storetype", storeType, "-dname", "CN=" + cnName, "-ext", "EKU=1.3.6.1.5.5.7.3.1"};
+        SelfSignedCertificates.Spec spec = new SelfSignedCertificates.Spec(cnName)
+                .withExtendedKeyUsage(SelfSignedCertificates.SERVER_AUTHENTICATION)
+                .withKeySize(2048)
+                .withValidityInDays(3650);
         if (dnsName != null) {
-            List<String> args = new ArrayList<>(Arrays.asList(commandArgs));
-            args.add("-ext");
-            args.add("san=dns:" + dnsName);
-            commandArgs = args.toArray(new String[0]);
-        }
-        Utils.cmdInvocation(commandArgs, true);
-
-        // Create cer file i.e. extract public key from pfx
-        File pfxFile = new File(pfxPath);
-        if (pfxFile.exists()) {
-            String[] certCommandArgs = {command, "-export", "-alias", alias,
-                    "-storetype", storeType, "-keystore", pfxPath,
-                    "-storepass", password, "-rfc", "-file", certPath};
-            // output of keytool export command is going to error stream
-            // although command is
-            // executed successfully, hence ignoring error stream in this case
-            Utils.cmdInvocation(certCommandArgs, true);
-
-            // Check if file got created or not
-            File cerFile = new File(pfxPath);
-            if (!cerFile.exists()) {
-                throw new IOException(
-                        "Error occurred while creating certificate"
-                                + String.join(" ", certCommandArgs));
-            }
-        } else {
-            throw new IOException("Error occurred while creating certificates"
-                    + String.join(" ", commandArgs));
+            spec.withDnsName(dnsName);
         }
+        SelfSignedCertificates.GeneratedCertificate certificate = SelfSignedCertificates.generate(spec);
+        certificate.writePkcs12(new File(pfxPath).toPath(), alias, password);
+        certificate.writeCertificatePem(new File(certPath).toPath());
     }
 
     /**
      * This method is used for invoking native commands.
+     * <p>
+     * Both output streams are drained concurrently, see {@link ProcessRunner}.
      *
      * @param command :- command to invoke.
      * @param ignoreErrorStream : Boolean which controls whether to throw exception or not
      *                          based on error stream.
-     * @return result :- depending on the method invocation.
-     * @throws Exception exceptions thrown from the execution
+     * @return result :- the first line of the standard output, or null if there is none.
+     * @throws IOException if the command cannot be run, or writes to the error stream and the error stream is not ignored
      */
     public static String cmdInvocation(String[] command,
                                        boolean ignoreErrorStream) throws IOException {
-        String result = "";
-        String error = "";
-
-        Process process = new ProcessBuilder(command).start();
-        try (
-                InputStream inputStream = process.getInputStream();
-                InputStream errorStream = process.getErrorStream();
-                BufferedReader br = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
-                BufferedReader ebr = new BufferedReader(new InputStreamReader(errorStream, StandardCharsets.UTF_8));
-        ) {
-            result = br.readLine();
-            process.waitFor();
-            error = ebr.readLine();
-            if (error != null && (!error.equals(""))) {
-                // To do - Log error message
-
-                if (!ignoreErrorStream) {
-                    throw new IOException(error, null);
-                }
-            }
-        } catch (Exception e) {
-            throw new RuntimeException("Exception occurred while invoking command", e);
+        ProcessRunner.ProcessResult result = ProcessRunner.run(command, null, null, null);
+        String error = result.stderr().isEmpty() ? null : result.stderr().get(0);
+        if (error != null && !error.isEmpty() && !ignoreErrorStream) {
+            throw new IOException(error);
         }
-        return result;
+        return result.stdout().isEmpty() ? null : result.stdout().get(0);
     }
 
     /**
@@ -1696,6 +1635,7 @@ public final class Utils {
      * @param profile the publishing profile for the app service.
      * @param fileName the name of the file on server
      * @param file the local file
+     * @throws IllegalStateException if the file cannot be uploaded
      */
     public static void uploadFileViaFtp(PublishingProfile profile, String fileName, InputStream file) {
         String path = "./site/wwwroot/webapps";
@@ -1708,36 +1648,81 @@ public final class Utils {
      * @param profile the publishing profile for the app service.
      * @param fileName the name of the file on server
      * @param file the local file
+     * @throws IllegalStateException if the file cannot be uploaded
      */
     public static void uploadFileForFunctionViaFtp(PublishingProfile profile, String fileName, InputStream file) {
         String path = "./site/wwwroot";
         uploadFileViaFtp(profile, fileName, file, path);
     }
 
-    private static void uploadFileViaFtp(PublishingProfile profile, String fileName, InputStream file, String path) {
-        FTPClient ftpClient = new FTPClient();
-        String[] ftpUrlSegments = profile.ftpUrl().split("/", 2);
-        String server = ftpUrlSegments[0];
-        if (fileName.contains("/")) {
-            int lastslash = fileName.lastIndexOf('/');
-            path = path + "/" + fileName.substring(0, lastslash);
-            fileName = fileName.substring(lastslash + 1);
+    /**
+     * Uploads the files of a local directory that changed since the last sync to an Azure app service for Web App.
+     *
+     * @param profile the publishing profile for the app service.
+     * @param localDirectory the local directory
+     * @param manifest the local manifest of the last sync, created if it does not exist
+     * @param deleteOrphans whether to delete remote files that no longer exist locally
+     * @return the sync result
+     * @throws IOException if the local directory or the manifest cannot be read or written
+     */
+    public static FtpSync.SyncResult syncDirectoryViaFtp(PublishingProfile profile, Path localDirectory, Path manifest,
+                                                         boolean deleteOrphans) throws IOException {
+        return syncDirectoryViaFtp(profile, localDirectory, manifest, deleteOrphans, "site/wwwroot/webapps");
+    }
+
+    /**
+     * Uploads the files of a local directory that changed since the last sync to an Azure app service for Function App.
+     *
+     * @param profile the publishing profile for the app service.
+     * @param localDirectory the local directory
+     * @param manifest the local manifest of the last sync, created if it does not exist
+     * @param deleteOrphans whether to delete remote files that no longer exist locally
+     * @return the sync result
+     * @throws IOException if the local directory or the manifest cannot be read or written
+     */
+    public static FtpSync.SyncResult syncDirectoryForFunctionViaFtp(PublishingProfile profile, Path localDirectory, Path manifest,
+                                                                    boolean deleteOrphans) throws IOException {
+        return syncDirectoryViaFtp(profile, localDirectory, manifest, deleteOrphans, "site/wwwroot");
+    }
+
+    /**
+     * Deploys a local directory to an Azure app service in a single zip deploy request.
+     *
+     * @param profile the publishing profile for the app service.
+     * @param localDirectory the local directory, deployed to site/wwwroot
+     * @return the final deployment status
+     */
+    public static ZipDeployment.DeploymentStatus deployDirectoryViaZip(PublishingProfile profile, Path localDirectory) {
+        return new ZipDeployment(profile).deploy(localDirectory);
+    }
+
+    private static FtpSync.SyncResult syncDirectoryViaFtp(PublishingProfile profile, Path localDirectory, Path manifest,
+                                                          boolean deleteOrphans, String path) throws IOException {
+        try (FtpDeployment deployment = new FtpDeployment(profile, path, 4)) {
+            FtpSync sync = new FtpSync(deployment, manifest);
+            if (deleteOrphans) {
+                sync.withDeleteOrphans();
+            }
+            return sync.sync(localDirectory);
         }
-        try {
-            ftpClient.connect(server);
-            ftpClient.enterLocalPassiveMode();
-            ftpClient.login(profile.ftpUsername(), profile.ftpPassword());
-            ftpClient.setFileType(FTP.BINARY_FILE_TYPE);
-            for (String segment : path.split("/")) {
-                if (!ftpClient.changeWorkingDirectory(segment)) {
-                    ftpClient.makeDirectory(segment);
-                    ftpClient.changeWorkingDirectory(segment);
-                }
+    }
+
+    private static void uploadFileViaFtp(PublishingProfile profile, String fileName, InputStream file, String path) {
+        Path local = null;
+        try (FtpDeployment deployment = new FtpDeployment(profile, path, 1)) {
+            // Buffer the stream in a file, so that a failed upload can be retried on a new session.
+            local = Files.createTempFile("ftp-upload", ".tmp");
+            Files.copy(file, local, StandardCopyOption.REPLACE_EXISTING);
+            FtpDeployment.Result result = deployment.upload(Collections.singletonMap(fileName, local));
+            for (Throwable error : result.failed().values()) {
+                throw LOGGER.logExceptionAsError(new IllegalStateException("failed to upload " + fileName + " via FTP", error));
             }
-            ftpClient.storeFile(fileName, file);
-            ftpClient.disconnect();
         } catch (IOException e) {
-            e.printStackTrace();
+            throw LOGGER.logExceptionAsError(new UncheckedIOException("failed to upload " + fileName + " via FTP", e));
+        } finally {
+            if (local != null) {
+                local.toFile().delete();
+            }
         }
     }
 
@@ -2394,40 +2379,26 @@ public final class Utils {
     /**
      * Sends a GET request to target URL.
      * <p>
-     * Retry logic tuned for AppService.
+     * Retry logic tuned for AppService, see {@link #httpRetryStrategy()}.
      * The method does not handle 301 redirect.
      *
      * @param urlString the target URL.
      * @return Content of the HTTP response.
      */
     public static String sendGetRequest(String urlString) {
-        HttpRequest request = new HttpRequest(HttpMethod.GET, urlString);
-        Mono<Response<String>> response =
-                stringResponse(HTTP_PIPELINE.send(request)
-                        .flatMap(response1 -> {
-                            int code = response1.getStatusCode();
-                            if (code == 200 || code == 400 || code == 404) {
-                                return Mono.just(response1);
-                            } else {
-                                return Mono.error(new HttpResponseException(response1));
-                            }
-                        })
-                        .retryWhen(Retry
-                                .fixedDelay(5, Duration.ofSeconds(30))
-                                .filter(t -> {
-                                    boolean retry = false;
-                                    if (t instanceof TimeoutException) {
-                                        retry = true;
-                                    } else if (t instanceof HttpResponseException
-                                            && ((HttpResponseException) t).getResponse().getStatusCode() == 503) {
-                                        retry = true;
-                                    }
-
-                                    if (retry) {
-                                        LOGGER.info("retry GET request to {}", urlString);
-                                    }
-                                    return retry;
-                                })));
+        Mono<Response<String>> response = HTTP_RETRY_STRATEGY.execute(
+                () -> stringResponse(CACHED_GET_PIPELINE.send(new HttpRequest(HttpMethod.GET, urlString))
+                        .flatMap(Utils::checkAppServiceResponse)),
+                t -> {
+                    boolean retry = t instanceof TimeoutException
+                            || (t instanceof HttpResponseException
+                                    && ((HttpResponseException) t).getResponse().getStatusCode() == 503);
+                    if (retry) {
+                        LOGGER.info("retry GET request to {}", urlString);
+                    }
+                    return retry;
+                },
+                true);
         Response<String> ret = response.block();
         return ret == null ? null : ret.getValue();
     }
@@ -2435,7 +2406,7 @@ public final class Utils {
     /**
      * Sends a POST request to target URL.
      * <p>
-     * Retry logic tuned for AppService.
+     * Retry logic tuned for AppService, see {@link #httpRetryStrategy()}.
      *
      * @param urlString the target URL.
      * @param body the request body.
@@ -2443,30 +2414,17 @@ public final class Utils {
      * */
     public static String sendPostRequest(String urlString, String body) {
         try {
-            HttpRequest request = new HttpRequest(HttpMethod.POST, urlString).setBody(body);
-            Mono<Response<String>> response =
-                    stringResponse(HTTP_PIPELINE.send(request)
-                            .flatMap(response1 -> {
-                                int code = response1.getStatusCode();
-                                if (code == 200 || code == 400 || code == 404) {
-                                    return Mono.just(response1);
-                                } else {
-                                    return Mono.error(new HttpResponseException(response1));
-                                }
-                            })
-                            .retryWhen(Retry
-                                    .fixedDelay(5, Duration.ofSeconds(30))
-                                    .filter(t -> {
-                                        boolean retry = false;
-                                        if (t instanceof TimeoutException) {
-                                            retry = true;
-                                        }
-
-                                        if (retry) {
-                                            LOGGER.info("retry POST request to {}", urlString);
-                                        }
-                                        return retry;
-                                    })));
+            Mono<Response<String>> response = HTTP_RETRY_STRATEGY.execute(
+                    () -> stringResponse(HTTP_PIPELINE.send(new HttpRequest(HttpMethod.POST, urlString).setBody(body))
+                            .flatMap(Utils::checkAppServiceResponse)),
+                    t -> {
+                        boolean retry = t instanceof TimeoutException;
+                        if (retry) {
+                            LOGGER.info("retry POST request to {}", urlString);
+                        }
+                        return retry;
+                    },
+                    false);
             Response<String> ret = response.block();
             return ret == null ? null : ret.getValue();
         } catch (Exception e) {
@@ -2475,22 +2433,78 @@ public final class Utils {
         }
     }
 
+    /**
+     * The retry strategy of {@link #sendGetRequest(String)} and {@link #sendPostRequest(String, String)}:
+     * up to 6 attempts with jittered backoff between 1 and 30 seconds within a 5 minute deadline, and
+     * GET requests hedged after 10 seconds or the 95th percentile of recent latencies.
+     *
+     * @return the retry strategy, whose metrics count the retries of the samples
+     */
+    public static RetryStrategy httpRetryStrategy() {
+        return HTTP_RETRY_STRATEGY;
+    }
+
+    /**
+     * The conditional GET cache of {@link #sendGetRequest(String)}, bounded to 16 MB of bodies. Only that
+     * method goes through the cache; zip deployments and POST requests do not.
+     *
+     * @return the cache policy, whose metrics count hits and bytes saved
+     */
+    public static HttpCachePolicy httpCachePolicy() {
+        return HTTP_CACHE;
+    }
+
+    private static Mono<HttpResponse> checkAppServiceResponse(HttpResponse response) {
+        int code = response.getStatusCode();
+        if (code == 200 || code == 400 || code == 404) {
+            return Mono.just(response);
+        } else {
+            return Mono.error(new HttpResponseException(response));
+        }
+    }
+
     private static Mono<Response<String>> stringResponse(Mono<HttpResponse> responseMono) {
         return responseMono.flatMap(response -> response.getBodyAsString()
                 .map(str -> new SimpleResponse<>(response.getRequest(), response.getStatusCode(), response.getHeaders(), str)));
     }
 
-    private static final HttpPipeline HTTP_PIPELINE = new HttpPipelineBuilder()
+    private static final RetryStrategy HTTP_RETRY_STRATEGY = new RetryStrategy()
+            .withMaxAttempts(6)
+            .withBackoff(Duration.ofSeconds(1), Duration.ofSeconds(30))
+            .withDeadline(Duration.ofMinutes(5))
+            .withHedging(Duration.ofSeconds(10));
+
+    private static final HttpCachePolicy HTTP_CACHE = new HttpCachePolicy(16 * 1024 * 1024);
+
+    static final HttpPipeline HTTP_PIPELINE = new HttpPipelineBuilder()
+            .policies(
+                    new HttpLoggingPolicy(new HttpLogOptions().setLogLevel(HttpLogDetailLevel.BASIC)),
+                    new RetryPolicy("Retry-After", ChronoUnit.SECONDS))
+            .build();
+
+    private static final HttpPipeline CACHED_GET_PIPELINE = new HttpPipelineBuilder()
             .policies(
                     new HttpLoggingPolicy(new HttpLogOptions().setLogLevel(HttpLogDetailLevel.BASIC)),
+                    HTTP_CACHE,
                     new RetryPolicy("Retry-After", ChronoUnit.SECONDS))
             .build();
 
+    /**
+     * Counts the elements of an iterable.
+     * <p>
+     * For a paged listing this fetches and deserializes every page. To count a large listing, reading the
+     * pages with a streaming parser that only looks at the fields it counts is much cheaper.
+     *
+     * @param iterable the iterable
+     * @param <T> the element type
+     * @return the number of elements
+     */
     public static <T> int getSize(Iterable<T> iterable) {
         int res = 0;
         Iterator<T> iterator = iterable.iterator();
         while (iterator.hasNext()) {
             iterator.next();
+            res++;
         }
         return res;
     }
@@ -0,0 +1,22 @@
+#!/bin/sh
+# Compares the start of a sample with and without its AppCDS archive, e.g.
+#   ./startup-benchmark.sh vm 10
+# Both variants run the sample against a local ARM stub, so no stamp is needed. Build the jar and the
+# archive with "mvn -Pappcds verify" first.
+
+if [ $# -lt 1 ]; then
+  echo "usage: $0 <resourcegroup|secret|storage|vm> [runs]" >&2
+  exit 2
+fi
+
+cd "$(dirname "$0")/$1" || exit 1
+target=$(pwd -P)/target
+jar=$(ls "$target"/*-jar-with-dependencies.jar 2>/dev/null | head -n 1)
+if [ -z "$jar" ]; then
+  echo "no jar-with-dependencies in $target, run mvn -Pappcds verify first" >&2
+  exit 1
+fi
+java=${JAVA_HOME:+$JAVA_HOME/bin/}java
+
+exec "$java" -cp "$jar" com.azure.resourcemanager.samples.AppCdsArchive benchmark \
+  "${jar%-jar-with-dependencies.jar}.jsa" "${2:-5}"
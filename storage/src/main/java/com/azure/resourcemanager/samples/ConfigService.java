@@ -0,0 +1,250 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import com.azure.core.credential.AccessToken;
+import com.azure.core.credential.TokenCredential;
+import com.azure.core.credential.TokenRequestContext;
+import com.azure.core.management.profile.AzureProfile;
+import com.azure.core.util.logging.ClientLogger;
+import com.azure.resourcemanager.AzureResourceManager;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the configuration of a long-running process in sync with its configuration file.
+ * <p>
+ * The file is watched with a {@link WatchService}; a burst of edits is debounced into one reload, and
+ * a file that fails to load leaves the current configuration in place. A reload swaps the whole state
+ * atomically. The credential handed out by {@link #credential()} delegates to the current service
+ * principal, so a rotated secret takes effect without rebuilding clients, and the client returned by
+ * {@link #azure()} is kept, with its pipeline and caches, until the endpoint, tenant or subscription
+ * changes. Operations already running finish with the state they started with.
+ */
+public final class ConfigService implements AutoCloseable {
+    private static final ClientLogger LOGGER = new ClientLogger(ConfigService.class);
+
+    private final Path file;
+    private final String stampName;
+    private final Duration debounce;
+    private final AtomicReference<State> state = new AtomicReference<>();
+    private final List<Consumer<SampleConfig>> listeners = new CopyOnWriteArrayList<>();
+    private final TokenCredential credential = new ReloadingCredential();
+    private final AtomicLong reloads = new AtomicLong();
+    private final AtomicLong failedReloads = new AtomicLong();
+    private final WatchService watchService;
+    private final Thread watcher;
+    private final ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> pendingReload;
+
+    /**
+     * Loads a configuration file and starts watching it.
+     *
+     * @param file the configuration file
+     * @param stampName the stamp to use from a multi-stamp file, or null for the first one
+     * @param debounce the quiet time after the last change before the file is reloaded
+     * @throws IOException if the file cannot be loaded or watched
+     */
+    public ConfigService(Path file, String stampName, Duration debounce) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.stampName = stampName;
+        this.debounce = debounce;
+        this.state.set(newState(select(SampleConfig.load(this.file)), null));
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "config-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.watcher = new Thread(this::watch, "config-watch");
+        this.watcher.setDaemon(true);
+        this.watcher.start();
+    }
+
+    /** @return the current configuration */
+    public SampleConfig config() {
+        return state.get().config;
+    }
+
+    /** @return the profile of the current configuration */
+    public AzureProfile profile() {
+        return state.get().profile;
+    }
+
+    /** @return a credential that always authenticates with the current service principal */
+    public TokenCredential credential() {
+        return credential;
+    }
+
+    /**
+     * Returns the client of the current configuration, created on first use and reused until the
+     * endpoint, tenant or subscription changes.
+     *
+     * @return the azure client
+     */
+    public AzureResourceManager azure() {
+        State current = state.get();
+        AzureResourceManager azure = current.azure.get();
+        if (azure == null) {
+            synchronized (current) {
+                azure = current.azure.get();
+                if (azure == null) {
+                    azure = current.config.authenticate(credential, current.profile);
+                    current.azure.set(azure);
+                }
+            }
+        }
+        return azure;
+    }
+
+    /**
+     * @param listener called with the new configuration after each reload
+     * @return this service
+     */
+    public ConfigService onReload(Consumer<SampleConfig> listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    /** @return the number of successful reloads */
+    public long reloads() {
+        return reloads.get();
+    }
+
+    /** @return the number of reloads that failed and kept the previous configuration */
+    public long failedReloads() {
+        return failedReloads.get();
+    }
+
+    /**
+     * Reloads the file now. Reloads run one at a time, whether called here or after a change of the file.
+     *
+     * @return true if the file was loaded, false if it failed and the previous configuration is kept
+     */
+    public synchronized boolean reload() {
+        try {
+            State previous = state.get();
+            State next = newState(select(SampleConfig.load(file)), previous);
+            state.set(next);
+            reloads.incrementAndGet();
+            LOGGER.info("reloaded {}", file);
+            for (Consumer<SampleConfig> listener : listeners) {
+                listener.accept(next.config);
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            // Typically a half-written file; the next change event reloads it again.
+            failedReloads.incrementAndGet();
+            LOGGER.warning("failed to reload {}, keeping the current configuration", file, e);
+            return false;
+        }
+    }
+
+    /**
+     * Stops watching the file.
+     */
+    @Override
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            LOGGER.logThrowableAsWarning(e);
+        }
+        scheduler.shutdownNow();
+    }
+
+    private SampleConfig select(List<SampleConfig> stamps) {
+        if (stampName == null) {
+            return stamps.get(0);
+        }
+        for (SampleConfig stamp : stamps) {
+            if (stamp.name().equals(stampName)) {
+                return stamp;
+            }
+        }
+        throw LOGGER.logExceptionAsError(new IllegalArgumentException("no stamp named " + stampName + " in " + file));
+    }
+
+    private static State newState(SampleConfig config, State previous) {
+        boolean sameTarget = previous != null && config.sameTarget(previous.config);
+        AzureProfile profile = sameTarget ? previous.profile : config.profile();
+        TokenCredential inner = previous != null && config.sameCredential(previous.config) && sameTarget
+                ? previous.credential
+                : config.credential(profile);
+        State state = new State(config, profile, inner);
+        if (sameTarget) {
+            state.azure.set(previous.azure.get());
+        }
+        return state;
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                            || file.getFileName().equals(event.context())) {
+                        scheduleReload();
+                    }
+                }
+                key.reset();
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Closed.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void scheduleReload() {
+        if (pendingReload != null) {
+            pendingReload.cancel(false);
+        }
+        pendingReload = scheduler.schedule(this::reload, debounce.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private static final class State {
+        private final SampleConfig config;
+        private final AzureProfile profile;
+        private final TokenCredential credential;
+        private final AtomicReference<AzureResourceManager> azure = new AtomicReference<>();
+
+        private State(SampleConfig config, AzureProfile profile, TokenCredential credential) {
+            this.config = config;
+            this.profile = profile;
+            this.credential = credential;
+        }
+    }
+
+    private final class ReloadingCredential implements TokenCredential {
+        @Override
+        public Mono<AccessToken> getToken(TokenRequestContext request) {
+            return Mono.defer(() -> state.get().credential.getToken(request));
+        }
+    }
+}
@@ -0,0 +1,349 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import com.azure.core.http.HttpMethod;
+import com.azure.core.http.HttpPipeline;
+import com.azure.core.http.HttpPipelineBuilder;
+import com.azure.core.http.HttpRequest;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * Verifies many HTTP endpoints concurrently.
+ * <p>
+ * Instead of blocking on {@link Utils#sendGetRequest(String)} once per URL, all probes run in one
+ * reactive pipeline. Probes are grouped by host: at most {@code perHost} requests are in flight to
+ * any one host and at most {@code concurrency} in total, whatever the number of hosts. The report
+ * lists the status and latency of every probe along with availability and latency percentiles.
+ * <p>
+ * A probe measures one request: the default pipeline has no cache and no retry policy, so that a
+ * cached body or a retried request does not hide an unavailable endpoint.
+ */
+public final class HttpProbeEngine {
+    private static final HttpPipeline PROBE_PIPELINE = new HttpPipelineBuilder().build();
+
+    private final HttpPipeline httpPipeline;
+    private final int concurrency;
+    private final int perHost;
+    private Duration timeout = Duration.ofSeconds(30);
+
+    /**
+     * Creates an engine over a pipeline without cache or retry policies.
+     *
+     * @param concurrency the maximum number of requests in flight
+     * @param perHost the maximum number of requests in flight to one host
+     */
+    public HttpProbeEngine(int concurrency, int perHost) {
+        this(PROBE_PIPELINE, concurrency, perHost);
+    }
+
+    /**
+     * Creates an engine.
+     *
+     * @param httpPipeline the pipeline to send requests through
+     * @param concurrency the maximum number of requests in flight
+     * @param perHost the maximum number of requests in flight to one host
+     */
+    public HttpProbeEngine(HttpPipeline httpPipeline, int concurrency, int perHost) {
+        this.httpPipeline = httpPipeline;
+        this.concurrency = Math.max(1, concurrency);
+        this.perHost = Math.max(1, Math.min(perHost, this.concurrency));
+    }
+
+    /**
+     * @param timeout the time after which a probe fails
+     * @return this engine
+     */
+    public HttpProbeEngine withTimeout(Duration timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * Runs probes and blocks until all of them have finished.
+     *
+     * @param probes the probes
+     * @return the report
+     */
+    public Report run(List<Probe> probes) {
+        return runAsync(probes).block();
+    }
+
+    /**
+     * Runs probes.
+     *
+     * @param probes the probes
+     * @return the report, emitted when all probes have finished; failed probes do not fail the report
+     */
+    public Mono<Report> runAsync(List<Probe> probes) {
+        return Mono.defer(() -> {
+            // A host at its limit holds no global permit, so it never delays the probes of other hosts.
+            Permits permits = new Permits(concurrency);
+            final long start = System.nanoTime();
+            return Flux.fromIterable(probes)
+                    .groupBy(probe -> URI.create(probe.url).getAuthority())
+                    .flatMap(host -> host.flatMap(probe -> permits.run(probe(probe)), perHost), Integer.MAX_VALUE)
+                    .collectList()
+                    .map(results -> new Report(results, Duration.ofNanos(System.nanoTime() - start)));
+        });
+    }
+
+    private Mono<ProbeResult> probe(Probe probe) {
+        return Mono.defer(() -> {
+            final long start = System.nanoTime();
+            return httpPipeline.send(new HttpRequest(HttpMethod.GET, probe.url))
+                    .flatMap(response -> response.getBodyAsString()
+                            .defaultIfEmpty("")
+                            .map(body -> {
+                                int status = response.getStatusCode();
+                                String failure = null;
+                                if (status != probe.expectedStatus) {
+                                    failure = "expected status " + probe.expectedStatus + " but was " + status;
+                                } else if (!probe.bodyPredicate.test(body)) {
+                                    failure = "unexpected body";
+                                }
+                                return new ProbeResult(probe.url, status, Duration.ofNanos(System.nanoTime() - start), failure);
+                            }))
+                    .timeout(timeout)
+                    .onErrorResume(e -> Mono.just(
+                            new ProbeResult(probe.url, 0, Duration.ofNanos(System.nanoTime() - start), e.toString())));
+        });
+    }
+
+    /**
+     * The probes in flight across all hosts of one run. A probe that waits for a permit does not block a
+     * thread; it is started by the probe that releases the permit. A waiting probe that is cancelled
+     * leaves the queue, and one cancelled as it starts passes its permit on.
+     */
+    static final class Permits {
+        private final Queue<Runnable> waiting = new ArrayDeque<>();
+        private int available;
+
+        Permits(int available) {
+            this.available = available;
+        }
+
+        /**
+         * @param work the work to run once a permit is free; the permit is released when it terminates
+         *             or is cancelled
+         * @param <T> the result type
+         * @return the result of the work
+         */
+        <T> Mono<T> run(Mono<T> work) {
+            return Mono.create(sink -> {
+                // Disposed on cancel; a subscription set after that is disposed at once, which releases.
+                Disposable.Swap running = Disposables.swap();
+                Runnable start = () -> running.update(work.doFinally(signal -> release())
+                        .subscribe(sink::success, sink::error, sink::success));
+                sink.onCancel(() -> {
+                    synchronized (this) {
+                        waiting.remove(start);
+                    }
+                    running.dispose();
+                });
+                synchronized (this) {
+                    if (available == 0) {
+                        waiting.add(start);
+                        return;
+                    }
+                    available--;
+                }
+                start.run();
+            });
+        }
+
+        /** @return the number of free permits */
+        synchronized int available() {
+            return available;
+        }
+
+        private void release() {
+            Runnable next;
+            synchronized (this) {
+                next = waiting.poll();
+                if (next == null) {
+                    available++;
+                    return;
+                }
+            }
+            next.run();
+        }
+    }
+
+    /**
+     * An endpoint to verify.
+     */
+    public static final class Probe {
+        private final String url;
+        private final int expectedStatus;
+        private final Predicate<String> bodyPredicate;
+
+        /**
+         * @param url the URL to GET
+         * @param expectedStatus the expected status code
+         * @param bodyPredicate the condition the response body must meet
+         */
+        public Probe(String url, int expectedStatus, Predicate<String> bodyPredicate) {
+            this.url = url;
+            this.expectedStatus = expectedStatus;
+            this.bodyPredicate = bodyPredicate;
+        }
+
+        /**
+         * @param url the URL to GET
+         * @return a probe that expects status 200 and any body
+         */
+        public static Probe ok(String url) {
+            return new Probe(url, 200, body -> true);
+        }
+
+        /**
+         * @param url the URL to GET
+         * @param text the text the body must contain
+         * @return a probe that expects status 200 and a body containing the text
+         */
+        public static Probe containing(String url, String text) {
+            return new Probe(url, 200, body -> body != null && body.contains(text));
+        }
+    }
+
+    /**
+     * The outcome of one probe.
+     */
+    public static final class ProbeResult {
+        private final String url;
+        private final int status;
+        private final Duration latency;
+        private final String failure;
+
+        private ProbeResult(String url, int status, Duration latency, String failure) {
+            this.url = url;
+            this.status = status;
+            this.latency = latency;
+            this.failure = failure;
+        }
+
+        /** @return the probed URL */
+        public String url() {
+            return url;
+        }
+
+        /** @return the status code, or 0 if no response was received */
+        public int status() {
+            return status;
+        }
+
+        /** @return the time until the response body was read or the probe failed */
+        public Duration latency() {
+            return latency;
+        }
+
+        /** @return true if the status and body were as expected */
+        public boolean isSuccessful() {
+            return failure == null;
+        }
+
+        /** @return why the probe failed, or null */
+        public String failure() {
+            return failure;
+        }
+
+        @Override
+        public String toString() {
+            return url + ": " + (failure == null ? "OK" : failure) + " (" + latency.toMillis() + " ms)";
+        }
+    }
+
+    /**
+     * Latency and availability of a probe run.
+     */
+    public static final class Report {
+        private final List<ProbeResult> results;
+        private final Duration elapsed;
+        private final long[] sortedLatencies;
+
+        private Report(List<ProbeResult> results, Duration elapsed) {
+            this.results = Collections.unmodifiableList(results);
+            this.elapsed = elapsed;
+            this.sortedLatencies = results.stream().mapToLong(r -> r.latency.toMillis()).sorted().toArray();
+        }
+
+        /** @return the result of every probe, in completion order */
+        public List<ProbeResult> results() {
+            return results;
+        }
+
+        /** @return the failed probes */
+        public List<ProbeResult> failures() {
+            List<ProbeResult> failures = new ArrayList<>();
+            for (ProbeResult result : results) {
+                if (!result.isSuccessful()) {
+                    failures.add(result);
+                }
+            }
+            return failures;
+        }
+
+        /** @return the fraction of successful probes, between 0 and 1 */
+        public double availability() {
+            return results.isEmpty() ? 1 : (double) (results.size() - failures().size()) / results.size();
+        }
+
+        /** @return the fraction of successful probes per host */
+        public Map<String, Double> availabilityByHost() {
+            Map<String, int[]> counts = new TreeMap<>();
+            for (ProbeResult result : results) {
+                int[] count = counts.computeIfAbsent(URI.create(result.url).getAuthority(), host -> new int[2]);
+                count[0]++;
+                if (result.isSuccessful()) {
+                    count[1]++;
+                }
+            }
+            Map<String, Double> availability = new TreeMap<>();
+            counts.forEach((host, count) -> availability.put(host, (double) count[1] / count[0]));
+            return availability;
+        }
+
+        /**
+         * @param percentile the percentile, between 0 and 100
+         * @return the latency at the percentile, in milliseconds
+         */
+        public long latencyPercentile(double percentile) {
+            if (sortedLatencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(sortedLatencies.length * percentile / 100) - 1;
+            return sortedLatencies[Math.max(0, Math.min(index, sortedLatencies.length - 1))];
+        }
+
+        /** @return the time from start to the last probe */
+        public Duration elapsed() {
+            return elapsed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d probes in %d ms: availability %.1f%%, latency p50 %d ms, p95 %d ms, p99 %d ms, max %d ms",
+                    results.size(), elapsed.toMillis(), availability() * 100, latencyPercentile(50),
+                    latencyPercentile(95), latencyPercentile(99), latencyPercentile(100));
+        }
+    }
+}
@@ -0,0 +1,308 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import com.azure.core.util.logging.ClientLogger;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Retries calls with exponential backoff and decorrelated jitter, within a deadline per call.
+ * <p>
+ * Each retry waits a random time between the base delay and three times the previous wait, capped
+ * at the maximum delay, so concurrent callers spread out instead of retrying in lockstep. No retry is
+ * scheduled that would end after the deadline. Idempotent calls can be hedged: if the first attempt
+ * has not answered after the 95th percentile of recent latencies, a second one is sent and the first
+ * value wins. An attempt that fails before its hedge is sent fails at once and is retried as usual.
+ * Attempts, retries and hedges are counted in {@link #metrics()}.
+ */
+public final class RetryStrategy {
+    private static final ClientLogger LOGGER = new ClientLogger(RetryStrategy.class);
+    private static final int LATENCY_SAMPLES = 128;
+    private static final int MIN_SAMPLES_FOR_PERCENTILE = 20;
+
+    private int maxAttempts = 6;
+    private Duration baseDelay = Duration.ofSeconds(1);
+    private Duration maxDelay = Duration.ofSeconds(30);
+    private Duration deadline = Duration.ofMinutes(5);
+    private Duration initialHedgeDelay;
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private int latencyCount;
+    private final Metrics metrics = new Metrics();
+
+    /**
+     * @param maxAttempts the maximum number of attempts per call, including the first
+     * @return this strategy
+     */
+    public RetryStrategy withMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    /**
+     * @param baseDelay the minimum wait before a retry
+     * @param maxDelay the maximum wait before a retry
+     * @return this strategy
+     */
+    public RetryStrategy withBackoff(Duration baseDelay, Duration maxDelay) {
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        return this;
+    }
+
+    /**
+     * @param deadline the maximum time a call may take, including all retries
+     * @return this strategy
+     */
+    public RetryStrategy withDeadline(Duration deadline) {
+        this.deadline = deadline;
+        return this;
+    }
+
+    /**
+     * Enables hedging of idempotent calls.
+     *
+     * @param initialHedgeDelay the time after which a hedge is sent until enough latencies are
+     * recorded to use their 95th percentile instead
+     * @return this strategy
+     */
+    public RetryStrategy withHedging(Duration initialHedgeDelay) {
+        this.initialHedgeDelay = initialHedgeDelay;
+        return this;
+    }
+
+    /** @return the retry metrics */
+    public Metrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Runs a call with retries.
+     *
+     * @param call creates the call; invoked once per attempt
+     * @param retryable whether an error is transient and the call may be retried
+     * @param idempotent whether the call may be hedged
+     * @param <T> the result type
+     * @return the result of the first successful attempt, or the last error
+     */
+    public <T> Mono<T> execute(Supplier<Mono<T>> call, Predicate<Throwable> retryable, boolean idempotent) {
+        return Mono.defer(() -> {
+            metrics.calls.incrementAndGet();
+            final long deadlineNanos = System.nanoTime() + deadline.toNanos();
+            final long[] previousDelay = {baseDelay.toNanos()};
+            Mono<T> attempt = Mono.defer(() -> attempt(call, idempotent && initialHedgeDelay != null));
+            return attempt
+                    .retryWhen(Retry.from(signals -> signals.concatMap(signal -> {
+                        Throwable error = unwrap(signal.failure());
+                        if (!retryable.test(error)) {
+                            return Mono.error(error);
+                        }
+                        if (signal.totalRetries() + 1 >= maxAttempts) {
+                            metrics.exhausted.incrementAndGet();
+                            return Mono.error(error);
+                        }
+                        long delay = nextDelay(previousDelay[0]);
+                        previousDelay[0] = delay;
+                        if (System.nanoTime() + delay > deadlineNanos) {
+                            metrics.deadlineExceeded.incrementAndGet();
+                            return Mono.error(error);
+                        }
+                        metrics.retries.incrementAndGet();
+                        LOGGER.info("retry {} in {} ms after {}", signal.totalRetries() + 1,
+                                Duration.ofNanos(delay).toMillis(), error.toString());
+                        return Mono.delay(Duration.ofNanos(delay));
+                    })))
+                    // Counted here only when the deadline ends a running attempt, which the retry
+                    // decision above does not see.
+                    .timeout(deadline, Mono.defer(() -> {
+                        metrics.deadlineExceeded.incrementAndGet();
+                        return Mono.error(new TimeoutException("deadline of " + deadline.toMillis() + " ms exceeded"));
+                    }));
+        });
+    }
+
+    private <T> Mono<T> attempt(Supplier<Mono<T>> call, boolean hedge) {
+        metrics.attempts.incrementAndGet();
+        final long start = System.nanoTime();
+        Mono<T> primary = call.get().doOnSuccess(value -> recordLatency(System.nanoTime() - start));
+        if (!hedge) {
+            return primary;
+        }
+        return Mono.create(sink -> {
+            Hedge<T> race = new Hedge<>(sink);
+            sink.onDispose(race.running);
+            race.subscribe(primary);
+            race.running.add(Mono.delay(hedgeDelay()).subscribe(ignored -> {
+                // Only while the primary is still pending; a primary that failed has failed the attempt.
+                if (race.startHedge()) {
+                    metrics.hedges.incrementAndGet();
+                    race.subscribe(call.get().doOnSuccess(value -> metrics.hedgeWins.incrementAndGet()));
+                }
+            }));
+        });
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        List<Throwable> errors = Exceptions.unwrapMultiple(error);
+        return errors.isEmpty() ? error : errors.get(0);
+    }
+
+    private long nextDelay(long previousDelay) {
+        long base = baseDelay.toNanos();
+        long upper = Math.max(base + 1, Math.min(maxDelay.toNanos(), previousDelay * 3));
+        return Math.min(maxDelay.toNanos(), ThreadLocalRandom.current().nextLong(base, upper));
+    }
+
+    private synchronized void recordLatency(long nanos) {
+        latencies[latencyCount % LATENCY_SAMPLES] = nanos;
+        latencyCount++;
+    }
+
+    private synchronized Duration hedgeDelay() {
+        int samples = Math.min(latencyCount, LATENCY_SAMPLES);
+        if (samples < MIN_SAMPLES_FOR_PERCENTILE) {
+            return initialHedgeDelay;
+        }
+        long[] sorted = Arrays.copyOf(latencies, samples);
+        Arrays.sort(sorted);
+        return Duration.ofNanos(sorted[(int) Math.ceil(samples * 0.95) - 1]);
+    }
+
+    /**
+     * A primary attempt racing a hedge: the first value wins and cancels the other attempt, and the
+     * attempt fails once every attempt sent has failed, with the first error.
+     */
+    private static final class Hedge<T> {
+        private final MonoSink<T> sink;
+        private final Disposable.Composite running = Disposables.composite();
+        // The primary attempt, and the hedge once it is sent.
+        private int pending = 1;
+        private boolean done;
+        private Throwable error;
+
+        private Hedge(MonoSink<T> sink) {
+            this.sink = sink;
+        }
+
+        private void subscribe(Mono<T> attempt) {
+            running.add(attempt.subscribe(this::succeed, this::fail, () -> succeed(null)));
+        }
+
+        private synchronized boolean startHedge() {
+            if (done) {
+                return false;
+            }
+            pending++;
+            return true;
+        }
+
+        private void succeed(T value) {
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                done = true;
+            }
+            running.dispose();
+            if (value == null) {
+                sink.success();
+            } else {
+                sink.success(value);
+            }
+        }
+
+        private void fail(Throwable e) {
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                if (error == null) {
+                    error = e;
+                } else {
+                    error.addSuppressed(e);
+                }
+                if (--pending > 0) {
+                    return;
+                }
+                done = true;
+            }
+            running.dispose();
+            sink.error(error);
+        }
+    }
+
+    /**
+     * Counters of a retry strategy.
+     */
+    public static final class Metrics {
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong attempts = new AtomicLong();
+        private final AtomicLong retries = new AtomicLong();
+        private final AtomicLong hedges = new AtomicLong();
+        private final AtomicLong hedgeWins = new AtomicLong();
+        private final AtomicLong exhausted = new AtomicLong();
+        private final AtomicLong deadlineExceeded = new AtomicLong();
+
+        private Metrics() {
+        }
+
+        /** @return the number of calls */
+        public long calls() {
+            return calls.get();
+        }
+
+        /** @return the number of attempts, not counting hedges */
+        public long attempts() {
+            return attempts.get();
+        }
+
+        /** @return the number of retries */
+        public long retries() {
+            return retries.get();
+        }
+
+        /** @return the number of hedged requests sent */
+        public long hedges() {
+            return hedges.get();
+        }
+
+        /** @return the number of hedged requests that answered first */
+        public long hedgeWins() {
+            return hedgeWins.get();
+        }
+
+        /** @return the number of calls that failed after the maximum number of attempts */
+        public long exhausted() {
+            return exhausted.get();
+        }
+
+        /** @return the number of calls that failed because a retry would have passed the deadline */
+        public long deadlineExceeded() {
+            return deadlineExceeded.get();
+        }
+
+        @Override
+        public String toString() {
+            return calls.get() + " calls, " + attempts.get() + " attempts, " + retries.get() + " retries, "
+                    + hedges.get() + " hedges (" + hedgeWins.get() + " won), " + exhausted.get() + " exhausted, "
+                    + deadlineExceeded.get() + " past deadline";
+        }
+    }
+}
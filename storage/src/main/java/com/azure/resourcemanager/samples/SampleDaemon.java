@@ -0,0 +1,495 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import com.azure.core.credential.TokenCredential;
+import com.azure.core.util.logging.ClientLogger;
+import com.azure.core.util.serializer.JacksonAdapter;
+import com.azure.core.util.serializer.SerializerAdapter;
+import com.azure.core.util.serializer.SerializerEncoding;
+import com.azure.resourcemanager.AzureResourceManager;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Serves sample workflows over a local HTTP/JSON API, so that clients, pipelines, caches and tokens
+ * stay warm across runs.
+ * <p>
+ * {@code GET /workflows} lists the registered workflows and {@code POST /workflows/<name>} runs one
+ * with the JSON request body as its parameters. Runs are queued and executed with bounded
+ * concurrency; when the queue is full the request is rejected with 503. The response streams
+ * progress as newline-delimited JSON events: {@code queued}, {@code started}, any number of
+ * {@code progress}, then {@code succeeded} or {@code failed}. The configuration is reloaded when its
+ * file changes, see {@link ConfigService}.
+ * <p>
+ * The server only listens on the loopback interface, and since a web page in a local browser can
+ * still reach that, every request must carry the bearer token generated at launch, see
+ * {@link #token()}. Requests with an {@code Origin} header or a {@code Host} other than the loopback
+ * interface are rejected, and a workflow is only run for an {@code application/json} body, which a
+ * page cannot send cross-origin without a preflight.
+ */
+public final class SampleDaemon implements AutoCloseable {
+    private static final ClientLogger LOGGER = new ClientLogger(SampleDaemon.class);
+    private static final SerializerAdapter SERIALIZER = JacksonAdapter.createDefaultSerializerAdapter();
+
+    /** The command line argument that selects the daemon mode. */
+    public static final String DAEMON_ARGUMENT = "--daemon";
+    /** The port used when {@code --daemon} is not followed by a port. */
+    public static final int DEFAULT_PORT = 8470;
+    /** The largest {@link WorkflowContext#count(String, int)} accepted without a {@code daemonMaxCount} tuning. */
+    public static final int DEFAULT_MAX_COUNT = 20;
+
+    /**
+     * A workflow run by the daemon.
+     */
+    @FunctionalInterface
+    public interface Workflow {
+        /**
+         * @param context the clients, parameters and progress sink of the run
+         * @throws Exception if the workflow failed
+         */
+        void run(WorkflowContext context) throws Exception;
+    }
+
+    private final ConfigService config;
+    private final Map<String, Workflow> workflows = new LinkedHashMap<>();
+    private final ThreadPoolExecutor runner;
+    private final ExecutorService handlers;
+    private final HttpServer server;
+    private final AtomicLong ids = new AtomicLong();
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicInteger running = new AtomicInteger();
+    private final String token;
+
+    /**
+     * Creates a daemon. Register workflows, then call {@link #start()}.
+     *
+     * @param config the configuration service that supplies the clients
+     * @param port the local port, or 0 for any free port
+     * @param concurrency the maximum number of workflows running at the same time
+     * @param queueCapacity the maximum number of workflows waiting to run
+     * @throws IOException if the port cannot be bound
+     */
+    public SampleDaemon(ConfigService config, int port, int concurrency, int queueCapacity) throws IOException {
+        this.config = config;
+        byte[] secret = new byte[24];
+        new SecureRandom().nextBytes(secret);
+        this.token = Base64.getUrlEncoder().withoutPadding().encodeToString(secret);
+        this.runner = new ThreadPoolExecutor(concurrency, concurrency, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> new Thread(runnable, "daemon-workflow"));
+        this.handlers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "daemon-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.setExecutor(handlers);
+        this.server.createContext("/workflows", this::handle);
+    }
+
+    /**
+     * @param args the command line arguments of a sample
+     * @return true if the arguments select the daemon mode
+     */
+    public static boolean isRequested(String[] args) {
+        return Arrays.asList(args).contains(DAEMON_ARGUMENT);
+    }
+
+    /**
+     * Starts a daemon for the command line arguments {@code --daemon [port]}, with the configuration
+     * at {@code configFile}, and blocks until the process is stopped.
+     *
+     * @param args the command line arguments of a sample
+     * @param configFile the configuration file
+     * @param workflows the workflows of the sample, by name
+     * @throws IOException if the configuration cannot be loaded or the port cannot be bound
+     */
+    public static void run(String[] args, String configFile, Map<String, Workflow> workflows) throws IOException {
+        int index = Arrays.asList(args).indexOf(DAEMON_ARGUMENT);
+        int port = index + 1 < args.length && args[index + 1].matches("\\d+")
+                ? Integer.parseInt(args[index + 1])
+                : DEFAULT_PORT;
+        ConfigService config = new ConfigService(Paths.get(configFile), null, Duration.ofSeconds(1));
+        SampleDaemon daemon = new SampleDaemon(config, port,
+                config.config().tuning("daemonConcurrency", 4), config.config().tuning("daemonQueue", 64));
+        // The queue is sized once; the concurrency follows the config file.
+        config.onReload(reloaded -> daemon.setConcurrency(reloaded.tuning("daemonConcurrency", 4)));
+        workflows.forEach(daemon::register);
+        daemon.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            daemon.close();
+            config.close();
+        }));
+        System.out.println("Sample daemon listening on http://localhost:" + daemon.port() + "/workflows");
+        System.out.println("Send every request with the header: Authorization: Bearer " + daemon.token());
+        try {
+            Thread.currentThread().join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @param name the name of the workflow in the URL
+     * @param workflow the workflow
+     * @return this daemon
+     */
+    public synchronized SampleDaemon register(String name, Workflow workflow) {
+        workflows.put(name, workflow);
+        return this;
+    }
+
+    /**
+     * Starts serving requests.
+     *
+     * @return this daemon
+     */
+    public SampleDaemon start() {
+        server.start();
+        return this;
+    }
+
+    /**
+     * Changes the number of workflows that run at the same time. Running workflows are not interrupted;
+     * with a lower concurrency, fewer of the queued ones start.
+     *
+     * @param concurrency the maximum number of workflows running at the same time
+     */
+    public void setConcurrency(int concurrency) {
+        int size = Math.max(1, concurrency);
+        synchronized (runner) {
+            // The core size may never exceed the maximum size, so the order depends on the direction.
+            if (size > runner.getMaximumPoolSize()) {
+                runner.setMaximumPoolSize(size);
+                runner.setCorePoolSize(size);
+            } else {
+                runner.setCorePoolSize(size);
+                runner.setMaximumPoolSize(size);
+            }
+        }
+    }
+
+    /** @return the bound port */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /** @return the token that requests must send as {@code Authorization: Bearer <token>} */
+    public String token() {
+        return token;
+    }
+
+    /**
+     * Stops accepting requests and lets queued and running workflows finish.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        runner.shutdown();
+        handlers.shutdown();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!authorized(exchange)) {
+                return;
+            }
+            String path = exchange.getRequestURI().getPath();
+            String name = path.length() > "/workflows/".length() ? path.substring("/workflows/".length()) : "";
+            if ("GET".equals(exchange.getRequestMethod()) && name.isEmpty()) {
+                ObjectNode body = JsonNodeFactory.instance.objectNode();
+                synchronized (this) {
+                    body.putPOJO("workflows", workflows.keySet());
+                }
+                body.put("running", runner.getActiveCount());
+                body.put("queued", runner.getQueue().size());
+                body.put("runs", runs.get());
+                respond(exchange, 200, body);
+            } else if ("POST".equals(exchange.getRequestMethod()) && !name.isEmpty()) {
+                Workflow workflow;
+                synchronized (this) {
+                    workflow = workflows.get(name);
+                }
+                if (workflow == null) {
+                    respond(exchange, 404, error("unknown workflow " + name));
+                } else {
+                    submit(exchange, name, workflow);
+                }
+            } else {
+                respond(exchange, 405, error("use GET /workflows or POST /workflows/<name>"));
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warning("request failed", e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Responds with an error and returns false unless the request has the token and comes from a local
+     * client that is not a browser page.
+     */
+    private boolean authorized(HttpExchange exchange) throws IOException {
+        if (exchange.getRequestHeaders().containsKey("Origin")) {
+            respond(exchange, 403, error("cross-origin requests are not accepted"));
+            return false;
+        }
+        if (!isLoopback(exchange.getRequestHeaders().getFirst("Host"))) {
+            respond(exchange, 403, error("the Host header must name the loopback interface"));
+            return false;
+        }
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        byte[] expected = ("Bearer " + token).getBytes(StandardCharsets.UTF_8);
+        if (authorization == null
+                || !MessageDigest.isEqual(expected, authorization.getBytes(StandardCharsets.UTF_8))) {
+            exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+            respond(exchange, 401, error("send the token printed at startup as a bearer token"));
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean isLoopback(String host) {
+        if (host == null) {
+            return false;
+        }
+        String name = host.startsWith("[")
+                ? host.substring(1, Math.max(1, host.indexOf(']')))
+                : host.replaceFirst(":\\d*$", "");
+        name = name.toLowerCase(Locale.ROOT);
+        return "localhost".equals(name) || "127.0.0.1".equals(name) || "::1".equals(name);
+    }
+
+    private void submit(HttpExchange exchange, String name, Workflow workflow) throws IOException {
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType == null
+                || !contentType.toLowerCase(Locale.ROOT).matches("application/json\\s*(;.*)?")) {
+            respond(exchange, 415, error("send the parameters as application/json"));
+            return;
+        }
+        JsonNode parameters;
+        try (InputStream body = exchange.getRequestBody()) {
+            byte[] bytes = readAll(body);
+            parameters = bytes.length == 0
+                    ? JsonNodeFactory.instance.objectNode()
+                    : SERIALIZER.deserialize(bytes, JsonNode.class, SerializerEncoding.JSON);
+        } catch (IOException e) {
+            respond(exchange, 400, error("invalid JSON: " + e.getMessage()));
+            return;
+        }
+
+        final BlockingQueue<ObjectNode> events = new LinkedBlockingQueue<>();
+        final long id = ids.incrementAndGet();
+        try {
+            runner.execute(() -> execute(id, name, workflow, parameters, events));
+        } catch (RejectedExecutionException e) {
+            respond(exchange, 503, error("queue is full"));
+            return;
+        }
+        runs.incrementAndGet();
+
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        // A length of 0 selects chunked encoding, so every event reaches the client as it is written.
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream output = exchange.getResponseBody();
+        write(output, event(id, "queued", null));
+        try {
+            while (true) {
+                ObjectNode event = events.take();
+                write(output, event);
+                String type = event.get("event").asText();
+                if ("succeeded".equals(type) || "failed".equals(type)) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // The client went away; the workflow keeps running.
+            LOGGER.info("client of run {} disconnected", id);
+        }
+    }
+
+    private void execute(long id, String name, Workflow workflow, JsonNode parameters, BlockingQueue<ObjectNode> events) {
+        final long start = System.nanoTime();
+        running.incrementAndGet();
+        events.add(event(id, "started", name));
+        try {
+            workflow.run(new WorkflowContext(config, parameters, message -> events.add(event(id, "progress", message))));
+            ObjectNode done = event(id, "succeeded", null);
+            done.put("elapsedMillis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            events.add(done);
+        } catch (Exception | AssertionError e) {
+            LOGGER.warning("workflow {} failed", name, e);
+            ObjectNode failed = event(id, "failed", String.valueOf(e));
+            failed.put("elapsedMillis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            events.add(failed);
+        } finally {
+            // Otherwise every sample name stays reserved for the life of the daemon. Once no run is left,
+            // none is in use here, and the name sequences do not repeat them until they are exhausted.
+            if (running.decrementAndGet() == 0) {
+                NameAllocator names = Utils.nameAllocator();
+                names.clear("");
+                names.clear(NameAllocator.STORAGE_ACCOUNTS);
+                names.clear(NameAllocator.VAULTS);
+            }
+        }
+    }
+
+    private static ObjectNode event(long id, String type, String message) {
+        ObjectNode event = JsonNodeFactory.instance.objectNode();
+        event.put("run", id);
+        event.put("event", type);
+        if (message != null) {
+            event.put("message", message);
+        }
+        return event;
+    }
+
+    private static ObjectNode error(String message) {
+        ObjectNode error = JsonNodeFactory.instance.objectNode();
+        error.put("error", message);
+        return error;
+    }
+
+    private static void respond(HttpExchange exchange, int status, JsonNode body) throws IOException {
+        byte[] bytes = SERIALIZER.serialize(body, SerializerEncoding.JSON).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+
+    private static void write(OutputStream output, JsonNode event) throws IOException {
+        output.write((SERIALIZER.serialize(event, SerializerEncoding.JSON) + "\n").getBytes(StandardCharsets.UTF_8));
+        output.flush();
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        int read;
+        while ((read = input.read(chunk)) > 0) {
+            buffer.write(chunk, 0, read);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * What a workflow run gets from the daemon.
+     */
+    public static final class WorkflowContext {
+        private final ConfigService config;
+        private final JsonNode parameters;
+        private final Consumer<String> progress;
+
+        private WorkflowContext(ConfigService config, JsonNode parameters, Consumer<String> progress) {
+            this.config = config;
+            this.parameters = parameters;
+            this.progress = progress;
+        }
+
+        /** @return the warm azure client of the current configuration */
+        public AzureResourceManager azure() {
+            return config.azure();
+        }
+
+        /** @return the credential of the current configuration */
+        public TokenCredential credential() {
+            return config.credential();
+        }
+
+        /** @return the current configuration */
+        public SampleConfig config() {
+            return config.config();
+        }
+
+        /** @return the JSON parameters of the request */
+        public JsonNode parameters() {
+            return parameters;
+        }
+
+        /**
+         * @param name the parameter name
+         * @param defaultValue the value if the parameter is absent
+         * @return the text parameter
+         */
+        public String parameter(String name, String defaultValue) {
+            JsonNode value = parameters.get(name);
+            return value == null || value.isNull() ? defaultValue : value.asText();
+        }
+
+        /**
+         * @param name the parameter name
+         * @param defaultValue the value if the parameter is absent
+         * @return the integer parameter
+         */
+        public int parameter(String name, int defaultValue) {
+            return parameters.path(name).asInt(defaultValue);
+        }
+
+        /**
+         * Returns how many items a workflow should create, bounded by the {@code daemonMaxCount} tuning
+         * of the configuration.
+         *
+         * @param name the parameter name
+         * @param defaultValue the value if the parameter is absent
+         * @return the count, between 1 and the maximum
+         * @throws IllegalArgumentException if the parameter is below 1 or above the maximum
+         */
+        public int count(String name, int defaultValue) {
+            int count = parameter(name, defaultValue);
+            int max = config().tuning("daemonMaxCount", DEFAULT_MAX_COUNT);
+            if (count < 1 || count > max) {
+                throw LOGGER.logExceptionAsError(
+                        new IllegalArgumentException(name + " must be between 1 and " + max + ", was " + count));
+            }
+            return count;
+        }
+
+        /**
+         * Streams a progress message to the client.
+         *
+         * @param message the message
+         */
+        public void progress(String message) {
+            progress.accept(message);
+        }
+    }
+}
@@ -0,0 +1,367 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import com.azure.core.util.logging.ClientLogger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates self-signed certificates in process.
+ * <p>
+ * The key pair, the certificate with its subject alternative name and extended key usage extensions,
+ * and the PKCS12 and PEM exports are all produced in memory with the JDK's own providers, instead of
+ * forking {@code keytool} for each step. The certificate is DER-encoded here because the JDK has no
+ * public API for building one. Writing the result to files is optional.
+ */
+public final class SelfSignedCertificates {
+    private static final ClientLogger LOGGER = new ClientLogger(SelfSignedCertificates.class);
+
+    /** Extended key usage of TLS server certificates. */
+    public static final String SERVER_AUTHENTICATION = "1.3.6.1.5.5.7.3.1";
+    /** Extended key usage of TLS client certificates. */
+    public static final String CLIENT_AUTHENTICATION = "1.3.6.1.5.5.7.3.2";
+
+    private static final String SHA256_WITH_RSA = "1.2.840.113549.1.1.11";
+    private static final String COMMON_NAME = "2.5.4.3";
+    private static final String SUBJECT_ALTERNATIVE_NAME = "2.5.29.17";
+    private static final String EXTENDED_KEY_USAGE = "2.5.29.37";
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private SelfSignedCertificates() {
+    }
+
+    /**
+     * Generates a self-signed certificate.
+     *
+     * @param spec the certificate to generate
+     * @return the certificate and its private key
+     */
+    public static GeneratedCertificate generate(Spec spec) {
+        try {
+            KeyPairGenerator keyGen = KeyPairGenerator.getInstance("RSA");
+            keyGen.initialize(spec.keySize);
+            KeyPair keyPair = keyGen.generateKeyPair();
+
+            Date notBefore = new Date(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(5));
+            Date notAfter = new Date(notBefore.getTime() + TimeUnit.DAYS.toMillis(spec.validityInDays));
+            byte[] name = sequence(set(sequence(oid(COMMON_NAME), der(0x0C, spec.commonName.getBytes(StandardCharsets.UTF_8)))));
+            byte[] algorithm = sequence(oid(SHA256_WITH_RSA), der(0x05, new byte[0]));
+
+            List<byte[]> extensions = new ArrayList<>();
+            if (!spec.dnsNames.isEmpty()) {
+                List<byte[]> names = new ArrayList<>();
+                for (String dnsName : spec.dnsNames) {
+                    // dNSName [2] IMPLICIT IA5String
+                    names.add(der(0x82, dnsName.getBytes(StandardCharsets.US_ASCII)));
+                }
+                extensions.add(extension(SUBJECT_ALTERNATIVE_NAME, sequence(names.toArray(new byte[0][]))));
+            }
+            if (!spec.extendedKeyUsages.isEmpty()) {
+                List<byte[]> usages = new ArrayList<>();
+                for (String usage : spec.extendedKeyUsages) {
+                    usages.add(oid(usage));
+                }
+                extensions.add(extension(EXTENDED_KEY_USAGE, sequence(usages.toArray(new byte[0][]))));
+            }
+
+            byte[] tbsCertificate = sequence(
+                    der(0xA0, integer(BigInteger.valueOf(2))),
+                    integer(new BigInteger(64, RANDOM).setBit(63)),
+                    algorithm,
+                    name,
+                    sequence(time(notBefore), time(notAfter)),
+                    name,
+                    keyPair.getPublic().getEncoded(),
+                    extensions.isEmpty() ? new byte[0] : der(0xA3, sequence(extensions.toArray(new byte[0][]))));
+
+            Signature signature = Signature.getInstance("SHA256withRSA");
+            signature.initSign(keyPair.getPrivate());
+            signature.update(tbsCertificate);
+            byte[] signed = signature.sign();
+            byte[] bitString = new byte[signed.length + 1];
+            System.arraycopy(signed, 0, bitString, 1, signed.length);
+
+            byte[] encoded = sequence(tbsCertificate, algorithm, der(0x03, bitString));
+            X509Certificate certificate = (X509Certificate) CertificateFactory.getInstance("X.509")
+                    .generateCertificate(new ByteArrayInputStream(encoded));
+            return new GeneratedCertificate(certificate, keyPair.getPrivate());
+        } catch (GeneralSecurityException e) {
+            throw LOGGER.logExceptionAsError(new IllegalStateException("failed to generate certificate for " + spec.commonName, e));
+        }
+    }
+
+    /**
+     * Generates self-signed certificates in parallel.
+     *
+     * @param specs the certificates to generate
+     * @param parallelism the maximum number of certificates generated at the same time
+     * @return the certificates, in the order of the specs
+     */
+    public static List<GeneratedCertificate> generateAll(List<Spec> specs, int parallelism) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, specs.size())));
+        try {
+            List<Future<GeneratedCertificate>> futures = new ArrayList<>();
+            for (Spec spec : specs) {
+                futures.add(executor.submit(() -> generate(spec)));
+            }
+            List<GeneratedCertificate> certificates = new ArrayList<>();
+            for (Future<GeneratedCertificate> future : futures) {
+                certificates.add(future.get());
+            }
+            return certificates;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw LOGGER.logExceptionAsError(new IllegalStateException("interrupted while generating certificates", e));
+        } catch (ExecutionException e) {
+            throw LOGGER.logExceptionAsError(new IllegalStateException("failed to generate certificates", e.getCause()));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static byte[] extension(String oid, byte[] value) {
+        return sequence(oid(oid), der(0x04, value));
+    }
+
+    private static byte[] time(Date date) {
+        // RFC 5280: UTCTime through 2049, GeneralizedTime afterwards.
+        SimpleDateFormat year = new SimpleDateFormat("yyyy");
+        year.setTimeZone(TimeZone.getTimeZone("UTC"));
+        boolean utcTime = Integer.parseInt(year.format(date)) < 2050;
+        SimpleDateFormat format = new SimpleDateFormat(utcTime ? "yyMMddHHmmss'Z'" : "yyyyMMddHHmmss'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return der(utcTime ? 0x17 : 0x18, format.format(date).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static byte[] oid(String oid) {
+        String[] arcs = oid.split("\\.");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(Integer.parseInt(arcs[0]) * 40 + Integer.parseInt(arcs[1]));
+        for (int i = 2; i < arcs.length; i++) {
+            long arc = Long.parseLong(arcs[i]);
+            int groups = 1;
+            while ((arc >> (7 * groups)) != 0) {
+                groups++;
+            }
+            for (int g = groups - 1; g >= 0; g--) {
+                out.write((int) ((arc >> (7 * g)) & 0x7F) | (g > 0 ? 0x80 : 0));
+            }
+        }
+        return der(0x06, out.toByteArray());
+    }
+
+    private static byte[] integer(BigInteger value) {
+        return der(0x02, value.toByteArray());
+    }
+
+    private static byte[] set(byte[]... elements) {
+        return der(0x31, concat(elements));
+    }
+
+    private static byte[] sequence(byte[]... elements) {
+        return der(0x30, concat(elements));
+    }
+
+    private static byte[] concat(byte[]... elements) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] element : elements) {
+            out.write(element, 0, element.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] der(int tag, byte[] content) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length + 6);
+        out.write(tag);
+        int length = content.length;
+        if (length < 0x80) {
+            out.write(length);
+        } else {
+            int bytes = (32 - Integer.numberOfLeadingZeros(length) + 7) / 8;
+            out.write(0x80 | bytes);
+            for (int i = bytes - 1; i >= 0; i--) {
+                out.write(length >>> (8 * i));
+            }
+        }
+        out.write(content, 0, content.length);
+        return out.toByteArray();
+    }
+
+    private static String pem(String type, byte[] der) {
+        return "-----BEGIN " + type + "-----\n"
+                + Base64.getMimeEncoder(64, new byte[] {'\n'}).encodeToString(der)
+                + "\n-----END " + type + "-----\n";
+    }
+
+    /**
+     * A certificate to generate.
+     */
+    public static final class Spec {
+        private final String commonName;
+        private final List<String> dnsNames = new ArrayList<>();
+        private final List<String> extendedKeyUsages = new ArrayList<>();
+        private int keySize = 2048;
+        private int validityInDays = 365;
+
+        /**
+         * @param commonName the common name of the subject
+         */
+        public Spec(String commonName) {
+            this.commonName = commonName;
+        }
+
+        /**
+         * @param dnsName a DNS name of the subject alternative name extension
+         * @return this spec
+         */
+        public Spec withDnsName(String dnsName) {
+            dnsNames.add(dnsName);
+            return this;
+        }
+
+        /**
+         * @param oid an extended key usage, such as {@link #SERVER_AUTHENTICATION}
+         * @return this spec
+         */
+        public Spec withExtendedKeyUsage(String oid) {
+            extendedKeyUsages.add(oid);
+            return this;
+        }
+
+        /**
+         * @param keySize the RSA key size
+         * @return this spec
+         */
+        public Spec withKeySize(int keySize) {
+            this.keySize = keySize;
+            return this;
+        }
+
+        /**
+         * @param validityInDays the number of days the certificate is valid
+         * @return this spec
+         */
+        public Spec withValidityInDays(int validityInDays) {
+            this.validityInDays = validityInDays;
+            return this;
+        }
+    }
+
+    /**
+     * A generated certificate and its private key.
+     */
+    public static final class GeneratedCertificate {
+        private final X509Certificate certificate;
+        private final PrivateKey privateKey;
+
+        private GeneratedCertificate(X509Certificate certificate, PrivateKey privateKey) {
+            this.certificate = certificate;
+            this.privateKey = privateKey;
+        }
+
+        /** @return the certificate */
+        public X509Certificate certificate() {
+            return certificate;
+        }
+
+        /** @return the private key */
+        public PrivateKey privateKey() {
+            return privateKey;
+        }
+
+        /** @return the certificate in PEM format */
+        public String certificatePem() {
+            try {
+                return pem("CERTIFICATE", certificate.getEncoded());
+            } catch (GeneralSecurityException e) {
+                throw LOGGER.logExceptionAsError(new IllegalStateException(e));
+            }
+        }
+
+        /** @return the private key in unencrypted PKCS8 PEM format */
+        public String privateKeyPem() {
+            return pem("PRIVATE KEY", privateKey.getEncoded());
+        }
+
+        /**
+         * Exports the certificate and private key as a PKCS12 (pfx) store.
+         *
+         * @param alias the alias of the key entry
+         * @param password the store and key password
+         * @return the PKCS12 store
+         */
+        public byte[] toPkcs12(String alias, String password) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            writePkcs12(out, alias, password);
+            return out.toByteArray();
+        }
+
+        /**
+         * Writes the certificate and private key as a PKCS12 (pfx) file.
+         *
+         * @param pfxPath the pfx file
+         * @param alias the alias of the key entry
+         * @param password the store and key password
+         * @throws IOException if the file cannot be written
+         */
+        public void writePkcs12(Path pfxPath, String alias, String password) throws IOException {
+            try (OutputStream out = Files.newOutputStream(pfxPath)) {
+                writePkcs12(out, alias, password);
+            }
+        }
+
+        /**
+         * Writes the certificate as a PEM file.
+         *
+         * @param certPath the certificate file
+         * @throws IOException if the file cannot be written
+         */
+        public void writeCertificatePem(Path certPath) throws IOException {
+            Files.write(certPath, certificatePem().getBytes(StandardCharsets.US_ASCII));
+        }
+
+        private void writePkcs12(OutputStream out, String alias, String password) {
+            try {
+                KeyStore keyStore = KeyStore.getInstance("PKCS12");
+                keyStore.load(null, null);
+                keyStore.setKeyEntry(alias, privateKey, password.toCharArray(), new Certificate[] {certificate});
+                keyStore.store(out, password.toCharArray());
+            } catch (GeneralSecurityException | IOException e) {
+                throw LOGGER.logExceptionAsError(new IllegalStateException("failed to export PKCS12 store", e));
+            }
+        }
+    }
+}
@@ -7,31 +7,29 @@
 package com.azure.resourcemanager.storage.samples;
 
 import com.azure.core.credential.TokenCredential;
-import com.azure.core.http.HttpClient;
-import com.azure.core.http.HttpMethod;
-import com.azure.core.http.HttpRequest;
-import com.azure.core.http.HttpResponse;
 import com.azure.core.http.policy.HttpLogDetailLevel;
 import com.azure.core.http.rest.PagedIterable;
-import com.azure.core.management.AzureEnvironment;
 import com.azure.core.util.serializer.JacksonAdapter;
 import com.azure.core.util.serializer.SerializerEncoding;
 import com.azure.identity.ClientSecretCredentialBuilder;
 import com.azure.resourcemanager.AzureResourceManager;
 import com.azure.core.management.profile.AzureProfile;
+import com.azure.resourcemanager.samples.FanOut;
+import com.azure.resourcemanager.samples.MultiStampRunner;
+import com.azure.resourcemanager.samples.SampleConfig;
+import com.azure.resourcemanager.samples.SampleDaemon;
+import com.azure.resourcemanager.samples.StartupTraining;
 import com.azure.resourcemanager.samples.Utils;
 import com.azure.resourcemanager.storage.models.StorageAccount;
 import com.azure.resourcemanager.storage.models.StorageAccountKey;
 import com.azure.resourcemanager.storage.models.StorageAccountSkuType;
 import com.azure.resourcemanager.storage.models.StorageAccounts;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import java.io.FileInputStream;
-import java.io.IOException;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Azure Stack Storage sample for managing storage accounts -
@@ -51,8 +49,12 @@ public final class ManageStorageAccount {
      * @return true if sample runs successfully
      */
     public static boolean runSample(AzureResourceManager azureResourceManager, String location) {
-        final String storageAccountName = Utils.randomResourceName(azureResourceManager, "sa", 8);
-        final String storageAccountName2 = Utils.randomResourceName(azureResourceManager, "sa2", 8);
+        // Storage account names are global; check them before they fail late as conflicts
+        final List<String> storageAccountNames = Utils.nameAllocator()
+                .reserveStorageAccountNamesAsync(azureResourceManager, "sa", 8, 2)
+                .block();
+        final String storageAccountName = storageAccountNames.get(0);
+        final String storageAccountName2 = storageAccountNames.get(1);
         final String rgName = Utils.randomResourceName(azureResourceManager, "rgSTMS", 8);
         try {
 
@@ -137,54 +139,81 @@ public final class ManageStorageAccount {
         }
     }
 
-    private static AzureEnvironment getAzureEnvironmentFromArmEndpoint(String armEndpoint) {
-        // Create HTTP client and request
-        HttpClient httpClient = HttpClient.createDefault();
-
-        HttpRequest request = new HttpRequest(HttpMethod.GET,
-                String.format("%s/metadata/endpoints?api-version=2019-10-01", armEndpoint))
-                .setHeader("accept", "application/json");
-
-        // Execute the request and read the response
-        HttpResponse response = httpClient.send(request).block();
-        if (response.getStatusCode() != 200) {
-            throw new RuntimeException("Failed : HTTP error code : " + response.getStatusCode());
-        }
-        String body = response.getBodyAsString().block();
-        try {
-            ArrayNode metadataArray = JacksonAdapter.createDefaultSerializerAdapter()
-                    .deserialize(body, ArrayNode.class, SerializerEncoding.JSON);
-
-            if (metadataArray == null || metadataArray.isEmpty()) {
-                throw new RuntimeException("Failed to find metadata : " + body);
+    /**
+     * The workflows served in daemon mode.
+     * @return the workflows by name
+     */
+    static Map<String, SampleDaemon.Workflow> daemonWorkflows() {
+        Map<String, SampleDaemon.Workflow> workflows = new LinkedHashMap<>();
+        // {"resourceGroup": "rg1", "name": "sa1"} regenerates key1 and then key2, so that a client can
+        // switch to the new key1 before key2 is rotated as well.
+        workflows.put("rotate-storage-keys", context -> {
+            String resourceGroup = context.parameter("resourceGroup", null);
+            String name = context.parameter("name", null);
+            if (resourceGroup == null || name == null) {
+                throw new IllegalArgumentException("resourceGroup and name are required");
             }
-
-            JsonNode metadata = metadataArray.iterator().next();
-            AzureEnvironment azureEnvironment = new AzureEnvironment(new HashMap<String, String>() {
-                {
-                    put("managementEndpointUrl", metadata.at("/authentication/audiences/0").asText());
-                    put("resourceManagerEndpointUrl", armEndpoint);
-                    put("galleryEndpointUrl", metadata.at("/gallery").asText());
-                    put("activeDirectoryEndpointUrl", metadata.at("/authentication/loginEndpoint").asText());
-                    put("activeDirectoryResourceId", metadata.at("/authentication/audiences/0").asText());
-                    put("activeDirectoryGraphResourceId", metadata.at("/graph").asText());
-                    put("storageEndpointSuffix", "." + metadata.at("/suffixes/storage").asText());
-                    put("keyVaultDnsSuffix", "." + metadata.at("/suffixes/keyVaultDns").asText());
-                }
+            StorageAccount storageAccount = context.azure().storageAccounts().getByResourceGroup(resourceGroup, name);
+            for (StorageAccountKey key : storageAccount.getKeys()) {
+                storageAccount.regenerateKey(key.keyName());
+                context.progress("regenerated " + key.keyName() + " of " + storageAccount.name());
+            }
+        });
+        // {"resourceGroup": "rg1", "count": 20, "prefix": "sa"} creates general purpose storage accounts with
+        // available names in a new or existing resource group, all at once on virtual threads on Java 21 and
+        // later, fanOutParallelism at a time otherwise.
+        workflows.put("create-storage-accounts", context -> {
+            AzureResourceManager azure = context.azure();
+            String region = context.config().location();
+            String resourceGroup = context.parameter("resourceGroup", null);
+            if (resourceGroup == null) {
+                throw new IllegalArgumentException("resourceGroup is required");
+            }
+            List<String> names = Utils.nameAllocator()
+                    .reserveStorageAccountNamesAsync(azure, context.parameter("prefix", "sa"), 20,
+                            context.count("count", 1))
+                    .block();
+            if (!azure.resourceGroups().contain(resourceGroup)) {
+                azure.resourceGroups().define(resourceGroup).withRegion(region).create();
+                context.progress("created resource group " + resourceGroup);
+            }
+            FanOut.map(names, FanOut.parallelism(context.config()), name -> {
+                StorageAccount storageAccount = azure.storageAccounts().define(name)
+                        .withRegion(region)
+                        .withExistingResourceGroup(resourceGroup)
+                        .withGeneralPurposeAccountKind()
+                        .withSku(StorageAccountSkuType.STANDARD_LRS)
+                        .create();
+                context.progress("created " + storageAccount.name());
+                return storageAccount;
             });
-            return azureEnvironment;
-        } catch (IOException ioe) {
-            ioe.printStackTrace();
-            throw new RuntimeException(ioe);
-        }
+        });
+        return workflows;
     }
 
     /**
      * Main entry point.
-     * @param args the parameters
+     * @param args the parameters; "--stamps [config file]" runs the sample against every stamp of the config file,
+     *             "--daemon [port]" serves the workflows of {@link #daemonWorkflows()} over a local HTTP API,
+     *             "--startup-training" runs the sample against a local ARM stub instead of a stamp
      */
     public static void main(String[] args) {
         try {
+            if (StartupTraining.isRequested(args)) {
+                // Run this sample, e.g. as a native image, against a local ARM stub instead of a stamp
+                StartupTraining.run((azure, config, credential) -> runSample(azure, config.location()));
+                return;
+            }
+            if (SampleDaemon.isRequested(args)) {
+                // Keep the clients warm and run workflows on request until the process is stopped
+                SampleDaemon.run(args, "../azureSecretSpConfig.json", daemonWorkflows());
+                return;
+            }
+            if (MultiStampRunner.isRequested(args)) {
+                // Run against every stamp of the multi-stamp config at once
+                MultiStampRunner.run(args, stamp -> runSample(stamp.azure(), stamp.location()));
+                return;
+            }
 
             //=============================================================
             // Authenticate
@@ -202,7 +231,7 @@ public final class ManageStorageAccount {
             final String location = settings.get("location").asText();
 
             // Register Azure Stack cloud environment
-            final AzureProfile profile = new AzureProfile(getAzureEnvironmentFromArmEndpoint(armEndpoint));
+            final AzureProfile profile = new AzureProfile(SampleConfig.getAzureEnvironmentFromArmEndpoint(armEndpoint));
             final TokenCredential credential = new ClientSecretCredentialBuilder()
                     .tenantId(tenantId)
                     .clientId(clientId)
@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The threads of {@link FanOut} on Java 21 and later: one virtual thread per operation.
+ * <p>
+ * A virtual thread that blocks on a Resource Manager response gives up its carrier thread, so thousands
+ * of blocking fluent operations can be in flight on a few platform threads and there is no pool to size.
+ * This class is compiled into {@code META-INF/versions/21} of the multi-release jar and replaces the
+ * bounded pool in {@code src/main/java}.
+ */
+final class FanOutThreads {
+    private FanOutThreads() {
+    }
+
+    /**
+     * A method rather than a constant, so that callers compiled against the other version of this class
+     * do not inline its value.
+     *
+     * @return whether operations run on virtual threads
+     */
+    static boolean virtual() {
+        return true;
+    }
+
+    /**
+     * @param parallelism ignored, every operation gets its own virtual thread
+     * @return an executor for the operations of one fan-out
+     */
+    static ExecutorService newExecutor(int parallelism) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("fan-out-", 1).factory());
+    }
+}
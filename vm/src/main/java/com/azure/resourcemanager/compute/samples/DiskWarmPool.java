@@ -0,0 +1,200 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.compute.samples;
+
+import com.azure.core.util.logging.ClientLogger;
+import com.azure.resourcemanager.AzureResourceManager;
+import com.azure.resourcemanager.compute.models.Disk;
+import com.azure.resourcemanager.samples.Utils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps pre-created empty managed data disks ready for new virtual machines.
+ * <p>
+ * The pool holds up to a configured number of disks per size and location, counting the ones still
+ * being created. {@link #acquire(String, int)} hands a disk out atomically, ready for
+ * {@code withExistingDataDisk}, and replenishes the pool in the background, which takes disk provisioning
+ * off the virtual machine's critical path. A disk that is still being created is waited for, since it is
+ * ready sooner than a new one; only when the pool has none of that size is the disk created on demand.
+ * A caller that takes its last disk of a size passes {@code replenish = false} to
+ * {@link #acquire(String, int, boolean)}, so that no disk is created only to be deleted by {@link #close()}.
+ * <p>
+ * A background create that fails is retried with backoff. If it still fails, it is logged, counted in
+ * {@link #failures()} and dropped from the pool, and the next {@link #acquire(String, int)} replaces it.
+ */
+public final class DiskWarmPool implements AutoCloseable {
+    private static final ClientLogger LOGGER = new ClientLogger(DiskWarmPool.class);
+    private static final int REPLENISH_RETRIES = 2;
+    private static final Duration REPLENISH_BACKOFF = Duration.ofSeconds(5);
+
+    private final AzureResourceManager azureResourceManager;
+    private final String rgName;
+    private final int disksPerSize;
+    private final Map<String, Queue<Mono<Disk>>> pooled = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * Creates an empty pool. Call {@link #warm(String, int)} for every size to keep ready.
+     *
+     * @param azureResourceManager instance of the azure client
+     * @param rgName the existing resource group the pooled disks are created in
+     * @param disksPerSize the number of idle disks to keep per size and location
+     */
+    public DiskWarmPool(AzureResourceManager azureResourceManager, String rgName, int disksPerSize) {
+        this.azureResourceManager = azureResourceManager;
+        this.rgName = rgName;
+        this.disksPerSize = disksPerSize;
+    }
+
+    /**
+     * Starts filling the pool for a disk size and location, without waiting for the disks.
+     *
+     * @param location the Azure location
+     * @param sizeInGB the disk size
+     * @return this pool
+     */
+    public DiskWarmPool warm(String location, int sizeInGB) {
+        replenish(location, sizeInGB);
+        return this;
+    }
+
+    /**
+     * Takes a disk out of the pool, waiting for it if it is still being created, or creates one if the
+     * pool has none of that size.
+     *
+     * @param location the Azure location
+     * @param sizeInGB the disk size
+     * @return an empty data disk that is not attached to any virtual machine
+     */
+    public Disk acquire(String location, int sizeInGB) {
+        return acquire(location, sizeInGB, true);
+    }
+
+    /**
+     * Takes a disk out of the pool, waiting for it if it is still being created, or creates one if the
+     * pool has none of that size.
+     *
+     * @param location the Azure location
+     * @param sizeInGB the disk size
+     * @param replenish whether to start creating a replacement, false when the caller needs no more disks
+     *                  of this size
+     * @return an empty data disk that is not attached to any virtual machine
+     */
+    public Disk acquire(String location, int sizeInGB, boolean replenish) {
+        Queue<Mono<Disk>> queue = queue(location, sizeInGB);
+        Mono<Disk> next;
+        while ((next = queue.poll()) != null) {
+            // Start the replacement before waiting for the disk taken.
+            if (replenish) {
+                replenish(location, sizeInGB);
+            }
+            Disk disk = next.onErrorResume(e -> Mono.empty()).block();
+            if (disk != null) {
+                hits.incrementAndGet();
+                return disk;
+            }
+        }
+        misses.incrementAndGet();
+        Disk disk = create(location, sizeInGB).block();
+        if (replenish) {
+            replenish(location, sizeInGB);
+        }
+        return disk;
+    }
+
+    /** @return the number of disks handed out from the pool */
+    public long hits() {
+        return hits.get();
+    }
+
+    /** @return the number of disks created on demand because the pool was empty */
+    public long misses() {
+        return misses.get();
+    }
+
+    /** @return the number of background creates that failed after their retries */
+    public long failures() {
+        return failures.get();
+    }
+
+    /**
+     * Stops replenishing and deletes the idle disks, once those still being created are done.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        List<Mono<Disk>> disks = new ArrayList<>();
+        for (Queue<Mono<Disk>> queue : pooled.values()) {
+            Mono<Disk> disk;
+            while ((disk = queue.poll()) != null) {
+                disks.add(disk);
+            }
+        }
+        Flux.fromIterable(disks)
+                .flatMap(disk -> disk.onErrorResume(e -> Mono.empty()))
+                .flatMap(disk -> azureResourceManager.disks().deleteByIdAsync(disk.id())
+                        .onErrorResume(e -> {
+                            LOGGER.warning("failed to delete pooled disk {}", disk.id(), e);
+                            return Mono.empty();
+                        }))
+                .blockLast();
+    }
+
+    private void replenish(String location, int sizeInGB) {
+        final Queue<Mono<Disk>> queue = queue(location, sizeInGB);
+        synchronized (queue) {
+            while (!closed && queue.size() < disksPerSize) {
+                AtomicReference<Mono<Disk>> self = new AtomicReference<>();
+                Mono<Disk> disk = create(location, sizeInGB)
+                        .retryWhen(Retry.backoff(REPLENISH_RETRIES, REPLENISH_BACKOFF))
+                        .doOnError(e -> {
+                            failures.incrementAndGet();
+                            queue.remove(self.get());
+                            LOGGER.warning("failed to create pooled disk of {} GB in {}", sizeInGB, location, e);
+                        })
+                        .cache();
+                self.set(disk);
+                queue.add(disk);
+                // Start the create now; acquire and close subscribe to the cached result.
+                disk.subscribe(null, e -> { });
+            }
+        }
+    }
+
+    private Mono<Disk> create(String location, int sizeInGB) {
+        return azureResourceManager.disks()
+                .define(Utils.randomResourceName(azureResourceManager, "dsk-", 15))
+                .withRegion(location)
+                .withExistingResourceGroup(rgName)
+                .withData()
+                .withSizeInGB(sizeInGB)
+                .createAsync();
+    }
+
+    private Queue<Mono<Disk>> queue(String location, int sizeInGB) {
+        return pooled.computeIfAbsent(key(location, sizeInGB), k -> new ConcurrentLinkedQueue<>());
+    }
+
+    private static String key(String location, int sizeInGB) {
+        return location.toLowerCase() + "/" + sizeInGB;
+    }
+}
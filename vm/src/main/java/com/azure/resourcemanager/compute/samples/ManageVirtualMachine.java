@@ -7,16 +7,12 @@
 package com.azure.resourcemanager.compute.samples;
 
 import com.azure.core.credential.TokenCredential;
-import com.azure.core.http.HttpClient;
-import com.azure.core.http.HttpMethod;
-import com.azure.core.http.HttpRequest;
-import com.azure.core.http.HttpResponse;
 import com.azure.core.http.policy.HttpLogDetailLevel;
-import com.azure.core.management.AzureEnvironment;
 import com.azure.core.util.serializer.JacksonAdapter;
 import com.azure.core.util.serializer.SerializerEncoding;
 import com.azure.identity.ClientSecretCredentialBuilder;
 import com.azure.resourcemanager.AzureResourceManager;
+import com.azure.resourcemanager.compute.models.CachingTypes;
 import com.azure.resourcemanager.compute.models.Disk;
 import com.azure.resourcemanager.compute.models.KnownWindowsVirtualMachineImage;
 import com.azure.resourcemanager.compute.models.VirtualMachine;
@@ -24,15 +20,20 @@ import com.azure.resourcemanager.compute.models.VirtualMachineSizeTypes;
 import com.azure.resourcemanager.network.models.Network;
 import com.azure.resourcemanager.resources.fluentcore.model.Creatable;
 import com.azure.core.management.profile.AzureProfile;
+import com.azure.resourcemanager.samples.FanOut;
+import com.azure.resourcemanager.samples.HttpCachePolicy;
+import com.azure.resourcemanager.samples.MultiStampRunner;
+import com.azure.resourcemanager.samples.SampleConfig;
+import com.azure.resourcemanager.samples.SampleDaemon;
+import com.azure.resourcemanager.samples.StartupTraining;
 import com.azure.resourcemanager.samples.Utils;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import java.io.FileInputStream;
-import java.io.IOException;
+import java.util.Arrays;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Azure Stack Compute sample for managing virtual machines -
@@ -62,6 +63,7 @@ public final class ManageVirtualMachine {
         final String userName = "tirekicker";
         final String password = Utils.password();
         final String sshPublicKey = Utils.sshPublicKey();
+        DiskWarmPool diskPool = null;
 
         try {
 
@@ -86,6 +88,11 @@ public final class ManageVirtualMachine {
                     .withSizeInGB(10)
                     .create();
 
+            // Start creating the 10 GB data disk that the update below attaches, so that it is provisioned
+            // in the background while the VM is being created
+            //
+            diskPool = new DiskWarmPool(azureResourceManager, rgName, 1).warm(location, 10);
+
             System.out.println("Creating a Windows VM");
 
             Date t1 = new Date();
@@ -93,7 +100,7 @@ public final class ManageVirtualMachine {
             VirtualMachine windowsVM = azureResourceManager.virtualMachines()
                     .define(windowsVMName)
                     .withRegion(location)
-                    .withNewResourceGroup(rgName)
+                    .withExistingResourceGroup(rgName)
                     .withNewPrimaryNetwork("10.0.0.0/28")
                     .withPrimaryPrivateIPAddressDynamic()
                     .withoutPrimaryPublicIPAddress()
@@ -113,38 +120,27 @@ public final class ManageVirtualMachine {
 
 
             //=============================================================
-            // Update - Tag the virtual machine
-
-            windowsVM.update()
-                    .withTag("who-rocks", "java")
-                    .withTag("where", "on azure")
-                    .apply();
-
-            System.out.println("Tagged VM: " + windowsVM.id());
-
-
-            //=============================================================
-            // Update - Add data disk
-
-            windowsVM.update()
-                    .withNewDataDisk(10)
-                    .apply();
+            // Update - Tag the virtual machine, attach a pooled data disk and detach the data disk at lun 0
+            //          in a single update
 
+            // The pooled disk gets the next free lun, so that it cannot take over lun 0 while that is detached
+            int newLun = 0;
+            while (windowsVM.dataDisks().containsKey(newLun)) {
+                newLun++;
+            }
+            try (VirtualMachineUpdateBatch batch = new VirtualMachineUpdateBatch(windowsVM)) {
+                batch.withTag("who-rocks", "java")
+                        .withTag("where", "on azure")
+                        .withExistingDataDisk(diskPool.acquire(location, 10, false), newLun, CachingTypes.READ_WRITE)
+                        .withoutDataDisk(0);
+            }
 
-            System.out.println("Added a data disk to VM" + windowsVM.id());
+            System.out.println("Tagged VM, attached a pooled data disk and detached data disk at lun 0: " + windowsVM.id());
+            System.out.println("Data disks from the pool: " + diskPool.hits() + ", created on demand: " + diskPool.misses()
+                    + ", failed pool creates: " + diskPool.failures());
             Utils.print(windowsVM);
 
 
-            //=============================================================
-            // Update - detach data disk
-
-            windowsVM.update()
-                    .withoutDataDisk(0)
-                    .apply();
-
-            System.out.println("Detached data disk at lun 0 from VM " + windowsVM.id());
-
-
             //=============================================================
             // Restart the virtual machine
 
@@ -210,6 +206,9 @@ public final class ManageVirtualMachine {
             System.out.println("Deleted VM: " + windowsVM.id());
             return true;
         } finally {
+            if (diskPool != null) {
+                diskPool.close();
+            }
 
             try {
                 System.out.println("Deleting Resource Group: " + rgName);
@@ -223,54 +222,73 @@ public final class ManageVirtualMachine {
         }
     }
 
-    private static AzureEnvironment getAzureEnvironmentFromArmEndpoint(String armEndpoint) {
-        // Create HTTP client and request
-        HttpClient httpClient = HttpClient.createDefault();
-
-        HttpRequest request = new HttpRequest(HttpMethod.GET,
-                String.format("%s/metadata/endpoints?api-version=2019-10-01", armEndpoint))
-                .setHeader("accept", "application/json");
-
-        // Execute the request and read the response
-        HttpResponse response = httpClient.send(request).block();
-        if (response.getStatusCode() != 200) {
-            throw new RuntimeException("Failed : HTTP error code : " + response.getStatusCode());
-        }
-        String body = response.getBodyAsString().block();
-        try {
-            ArrayNode metadataArray = JacksonAdapter.createDefaultSerializerAdapter()
-                    .deserialize(body, ArrayNode.class, SerializerEncoding.JSON);
-
-            if (metadataArray == null || metadataArray.isEmpty()) {
-                throw new RuntimeException("Failed to find metadata : " + body);
+    /**
+     * The workflows served in daemon mode.
+     * @return the workflows by name
+     */
+    static Map<String, SampleDaemon.Workflow> daemonWorkflows() {
+        Map<String, SampleDaemon.Workflow> workflows = new LinkedHashMap<>();
+        // {"resourceGroup": "rg1", "count": 3, "prefix": "vm", "size": "Standard_A2"} creates Linux VMs,
+        // each with its own network and public IP, in a new or existing resource group. The creates run
+        // all at once on virtual threads on Java 21 and later, fanOutParallelism at a time otherwise.
+        workflows.put("create-vm-fleet", context -> {
+            AzureResourceManager azure = context.azure();
+            String region = context.config().location();
+            String resourceGroup = context.parameter("resourceGroup", null);
+            if (resourceGroup == null) {
+                throw new IllegalArgumentException("resourceGroup is required");
             }
-
-            JsonNode metadata = metadataArray.iterator().next();
-            AzureEnvironment azureEnvironment = new AzureEnvironment(new HashMap<String, String>() {
-                {
-                    put("managementEndpointUrl", metadata.at("/authentication/audiences/0").asText());
-                    put("resourceManagerEndpointUrl", armEndpoint);
-                    put("galleryEndpointUrl", metadata.at("/gallery").asText());
-                    put("activeDirectoryEndpointUrl", metadata.at("/authentication/loginEndpoint").asText());
-                    put("activeDirectoryResourceId", metadata.at("/authentication/audiences/0").asText());
-                    put("activeDirectoryGraphResourceId", metadata.at("/graph").asText());
-                    put("storageEndpointSuffix", "." + metadata.at("/suffixes/storage").asText());
-                    put("keyVaultDnsSuffix", "." + metadata.at("/suffixes/keyVaultDns").asText());
-                }
+            String prefix = context.parameter("prefix", "vm");
+            VirtualMachineSizeTypes size = VirtualMachineSizeTypes.fromString(
+                    context.parameter("size", VirtualMachineSizeTypes.STANDARD_A2.toString()));
+            String[] names = Utils.randomResourceNames(azure, prefix, 15, context.count("count", 1));
+            if (!azure.resourceGroups().contain(resourceGroup)) {
+                azure.resourceGroups().define(resourceGroup).withRegion(region).create();
+                context.progress("created resource group " + resourceGroup);
+            }
+            FanOut.map(Arrays.asList(names), FanOut.parallelism(context.config()), name -> {
+                VirtualMachine vm = azure.virtualMachines()
+                        .define(name)
+                        .withRegion(region)
+                        .withExistingResourceGroup(resourceGroup)
+                        .withNewPrimaryNetwork("10.0.0.0/28")
+                        .withPrimaryPrivateIPAddressDynamic()
+                        .withNewPrimaryPublicIPAddress(name)
+                        .withLatestLinuxImage("Canonical", "UbuntuServer", "16.04-LTS")
+                        .withRootUsername("tirekicker")
+                        .withSsh(Utils.newSshPublicKey())
+                        .withSize(size)
+                        .create();
+                context.progress("created " + vm.name());
+                return vm;
             });
-            return azureEnvironment;
-        } catch (IOException ioe) {
-            ioe.printStackTrace();
-            throw new RuntimeException(ioe);
-        }
+        });
+        return workflows;
     }
 
     /**
      * Main entry point.
-     * @param args the parameters
+     * @param args the parameters; "--stamps [config file]" runs the sample against every stamp of the config file,
+     *             "--daemon [port]" serves the workflows of {@link #daemonWorkflows()} over a local HTTP API,
+     *             "--startup-training" runs the sample against a local ARM stub instead of a stamp
      */
     public static void main(String[] args) {
         try {
+            if (StartupTraining.isRequested(args)) {
+                // Run this sample, e.g. as a native image, against a local ARM stub instead of a stamp
+                StartupTraining.run((azure, config, credential) -> runSample(azure, config.location()));
+                return;
+            }
+            if (SampleDaemon.isRequested(args)) {
+                // Keep the clients warm and run workflows on request until the process is stopped
+                SampleDaemon.run(args, "../azureSecretSpConfig.json", daemonWorkflows());
+                return;
+            }
+            if (MultiStampRunner.isRequested(args)) {
+                // Run against every stamp of the multi-stamp config at once
+                MultiStampRunner.run(args, stamp -> runSample(stamp.azure(), stamp.location()));
+                return;
+            }
 
             //=============================================================
             // Authenticate
@@ -288,7 +306,7 @@ public final class ManageVirtualMachine {
             final String location = settings.get("location").asText();
 
             // Register Azure Stack cloud environment
-            final AzureProfile profile = new AzureProfile(getAzureEnvironmentFromArmEndpoint(armEndpoint));
+            final AzureProfile profile = new AzureProfile(SampleConfig.getAzureEnvironmentFromArmEndpoint(armEndpoint));
             final TokenCredential credential = new ClientSecretCredentialBuilder()
                     .tenantId(tenantId)
                     .clientId(clientId)
@@ -296,9 +314,13 @@ public final class ManageVirtualMachine {
                     .authorityHost(profile.getEnvironment().getActiveDirectoryEndpoint())
                     .build();
 
+            // Revalidate repeated ARM GETs with their ETags instead of downloading them again
+            final HttpCachePolicy cachePolicy = new HttpCachePolicy(16 * 1024 * 1024);
+
             AzureResourceManager azureResourceManager = AzureResourceManager
                     .configure()
                     .withLogLevel(HttpLogDetailLevel.BASIC)
+                    .withPolicy(cachePolicy)
                     .authenticate(credential, profile)
                     .withTenantId(tenantId)
                     .withSubscription(subscriptionId);
@@ -307,6 +329,7 @@ public final class ManageVirtualMachine {
             System.out.println("Selected subscription: " + azureResourceManager.subscriptionId());
 
             runSample(azureResourceManager, location);
+            System.out.println("ARM response cache: " + cachePolicy.metrics());
         } catch (Exception e) {
             System.out.println(e.getMessage());
             throw new RuntimeException(e);
@@ -0,0 +1,246 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.compute.samples;
+
+import com.azure.resourcemanager.compute.models.PowerState;
+import com.azure.resourcemanager.compute.models.VirtualMachine;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Runs power operations (start, power off, restart, deallocate) across a fleet of virtual machines.
+ * <p>
+ * Operations run as non-blocking long-running operations with a bounded number in flight, either over
+ * the whole fleet at once or in rolling batches where each batch has to pass a health gate before the
+ * next one starts. Power states are read from one instance view per virtual machine, fetched
+ * concurrently, instead of a refresh followed by another instance view read for every {@code powerState()} call.
+ */
+public final class VirtualMachineFleetPower {
+
+    /**
+     * A power operation on a virtual machine.
+     */
+    public enum PowerOperation {
+        /** Starts the virtual machine. */
+        START,
+        /** Powers off the virtual machine, keeping its compute resources allocated. */
+        POWER_OFF,
+        /** Restarts the virtual machine. */
+        RESTART,
+        /** Shuts down the virtual machine and releases its compute resources. */
+        DEALLOCATE;
+
+        private Mono<Void> applyAsync(VirtualMachine virtualMachine) {
+            switch (this) {
+                case START:
+                    return virtualMachine.startAsync();
+                case POWER_OFF:
+                    return virtualMachine.powerOffAsync();
+                case RESTART:
+                    return virtualMachine.restartAsync();
+                default:
+                    return virtualMachine.deallocateAsync();
+            }
+        }
+
+        /** @return the power state a healthy virtual machine is in after the operation */
+        public PowerState expectedState() {
+            switch (this) {
+                case START:
+                case RESTART:
+                    return PowerState.RUNNING;
+                case POWER_OFF:
+                    return PowerState.STOPPED;
+                default:
+                    return PowerState.DEALLOCATED;
+            }
+        }
+    }
+
+    private final List<VirtualMachine> virtualMachines;
+    private int concurrency = 16;
+
+    /**
+     * @param virtualMachines the virtual machines of the fleet
+     */
+    public VirtualMachineFleetPower(Collection<VirtualMachine> virtualMachines) {
+        this.virtualMachines = new ArrayList<>(virtualMachines);
+    }
+
+    /**
+     * @param concurrency the maximum number of operations or instance view reads in flight
+     * @return this fleet
+     */
+    public VirtualMachineFleetPower withConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * Applies the operation to the whole fleet and blocks until every operation has finished.
+     *
+     * @param operation the power operation
+     * @return the result per virtual machine
+     */
+    public FleetResult apply(PowerOperation operation) {
+        final FleetResult result = new FleetResult();
+        applyBatch(virtualMachines, operation, result).block();
+        return result;
+    }
+
+    /**
+     * Applies the operation in rolling batches. After each batch the power states of its virtual
+     * machines are read, and the rollout stops if any of them fails the health gate.
+     *
+     * @param operation the power operation
+     * @param batchSize the number of virtual machines per batch
+     * @param healthGate tests the power state of each virtual machine of a finished batch
+     * @return the result per virtual machine; machines after a failed gate are reported as skipped
+     */
+    public FleetResult applyRolling(PowerOperation operation, int batchSize, Predicate<PowerState> healthGate) {
+        final FleetResult result = new FleetResult();
+        Flux.fromIterable(virtualMachines)
+                .buffer(batchSize)
+                .concatMap(batch -> applyBatch(batch, operation, result)
+                        .then(Mono.fromCallable(() -> {
+                            for (VirtualMachine virtualMachine : batch) {
+                                Outcome outcome = result.outcomes.get(virtualMachine.id());
+                                if (outcome.error != null || !healthGate.test(outcome.powerState)) {
+                                    return false;
+                                }
+                            }
+                            return true;
+                        })))
+                .takeUntil(healthy -> !healthy)
+                .blockLast();
+        for (VirtualMachine virtualMachine : virtualMachines) {
+            result.outcomes.putIfAbsent(virtualMachine.id(), new Outcome(null, null, null, true));
+        }
+        return result;
+    }
+
+    /**
+     * Reads the power state of every virtual machine of the fleet.
+     *
+     * @return the IDs of the virtual machines per power state
+     */
+    public Map<PowerState, List<String>> status() {
+        final Map<PowerState, List<String>> status = new ConcurrentHashMap<>();
+        Flux.fromIterable(virtualMachines)
+                .flatMap(virtualMachine -> readPowerState(virtualMachine)
+                        .doOnNext(state -> status
+                                .computeIfAbsent(state, key -> Collections.synchronizedList(new ArrayList<>()))
+                                .add(virtualMachine.id())), concurrency)
+                .blockLast();
+        return status;
+    }
+
+    private Mono<Void> applyBatch(List<VirtualMachine> batch, PowerOperation operation, FleetResult result) {
+        return Flux.fromIterable(batch)
+                .flatMap(virtualMachine -> {
+                    final long start = System.nanoTime();
+                    return operation.applyAsync(virtualMachine)
+                            .then(readPowerState(virtualMachine))
+                            .doOnNext(state -> result.outcomes.put(virtualMachine.id(),
+                                    new Outcome(state, Duration.ofNanos(System.nanoTime() - start), null, false)))
+                            .onErrorResume(e -> {
+                                result.outcomes.put(virtualMachine.id(),
+                                        new Outcome(null, Duration.ofNanos(System.nanoTime() - start), e, false));
+                                return Mono.empty();
+                            });
+                }, concurrency)
+                .then();
+    }
+
+    private static Mono<PowerState> readPowerState(VirtualMachine virtualMachine) {
+        // A single instance view read per machine; PowerState.UNKNOWN stands in for a missing status.
+        return virtualMachine.refreshInstanceViewAsync()
+                .map(instanceView -> {
+                    PowerState state = PowerState.fromInstanceView(instanceView);
+                    return state == null ? PowerState.UNKNOWN : state;
+                });
+    }
+
+    /**
+     * Outcome of a power operation on one virtual machine.
+     */
+    public static final class Outcome {
+        private final PowerState powerState;
+        private final Duration duration;
+        private final Throwable error;
+        private final boolean skipped;
+
+        private Outcome(PowerState powerState, Duration duration, Throwable error, boolean skipped) {
+            this.powerState = powerState;
+            this.duration = duration;
+            this.error = error;
+            this.skipped = skipped;
+        }
+
+        /** @return the power state after the operation, or null if the operation failed or was skipped */
+        public PowerState powerState() {
+            return powerState;
+        }
+
+        /** @return the time the operation took, or null if it was skipped */
+        public Duration duration() {
+            return duration;
+        }
+
+        /** @return the operation error, or null */
+        public Throwable error() {
+            return error;
+        }
+
+        /** @return true if a failed health gate stopped the rollout before this virtual machine */
+        public boolean isSkipped() {
+            return skipped;
+        }
+    }
+
+    /**
+     * Outcome of a power operation across the fleet.
+     */
+    public static final class FleetResult {
+        private final Map<String, Outcome> outcomes = new ConcurrentHashMap<>();
+
+        private FleetResult() {
+        }
+
+        /** @return the outcome per virtual machine ID */
+        public Map<String, Outcome> outcomes() {
+            return Collections.unmodifiableMap(outcomes);
+        }
+
+        /** @return the number of virtual machines per power state, with failed and skipped ones counted separately */
+        public Map<String, Integer> summary() {
+            Map<String, Integer> summary = new TreeMap<>();
+            for (Outcome outcome : outcomes.values()) {
+                String key = outcome.skipped ? "skipped"
+                        : outcome.error != null ? "failed"
+                        : outcome.powerState.toString();
+                summary.merge(key, 1, Integer::sum);
+            }
+            return summary;
+        }
+
+        @Override
+        public String toString() {
+            return "Fleet power operation: " + summary();
+        }
+    }
+}
@@ -0,0 +1,295 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.compute.samples;
+
+import com.azure.core.util.logging.ClientLogger;
+import com.azure.resourcemanager.compute.models.CachingTypes;
+import com.azure.resourcemanager.compute.models.Disk;
+import com.azure.resourcemanager.compute.models.VirtualMachine;
+import com.azure.resourcemanager.compute.models.VirtualMachineSizeTypes;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Accumulates updates to a virtual machine and applies them as a single update.
+ * <p>
+ * Every {@code update().apply()} on a virtual machine is a full PUT followed by a long-running operation.
+ * The batch collects tag, data disk and size changes and merges them into one update, so several
+ * logical changes cost one round trip. Changes that contradict each other, such as setting and removing
+ * the same tag, are rejected with an {@link IllegalStateException} when they are added. A new data disk
+ * without a LUN cannot be combined with detaching a disk, since the LUN the new disk gets may be the one
+ * being detached; give the new disk an explicit LUN instead.
+ * <p>
+ * The batch is applied when it is closed, when {@link #apply()} is called, or, if a window is set,
+ * once the window has passed after the first pending change. Updates of one batch never overlap: an
+ * update starts once the previous one has finished, and takes the changes pending at that time.
+ */
+public final class VirtualMachineUpdateBatch implements AutoCloseable {
+    private static final ClientLogger LOGGER = new ClientLogger(VirtualMachineUpdateBatch.class);
+
+    private final VirtualMachine virtualMachine;
+    private final Duration window;
+    private final Map<String, String> tags = new LinkedHashMap<>();
+    private final Set<String> removedTags = new HashSet<>();
+    private final List<NewDataDisk> newDataDisks = new ArrayList<>();
+    private final Set<Integer> removedLuns = new HashSet<>();
+    private VirtualMachineSizeTypes size;
+    private Disposable windowTimer;
+    /** Completes when the last update started by this batch has finished. */
+    private Mono<Void> previousUpdate = Mono.empty();
+
+    /**
+     * Creates a batch applied explicitly or when it is closed.
+     *
+     * @param virtualMachine the virtual machine to update
+     */
+    public VirtualMachineUpdateBatch(VirtualMachine virtualMachine) {
+        this(virtualMachine, null);
+    }
+
+    /**
+     * Creates a batch that is also applied once the window has passed after its first pending change.
+     *
+     * @param virtualMachine the virtual machine to update
+     * @param window the time to wait for further changes, or null to apply only explicitly
+     */
+    public VirtualMachineUpdateBatch(VirtualMachine virtualMachine, Duration window) {
+        this.virtualMachine = virtualMachine;
+        this.window = window;
+    }
+
+    /**
+     * @param key the tag key
+     * @param value the tag value
+     * @return this batch
+     */
+    public synchronized VirtualMachineUpdateBatch withTag(String key, String value) {
+        String pending = tags.get(key);
+        if (removedTags.contains(key) || (pending != null && !pending.equals(value))) {
+            throw conflict("tag '" + key + "' is already set to another value or removed in this batch");
+        }
+        tags.put(key, value);
+        return changed();
+    }
+
+    /**
+     * @param key the key of the tag to remove
+     * @return this batch
+     */
+    public synchronized VirtualMachineUpdateBatch withoutTag(String key) {
+        if (tags.containsKey(key)) {
+            throw conflict("tag '" + key + "' is already set in this batch");
+        }
+        removedTags.add(key);
+        return changed();
+    }
+
+    /**
+     * @param sizeInGB the size of the new empty data disk
+     * @return this batch
+     */
+    public synchronized VirtualMachineUpdateBatch withNewDataDisk(int sizeInGB) {
+        if (!removedLuns.isEmpty()) {
+            throw conflict("a data disk is detached in this batch, so a new data disk needs an explicit lun");
+        }
+        newDataDisks.add(new NewDataDisk(null, sizeInGB, null, null));
+        return changed();
+    }
+
+    /**
+     * @param sizeInGB the size of the new empty data disk
+     * @param lun the LUN to attach the disk at
+     * @param cachingType the caching type of the disk
+     * @return this batch
+     */
+    public synchronized VirtualMachineUpdateBatch withNewDataDisk(int sizeInGB, int lun, CachingTypes cachingType) {
+        checkLunIsFree(lun);
+        newDataDisks.add(new NewDataDisk(null, sizeInGB, lun, cachingType));
+        return changed();
+    }
+
+    /**
+     * @param disk the existing, unattached data disk to attach
+     * @param lun the LUN to attach the disk at
+     * @param cachingType the caching type of the disk
+     * @return this batch
+     */
+    public synchronized VirtualMachineUpdateBatch withExistingDataDisk(Disk disk, int lun, CachingTypes cachingType) {
+        checkLunIsFree(lun);
+        newDataDisks.add(new NewDataDisk(disk, 0, lun, cachingType));
+        return changed();
+    }
+
+    /**
+     * @param lun the LUN of the data disk to detach
+     * @return this batch
+     */
+    public synchronized VirtualMachineUpdateBatch withoutDataDisk(int lun) {
+        for (NewDataDisk disk : newDataDisks) {
+            if (disk.lun == null) {
+                throw conflict("a new data disk without a lun is attached in this batch, so no data disk can be detached");
+            }
+            if (disk.lun == lun) {
+                throw conflict("lun " + lun + " gets a new data disk in this batch");
+            }
+        }
+        removedLuns.add(lun);
+        return changed();
+    }
+
+    /**
+     * @param size the new size of the virtual machine
+     * @return this batch
+     */
+    public synchronized VirtualMachineUpdateBatch withSize(VirtualMachineSizeTypes size) {
+        if (this.size != null && !this.size.equals(size)) {
+            throw conflict("size is already changed to " + this.size + " in this batch");
+        }
+        this.size = size;
+        return changed();
+    }
+
+    /**
+     * Applies the pending changes as one update and blocks until it has finished.
+     *
+     * @return the updated virtual machine
+     */
+    public VirtualMachine apply() {
+        return applyAsync().block();
+    }
+
+    /**
+     * Starts applying the pending changes as one update, once the previous update of this batch has
+     * finished. Changes added after that update has started go into the next one.
+     *
+     * @return the updated virtual machine, or the unchanged one if nothing is pending
+     */
+    public Mono<VirtualMachine> applyAsync() {
+        synchronized (this) {
+            if (windowTimer != null) {
+                windowTimer.dispose();
+            }
+        }
+        return flushAsync();
+    }
+
+    /**
+     * Applies the pending changes, if any.
+     */
+    @Override
+    public void close() {
+        apply();
+    }
+
+    private synchronized Mono<VirtualMachine> flushAsync() {
+        windowTimer = null;
+        Sinks.Empty<Void> finished = Sinks.empty();
+        Mono<VirtualMachine> update = previousUpdate
+                .then(Mono.defer(this::applyPending))
+                .doFinally(signal -> finished.tryEmitEmpty())
+                .cache();
+        previousUpdate = finished.asMono();
+        // Start it even if the caller never subscribes, so that it cannot hold up the next update.
+        update.subscribe(null, e -> { });
+        return update;
+    }
+
+    private Mono<VirtualMachine> applyPending() {
+        VirtualMachine.Update update;
+        synchronized (this) {
+            if (!hasPendingChanges()) {
+                return Mono.just(virtualMachine);
+            }
+            update = drain();
+        }
+        return update.applyAsync();
+    }
+
+    private VirtualMachine.Update drain() {
+        VirtualMachine.Update update = virtualMachine.update();
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            update = update.withTag(tag.getKey(), tag.getValue());
+        }
+        for (String key : removedTags) {
+            update = update.withoutTag(key);
+        }
+        for (NewDataDisk disk : newDataDisks) {
+            if (disk.existing != null) {
+                update = update.withExistingDataDisk(disk.existing, disk.lun, disk.cachingType);
+            } else if (disk.lun == null) {
+                update = update.withNewDataDisk(disk.sizeInGB);
+            } else {
+                update = update.withNewDataDisk(disk.sizeInGB, disk.lun, disk.cachingType);
+            }
+        }
+        for (int lun : removedLuns) {
+            update = update.withoutDataDisk(lun);
+        }
+        if (size != null) {
+            update = update.withSize(size);
+        }
+        tags.clear();
+        removedTags.clear();
+        newDataDisks.clear();
+        removedLuns.clear();
+        size = null;
+        return update;
+    }
+
+    private boolean hasPendingChanges() {
+        return !tags.isEmpty() || !removedTags.isEmpty() || !newDataDisks.isEmpty()
+                || !removedLuns.isEmpty() || size != null;
+    }
+
+    private VirtualMachineUpdateBatch changed() {
+        if (window != null && windowTimer == null) {
+            windowTimer = Mono.delay(window)
+                    .then(Mono.defer(this::flushAsync))
+                    .subscribe(null, e -> LOGGER.warning("failed to apply update batch to {}", virtualMachine.id(), e));
+        }
+        return this;
+    }
+
+    private void checkLunIsFree(int lun) {
+        if (removedLuns.contains(lun)) {
+            throw conflict("the data disk at lun " + lun + " is detached in this batch");
+        }
+        for (NewDataDisk disk : newDataDisks) {
+            if (disk.lun != null && disk.lun == lun) {
+                throw conflict("a new data disk is already attached at lun " + lun + " in this batch");
+            }
+        }
+    }
+
+    private RuntimeException conflict(String message) {
+        return LOGGER.logExceptionAsError(new IllegalStateException(
+                "Conflicting update of " + virtualMachine.name() + ": " + message));
+    }
+
+    private static final class NewDataDisk {
+        private final Disk existing;
+        private final int sizeInGB;
+        private final Integer lun;
+        private final CachingTypes cachingType;
+
+        private NewDataDisk(Disk existing, int sizeInGB, Integer lun, CachingTypes cachingType) {
+            this.existing = existing;
+            this.sizeInGB = sizeInGB;
+            this.lun = lun;
+            this.cachingType = cachingType;
+        }
+    }
+}
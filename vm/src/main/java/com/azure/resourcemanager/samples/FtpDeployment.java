@@ -0,0 +1,366 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import com.azure.core.util.logging.ClientLogger;
+import com.azure.resourcemanager.appservice.models.PublishingProfile;
+import org.apache.commons.net.ftp.FTP;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPReply;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Deploys files to an app service over FTP.
+ * <p>
+ * Rather than connecting and logging in for every file, the deployment keeps a pool of logged-in
+ * sessions and a cache of the remote directories it has created. Files are streamed through a buffer
+ * in parallel, one per session, and a file that fails is retried on a fresh session. Failures are
+ * reported in the {@link Result} instead of being swallowed. {@code Utils.uploadFileViaFtp} uploads
+ * single files through a deployment with one session.
+ */
+public final class FtpDeployment implements AutoCloseable {
+    private static final ClientLogger LOGGER = new ClientLogger(FtpDeployment.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String server;
+    private final String username;
+    private final String password;
+    private final String remoteRoot;
+    private final int sessions;
+    private final BlockingQueue<FTPClient> idle;
+    private final Semaphore permits;
+    private final Set<String> createdDirectories = ConcurrentHashMap.newKeySet();
+    private int maxAttempts = 3;
+
+    /**
+     * Creates a deployment to a directory of the app service.
+     *
+     * @param profile the publishing profile for the app service; the host of its FTP URL may carry a port
+     * @param remoteRoot the directory to deploy to, relative to the FTP root, e.g. "site/wwwroot"
+     * @param sessions the number of FTP sessions, which is also the number of parallel uploads
+     */
+    public FtpDeployment(PublishingProfile profile, String remoteRoot, int sessions) {
+        this.server = profile.ftpUrl().split("/", 2)[0];
+        this.username = profile.ftpUsername();
+        this.password = profile.ftpPassword();
+        this.remoteRoot = "/" + trimSlashes(remoteRoot);
+        this.sessions = sessions;
+        this.idle = new ArrayBlockingQueue<>(sessions);
+        this.permits = new Semaphore(sessions);
+    }
+
+    /**
+     * @param maxAttempts the number of times a file is tried before it is reported as failed
+     * @return this deployment
+     */
+    public FtpDeployment withMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    /**
+     * @return the server and remote root the files are deployed to, e.g.
+     * {@code ftp://waws-prod.ftp.azurewebsites.windows.net/site/wwwroot}
+     */
+    public String target() {
+        return "ftp://" + server + remoteRoot;
+    }
+
+    /**
+     * Uploads every file under a local directory, keeping the relative paths.
+     *
+     * @param localDirectory the directory to deploy
+     * @return the deployment result
+     * @throws IOException if the local directory cannot be listed
+     */
+    public Result deploy(Path localDirectory) throws IOException {
+        Map<String, Path> files = new LinkedHashMap<>();
+        try (Stream<Path> paths = Files.walk(localDirectory)) {
+            for (Path file : paths.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                files.put(localDirectory.relativize(file).toString().replace('\\', '/'), file);
+            }
+        }
+        return upload(files);
+    }
+
+    /**
+     * Uploads files in parallel.
+     *
+     * @param files the local files, keyed by their path relative to the remote root
+     * @return the deployment result
+     */
+    public Result upload(Map<String, Path> files) {
+        final Result result = new Result();
+        final long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(sessions, files.size())));
+        try {
+            Map<String, Future<?>> uploads = new LinkedHashMap<>();
+            for (Map.Entry<String, Path> file : files.entrySet()) {
+                uploads.put(file.getKey(), executor.submit(() -> {
+                    uploadWithRetry(file.getKey(), file.getValue(), result);
+                    return null;
+                }));
+            }
+            for (Map.Entry<String, Future<?>> upload : uploads.entrySet()) {
+                try {
+                    upload.getValue().get();
+                } catch (ExecutionException e) {
+                    result.failed.put(upload.getKey(), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw LOGGER.logExceptionAsError(new IllegalStateException("interrupted while uploading", e));
+        } finally {
+            executor.shutdownNow();
+        }
+        result.elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Deletes remote files, relative to the remote root. Missing files are ignored; a file the server
+     * refuses to delete is reported as failed.
+     *
+     * @param remotePaths the files to delete
+     * @return the paths that could not be deleted, mapped to the error
+     */
+    public Map<String, Throwable> delete(List<String> remotePaths) {
+        Map<String, Throwable> failed = new LinkedHashMap<>();
+        for (String remotePath : remotePaths) {
+            FTPClient client = null;
+            try {
+                client = borrow();
+                String path = remotePath(remotePath);
+                if (!client.deleteFile(path)) {
+                    String reply = client.getReplyString();
+                    if (exists(client, path)) {
+                        failed.put(remotePath, new IOException("failed to delete " + path + ": " + reply));
+                    }
+                }
+                release(client);
+            } catch (IOException e) {
+                discard(client);
+                failed.put(remotePath, e);
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Logs out and disconnects all idle sessions.
+     */
+    @Override
+    public void close() {
+        FTPClient client;
+        while ((client = idle.poll()) != null) {
+            try {
+                client.logout();
+            } catch (IOException e) {
+                // The session is closed below either way.
+            }
+            disconnect(client);
+        }
+    }
+
+    private void uploadWithRetry(String relativePath, Path file, Result result) throws IOException {
+        IOException lastError = null;
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            FTPClient client = null;
+            try {
+                long size = Files.size(file);
+                client = borrow();
+                String remotePath = remotePath(relativePath);
+                ensureDirectory(client, remotePath.substring(0, remotePath.lastIndexOf('/')));
+                try (InputStream stream = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE)) {
+                    if (!client.storeFile(remotePath, stream)) {
+                        throw new IOException("failed to store " + remotePath + ": " + client.getReplyString());
+                    }
+                }
+                release(client);
+                result.uploaded.add(relativePath);
+                result.bytes.addAndGet(size);
+                if (attempt > 1) {
+                    result.retries.addAndGet(attempt - 1);
+                }
+                return;
+            } catch (IOException e) {
+                // The session may be broken; retry on a new one.
+                discard(client);
+                lastError = e;
+                LOGGER.warning("attempt {} to upload {} failed", attempt, relativePath, e);
+            }
+        }
+        throw lastError;
+    }
+
+    private void ensureDirectory(FTPClient client, String directory) throws IOException {
+        if (directory.isEmpty() || createdDirectories.contains(directory)) {
+            return;
+        }
+        StringBuilder path = new StringBuilder();
+        for (String segment : trimSlashes(directory).split("/")) {
+            path.append('/').append(segment);
+            String prefix = path.toString();
+            if (!createdDirectories.contains(prefix)) {
+                // makeDirectory also fails when the directory already exists, which is fine.
+                if (!client.makeDirectory(prefix) && !client.changeWorkingDirectory(prefix)) {
+                    throw new IOException("failed to create directory " + prefix + ": " + client.getReplyString());
+                }
+                createdDirectories.add(prefix);
+            }
+        }
+    }
+
+    private static boolean exists(FTPClient client, String path) throws IOException {
+        String[] names = client.listNames(path);
+        return names != null && names.length > 0;
+    }
+
+    private FTPClient borrow() throws IOException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for an FTP session", e);
+        }
+        FTPClient client = idle.poll();
+        if (client != null && client.isConnected()) {
+            return client;
+        }
+        if (client != null) {
+            disconnect(client);
+        }
+        try {
+            return connect();
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void release(FTPClient client) {
+        idle.offer(client);
+        permits.release();
+    }
+
+    private void discard(FTPClient client) {
+        if (client != null) {
+            disconnect(client);
+            permits.release();
+        }
+    }
+
+    private static void disconnect(FTPClient client) {
+        try {
+            if (client.isConnected()) {
+                client.disconnect();
+            }
+        } catch (IOException e) {
+            // Nothing left to clean up.
+        }
+    }
+
+    private FTPClient connect() throws IOException {
+        FTPClient client = new FTPClient();
+        int colon = server.lastIndexOf(':');
+        if (colon > 0) {
+            client.connect(server.substring(0, colon), Integer.parseInt(server.substring(colon + 1)));
+        } else {
+            client.connect(server);
+        }
+        if (!FTPReply.isPositiveCompletion(client.getReplyCode())) {
+            client.disconnect();
+            throw new IOException("FTP server refused connection: " + client.getReplyString());
+        }
+        client.enterLocalPassiveMode();
+        if (!client.login(username, password)) {
+            client.disconnect();
+            throw new IOException("FTP login failed: " + client.getReplyString());
+        }
+        client.setFileType(FTP.BINARY_FILE_TYPE);
+        client.setBufferSize(BUFFER_SIZE);
+        return client;
+    }
+
+    private String remotePath(String relativePath) {
+        return remoteRoot + "/" + trimSlashes(relativePath);
+    }
+
+    private static String trimSlashes(String path) {
+        String trimmed = path.replace('\\', '/');
+        while (trimmed.startsWith("/") || trimmed.startsWith("./")) {
+            trimmed = trimmed.substring(trimmed.startsWith("/") ? 1 : 2);
+        }
+        while (trimmed.endsWith("/")) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1);
+        }
+        return trimmed;
+    }
+
+    /**
+     * Outcome of an upload.
+     */
+    public static final class Result {
+        private final Set<String> uploaded = ConcurrentHashMap.newKeySet();
+        private final Map<String, Throwable> failed = new ConcurrentHashMap<>();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong retries = new AtomicLong();
+        private volatile long elapsedMillis;
+
+        private Result() {
+        }
+
+        /** @return the uploaded files, relative to the remote root */
+        public Set<String> uploaded() {
+            return Collections.unmodifiableSet(uploaded);
+        }
+
+        /** @return the files that failed on every attempt, mapped to the last error */
+        public Map<String, Throwable> failed() {
+            return Collections.unmodifiableMap(failed);
+        }
+
+        /** @return the number of bytes uploaded */
+        public long bytes() {
+            return bytes.get();
+        }
+
+        /** @return the number of retried attempts of files that were uploaded eventually */
+        public long retries() {
+            return retries.get();
+        }
+
+        @Override
+        public String toString() {
+            return "FTP deployment: " + uploaded.size() + " files (" + bytes.get() + " bytes) uploaded in "
+                    + elapsedMillis + " ms, " + retries.get() + " retries, " + failed.size() + " failed";
+        }
+    }
+}
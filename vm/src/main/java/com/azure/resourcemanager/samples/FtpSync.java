@@ -0,0 +1,270 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import com.azure.core.util.logging.ClientLogger;
+import com.azure.core.util.serializer.JacksonAdapter;
+import com.azure.core.util.serializer.SerializerAdapter;
+import com.azure.core.util.serializer.SerializerEncoding;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Deploys only the files that changed since the last deployment.
+ * <p>
+ * A local manifest records the size, modification time and SHA-256 hash of every deployed file, along
+ * with the {@link FtpDeployment#target() target} they were deployed to; a manifest of another server or
+ * remote directory is ignored, so every file is uploaded.
+ * Files whose size and modification time match the manifest are skipped without being read; the
+ * others are hashed with memory-mapped reads and uploaded through an {@link FtpDeployment} only if
+ * the hash differs. Files that were deployed before but no longer exist locally can optionally be
+ * deleted from the server; an orphan leaves the manifest only once the server has confirmed the delete.
+ */
+public final class FtpSync {
+    private static final ClientLogger LOGGER = new ClientLogger(FtpSync.class);
+    private static final SerializerAdapter SERIALIZER = JacksonAdapter.createDefaultSerializerAdapter();
+    private static final long MAP_CHUNK_SIZE = 64L * 1024 * 1024;
+
+    private final FtpDeployment deployment;
+    private final Path manifestFile;
+    private boolean deleteOrphans;
+
+    /**
+     * @param deployment the deployment used to upload and delete files
+     * @param manifestFile the manifest of the last deployment, created if it does not exist
+     */
+    public FtpSync(FtpDeployment deployment, Path manifestFile) {
+        this.deployment = deployment;
+        this.manifestFile = manifestFile;
+    }
+
+    /**
+     * Deletes remote files that were deployed before but no longer exist locally.
+     *
+     * @return this sync
+     */
+    public FtpSync withDeleteOrphans() {
+        this.deleteOrphans = true;
+        return this;
+    }
+
+    /**
+     * Uploads the changed files of a local directory and updates the manifest.
+     *
+     * @param localDirectory the directory to deploy
+     * @return the sync result
+     * @throws IOException if the local directory or the manifest cannot be read or written
+     */
+    public SyncResult sync(Path localDirectory) throws IOException {
+        final Map<String, Entry> manifest = loadManifest();
+        final Map<String, Entry> current = new TreeMap<>();
+        final Map<String, Path> changed = new LinkedHashMap<>();
+        int unchanged = 0;
+
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(localDirectory)) {
+            files = paths.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            String relativePath = localDirectory.relativize(file).toString().replace('\\', '/');
+            long size = Files.size(file);
+            long modified = Files.getLastModifiedTime(file).toMillis();
+            Entry previous = manifest.get(relativePath);
+            if (previous != null && previous.size == size && previous.modified == modified) {
+                current.put(relativePath, previous);
+                unchanged++;
+                continue;
+            }
+            Entry entry = new Entry(size, modified, hash(file));
+            if (previous != null && previous.hash.equals(entry.hash)) {
+                // Touched but not modified.
+                current.put(relativePath, entry);
+                unchanged++;
+            } else {
+                changed.put(relativePath, file);
+                current.put(relativePath, entry);
+            }
+        }
+
+        FtpDeployment.Result upload = deployment.upload(changed);
+        for (String failed : upload.failed().keySet()) {
+            // Keep the old entry, if any, so the file is retried on the next sync.
+            Entry previous = manifest.get(failed);
+            if (previous == null) {
+                current.remove(failed);
+            } else {
+                current.put(failed, previous);
+            }
+        }
+
+        List<String> orphans = new ArrayList<>();
+        for (String deployed : manifest.keySet()) {
+            if (!current.containsKey(deployed)) {
+                orphans.add(deployed);
+            }
+        }
+        Map<String, Throwable> failedDeletes = Collections.emptyMap();
+        if (deleteOrphans && !orphans.isEmpty()) {
+            failedDeletes = deployment.delete(orphans);
+        }
+        int deleted = 0;
+        for (String orphan : orphans) {
+            if (deleteOrphans && !failedDeletes.containsKey(orphan)) {
+                deleted++;
+            } else {
+                // Still on the server: keep it in the manifest, so that a later sync deletes it.
+                current.put(orphan, manifest.get(orphan));
+            }
+        }
+
+        saveManifest(current);
+        return new SyncResult(upload, unchanged, deleted, failedDeletes);
+    }
+
+    private Map<String, Entry> loadManifest() throws IOException {
+        Map<String, Entry> manifest = new TreeMap<>();
+        if (Files.exists(manifestFile)) {
+            try (InputStream stream = Files.newInputStream(manifestFile)) {
+                ObjectNode json = SERIALIZER.deserialize(stream, ObjectNode.class, SerializerEncoding.JSON);
+                String target = json.path("target").asText();
+                if (!deployment.target().equals(target)) {
+                    LOGGER.info("ignoring manifest {} of {}, deploying to {}", manifestFile, target,
+                            deployment.target());
+                    return manifest;
+                }
+                Iterator<Map.Entry<String, JsonNode>> fields = json.path("files").fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    JsonNode value = field.getValue();
+                    manifest.put(field.getKey(), new Entry(value.path("size").asLong(),
+                            value.path("modified").asLong(), value.path("sha256").asText()));
+                }
+            }
+        }
+        return manifest;
+    }
+
+    private void saveManifest(Map<String, Entry> manifest) throws IOException {
+        Map<String, Map<String, Object>> files = new TreeMap<>();
+        for (Map.Entry<String, Entry> entry : manifest.entrySet()) {
+            Map<String, Object> value = new TreeMap<>();
+            value.put("size", entry.getValue().size);
+            value.put("modified", entry.getValue().modified);
+            value.put("sha256", entry.getValue().hash);
+            files.put(entry.getKey(), value);
+        }
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("target", deployment.target());
+        json.put("files", files);
+        Path absolute = manifestFile.toAbsolutePath();
+        Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        Files.write(temp, SERIALIZER.serialize(json, SerializerEncoding.JSON).getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Computes the SHA-256 hash of a file from memory-mapped reads.
+     *
+     * @param file the file
+     * @return the hex-encoded hash
+     * @throws IOException if the file cannot be read
+     */
+    static String hash(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            long size = channel.size();
+            for (long position = 0; position < size; position += MAP_CHUNK_SIZE) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(MAP_CHUNK_SIZE, size - position));
+                digest.update(buffer);
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw LOGGER.logExceptionAsError(new IllegalStateException(e));
+        }
+    }
+
+    private static final class Entry {
+        private final long size;
+        private final long modified;
+        private final String hash;
+
+        private Entry(long size, long modified, String hash) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * Outcome of a sync.
+     */
+    public static final class SyncResult {
+        private final FtpDeployment.Result upload;
+        private final int unchanged;
+        private final int deleted;
+        private final Map<String, Throwable> failedDeletes;
+
+        private SyncResult(FtpDeployment.Result upload, int unchanged, int deleted, Map<String, Throwable> failedDeletes) {
+            this.upload = upload;
+            this.unchanged = unchanged;
+            this.deleted = deleted;
+            this.failedDeletes = failedDeletes;
+        }
+
+        /** @return the result of uploading the changed files */
+        public FtpDeployment.Result upload() {
+            return upload;
+        }
+
+        /** @return the number of files skipped because they did not change */
+        public int unchanged() {
+            return unchanged;
+        }
+
+        /** @return the number of remote orphans deleted */
+        public int deleted() {
+            return deleted;
+        }
+
+        /** @return the remote orphans that could not be deleted, mapped to the error */
+        public Map<String, Throwable> failedDeletes() {
+            return failedDeletes;
+        }
+
+        @Override
+        public String toString() {
+            return upload + "; " + unchanged + " unchanged, " + deleted + " orphans deleted, "
+                    + failedDeletes.size() + " orphans failed to delete";
+        }
+    }
+}
@@ -0,0 +1,310 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import com.azure.core.http.HttpHeaders;
+import com.azure.core.http.HttpMethod;
+import com.azure.core.http.HttpPipelineCallContext;
+import com.azure.core.http.HttpPipelineNextPolicy;
+import com.azure.core.http.HttpRequest;
+import com.azure.core.http.HttpResponse;
+import com.azure.core.http.policy.HttpPipelinePolicy;
+import com.azure.core.util.logging.ClientLogger;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches GET responses that carry an ETag or Last-Modified validator.
+ * <p>
+ * A cached response is revalidated with If-None-Match or If-Modified-Since; on 304 Not Modified the
+ * cached body is returned and the download is saved. Within an optional freshness window a cached
+ * response is returned without any request. Bodies are kept in memory up to a byte bound, evicting the
+ * least recently used. A PUT, PATCH, POST or DELETE drops the cached responses under its URL path.
+ * <p>
+ * Responses are cached per URL and credential: a request with an Authorization header is only served
+ * responses cached for the same header, so one caller never sees a body fetched with another's
+ * credential. Only a digest of the header is kept.
+ */
+public final class HttpCachePolicy implements HttpPipelinePolicy {
+    private static final ClientLogger LOGGER = new ClientLogger(HttpCachePolicy.class);
+
+    private final long maxBytes;
+    private final Duration freshness;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private final Metrics metrics = new Metrics();
+
+    /**
+     * Creates a cache that always revalidates.
+     *
+     * @param maxBytes the maximum total size of the cached bodies
+     */
+    public HttpCachePolicy(long maxBytes) {
+        this(maxBytes, Duration.ZERO);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxBytes the maximum total size of the cached bodies
+     * @param freshness the time after storing or revalidating during which a response is served without
+     * a request, possibly stale
+     */
+    public HttpCachePolicy(long maxBytes, Duration freshness) {
+        this.maxBytes = maxBytes;
+        this.freshness = freshness;
+    }
+
+    /** @return the cache metrics */
+    public Metrics metrics() {
+        return metrics;
+    }
+
+    @Override
+    public Mono<HttpResponse> process(HttpPipelineCallContext context, HttpPipelineNextPolicy next) {
+        final HttpRequest request = context.getHttpRequest();
+        final String url = request.getUrl().toString();
+        final String key = key(url, request.getHeaders().getValue("Authorization"));
+        if (request.getHttpMethod() != HttpMethod.GET) {
+            if (request.getHttpMethod() != HttpMethod.HEAD && request.getHttpMethod() != HttpMethod.OPTIONS) {
+                invalidate(path(url));
+            }
+            return next.process();
+        }
+        metrics.requests.incrementAndGet();
+        final Entry cached = get(key);
+        if (cached != null && System.nanoTime() - cached.validatedNanos < freshness.toNanos()) {
+            metrics.freshHits.incrementAndGet();
+            metrics.bytesSaved.addAndGet(cached.body.length);
+            return Mono.just(new CachedResponse(request, cached));
+        }
+        if (cached != null) {
+            if (cached.etag != null) {
+                request.setHeader("If-None-Match", cached.etag);
+            } else {
+                request.setHeader("If-Modified-Since", cached.lastModified);
+            }
+        }
+        return next.process().flatMap(response -> {
+            if (cached != null && response.getStatusCode() == 304) {
+                response.close();
+                cached.validatedNanos = System.nanoTime();
+                metrics.revalidatedHits.incrementAndGet();
+                metrics.bytesSaved.addAndGet(cached.body.length);
+                return Mono.just(new CachedResponse(request, cached));
+            }
+            metrics.misses.incrementAndGet();
+            String etag = response.getHeaderValue("ETag");
+            String lastModified = response.getHeaderValue("Last-Modified");
+            if (response.getStatusCode() != 200 || (etag == null && lastModified == null)) {
+                if (cached != null) {
+                    remove(key);
+                }
+                return Mono.just(response);
+            }
+            return response.getBodyAsByteArray()
+                    .defaultIfEmpty(new byte[0])
+                    .map(body -> {
+                        Entry entry = new Entry(url, response.getStatusCode(), new HttpHeaders(response.getHeaders()),
+                                body, etag, lastModified);
+                        put(key, entry);
+                        return new CachedResponse(request, entry);
+                    });
+        });
+    }
+
+    private synchronized Entry get(String key) {
+        return entries.get(key);
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        if (entry.body.length > maxBytes) {
+            return;
+        }
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            totalBytes -= previous.body.length;
+        }
+        totalBytes += entry.body.length;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            totalBytes -= eldest.next().body.length;
+            eldest.remove();
+            metrics.evictions.incrementAndGet();
+        }
+    }
+
+    private synchronized void remove(String key) {
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            totalBytes -= previous.body.length;
+        }
+    }
+
+    private synchronized void invalidate(String path) {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> entry = iterator.next();
+            if (path(entry.getValue().url).regionMatches(true, 0, path, 0, path.length())) {
+                totalBytes -= entry.getValue().body.length;
+                iterator.remove();
+            }
+        }
+    }
+
+    private static String key(String url, String authorization) {
+        if (authorization == null) {
+            return url;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(authorization.getBytes(StandardCharsets.UTF_8));
+            return url + " " + Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM has SHA-256
+            throw LOGGER.logExceptionAsError(new IllegalStateException(e));
+        }
+    }
+
+    private static String path(String url) {
+        int query = url.indexOf('?');
+        return query < 0 ? url : url.substring(0, query);
+    }
+
+    private static final class Entry {
+        private final String url;
+        private final int statusCode;
+        private final HttpHeaders headers;
+        private final byte[] body;
+        private final String etag;
+        private final String lastModified;
+        private volatile long validatedNanos = System.nanoTime();
+
+        private Entry(String url, int statusCode, HttpHeaders headers, byte[] body, String etag, String lastModified) {
+            this.url = url;
+            this.statusCode = statusCode;
+            this.headers = headers;
+            this.body = body;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private static final class CachedResponse extends HttpResponse {
+        private final Entry entry;
+
+        private CachedResponse(HttpRequest request, Entry entry) {
+            super(request);
+            this.entry = entry;
+        }
+
+        @Override
+        public int getStatusCode() {
+            return entry.statusCode;
+        }
+
+        @Override
+        public String getHeaderValue(String name) {
+            return entry.headers.getValue(name);
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            // A copy, so that a caller changing the headers does not change the cached response
+            return new HttpHeaders(entry.headers);
+        }
+
+        @Override
+        public Flux<ByteBuffer> getBody() {
+            return Flux.defer(() -> Flux.just(ByteBuffer.wrap(entry.body).asReadOnlyBuffer()));
+        }
+
+        @Override
+        public Mono<byte[]> getBodyAsByteArray() {
+            return Mono.fromCallable(entry.body::clone);
+        }
+
+        @Override
+        public Mono<String> getBodyAsString() {
+            return getBodyAsString(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public Mono<String> getBodyAsString(Charset charset) {
+            return Mono.fromCallable(() -> new String(entry.body, charset));
+        }
+    }
+
+    /**
+     * Counters of a cache.
+     */
+    public static final class Metrics {
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong freshHits = new AtomicLong();
+        private final AtomicLong revalidatedHits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong bytesSaved = new AtomicLong();
+        private final AtomicLong evictions = new AtomicLong();
+
+        private Metrics() {
+        }
+
+        /** @return the number of GET requests */
+        public long requests() {
+            return requests.get();
+        }
+
+        /** @return the number of responses served from the cache without a request */
+        public long freshHits() {
+            return freshHits.get();
+        }
+
+        /** @return the number of responses served from the cache after a 304 Not Modified */
+        public long revalidatedHits() {
+            return revalidatedHits.get();
+        }
+
+        /** @return the number of responses downloaded in full */
+        public long misses() {
+            return misses.get();
+        }
+
+        /** @return the fraction of GET requests served from the cache, between 0 and 1 */
+        public double hitRatio() {
+            long total = requests.get();
+            return total == 0 ? 0 : (double) (freshHits.get() + revalidatedHits.get()) / total;
+        }
+
+        /** @return the number of body bytes served from the cache instead of downloaded */
+        public long bytesSaved() {
+            return bytesSaved.get();
+        }
+
+        /** @return the number of responses evicted to stay within the byte bound */
+        public long evictions() {
+            return evictions.get();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d GETs, hit ratio %.1f%% (%d fresh, %d revalidated), %d misses, %d bytes saved, %d evictions",
+                    requests.get(), hitRatio() * 100, freshHits.get(), revalidatedHits.get(), misses.get(),
+                    bytesSaved.get(), evictions.get());
+        }
+    }
+}
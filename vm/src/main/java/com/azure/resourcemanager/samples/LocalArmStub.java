@@ -0,0 +1,440 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import com.azure.core.credential.AccessToken;
+import com.azure.core.credential.TokenCredential;
+import com.azure.core.util.logging.ClientLogger;
+import com.azure.core.util.serializer.JacksonAdapter;
+import com.azure.core.util.serializer.SerializerAdapter;
+import com.azure.core.util.serializer.SerializerEncoding;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.time.OffsetDateTime;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+
+/**
+ * An in-memory stand-in for the Resource Manager endpoint of a stamp, for runs that must not reach a
+ * real stamp, such as the training run of the class-data-sharing archive.
+ * <p>
+ * It serves the endpoint metadata used by {@link SampleConfig#profile()} and a generic resource store:
+ * a PUT stores the resource at its path and marks it provisioned, a GET returns the resource at the
+ * path or, for a collection path, the resources directly below it, and a DELETE removes it along with
+ * the resources below it. A POST answers storage account key actions with two keys, name availability
+ * checks with an available name and anything else with an empty object. Inline child resources, such
+ * as subnets, get ids, virtual machines report a running instance view, and the URI of a vault points
+ * back at the stub, which stores its secrets. Requests without a bearer token are rejected with 401;
+ * {@link #credential()} hands out a fake one.
+ * <p>
+ * The SDK only sends tokens over HTTPS, so the stub serves {@code https://localhost} with a
+ * self-signed certificate, and {@link #trustInThisProcess(Path)} makes the process trust it.
+ */
+public final class LocalArmStub implements AutoCloseable {
+    private static final ClientLogger LOGGER = new ClientLogger(LocalArmStub.class);
+    private static final SerializerAdapter SERIALIZER = JacksonAdapter.createDefaultSerializerAdapter();
+    private static final Random RANDOM = new Random();
+
+    /** The tenant of the configuration written by {@link #writeConfig(Path, String)}. */
+    public static final String TENANT_ID = "00000000-0000-0000-0000-000000000001";
+    /** The subscription of the configuration written by {@link #writeConfig(Path, String)}. */
+    public static final String SUBSCRIPTION_ID = "00000000-0000-0000-0000-000000000002";
+
+    private static final String PASSWORD = "stub";
+
+    private final SelfSignedCertificates.GeneratedCertificate certificate;
+    private final HttpsServer server;
+    private final Map<String, ObjectNode> resources = new ConcurrentSkipListMap<>();
+    private final Map<String, ObjectNode> secrets = new ConcurrentSkipListMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong firstResourceRequestNanos = new AtomicLong();
+
+    /**
+     * Starts the stub on a free port of the loopback interface.
+     *
+     * @throws IOException if no port can be bound
+     */
+    public LocalArmStub() throws IOException {
+        this.certificate = SelfSignedCertificates.generate(new SelfSignedCertificates.Spec("localhost")
+                .withDnsName("localhost")
+                .withExtendedKeyUsage(SelfSignedCertificates.SERVER_AUTHENTICATION));
+        this.server = HttpsServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.setHttpsConfigurator(new HttpsConfigurator(sslContext(certificate)));
+        this.server.setExecutor(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "arm-stub");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        this.server.createContext("/metadata/endpoints", this::metadata);
+        this.server.createContext("/subscriptions/", this::resource);
+        this.server.createContext("/vaults/", this::secret);
+        this.server.start();
+    }
+
+    /** @return the Resource Manager endpoint, e.g. {@code https://localhost:41234} */
+    public String endpoint() {
+        return "https://localhost:" + server.getAddress().getPort();
+    }
+
+    /** @return the number of requests served */
+    public long requests() {
+        return requests.get();
+    }
+
+    /** @return the number of resources stored */
+    public int resources() {
+        return resources.size();
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} at which the first resource request was answered, or now if
+     * there was none
+     */
+    public long firstResourceRequestNanos() {
+        long first = firstResourceRequestNanos.get();
+        return first == 0 ? System.nanoTime() : first;
+    }
+
+    /** @return a credential that issues a fake token accepted by the stub */
+    public TokenCredential credential() {
+        return request -> Mono.just(new AccessToken("stub-token", OffsetDateTime.now().plusHours(1)));
+    }
+
+    /**
+     * Makes the default trust store of this process the certificate of the stub, so that the SDK
+     * accepts it. Other TLS endpoints are no longer trusted, so only call this in processes that talk
+     * to the stub alone, and before the first TLS connection.
+     *
+     * @param trustStore the trust store file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void trustInThisProcess(Path trustStore) throws IOException {
+        try {
+            KeyStore keyStore = KeyStore.getInstance("PKCS12");
+            keyStore.load(null, null);
+            keyStore.setCertificateEntry("local-arm-stub", certificate.certificate());
+            try (OutputStream output = Files.newOutputStream(trustStore)) {
+                keyStore.store(output, PASSWORD.toCharArray());
+            }
+        } catch (GeneralSecurityException e) {
+            throw LOGGER.logExceptionAsError(new IllegalStateException("failed to write " + trustStore, e));
+        }
+        System.setProperty("javax.net.ssl.trustStore", trustStore.toString());
+        System.setProperty("javax.net.ssl.trustStoreType", "PKCS12");
+        System.setProperty("javax.net.ssl.trustStorePassword", PASSWORD);
+    }
+
+    /**
+     * Writes a configuration file in the format of {@code azureSecretSpConfig.json} that targets the stub.
+     *
+     * @param file the file to write
+     * @param location the location of the configuration
+     * @return the file
+     * @throws IOException if the file cannot be written
+     */
+    public Path writeConfig(Path file, String location) throws IOException {
+        ObjectNode config = JsonNodeFactory.instance.objectNode();
+        config.put("clientId", "stub-client");
+        config.put("clientSecret", "stub-secret");
+        config.put("objectId", "stub-object");
+        config.put("subscriptionId", SUBSCRIPTION_ID);
+        config.put("tenantId", TENANT_ID);
+        config.put("resourceManagerEndpointUrl", endpoint());
+        config.put("location", location);
+        return Files.write(file, SERIALIZER.serialize(config, SerializerEncoding.JSON).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Stops the stub.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private static SSLContext sslContext(SelfSignedCertificates.GeneratedCertificate certificate) throws IOException {
+        try {
+            KeyStore keyStore = KeyStore.getInstance("PKCS12");
+            keyStore.load(new ByteArrayInputStream(certificate.toPkcs12("local-arm-stub", PASSWORD)), PASSWORD.toCharArray());
+            KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            keyManagers.init(keyStore, PASSWORD.toCharArray());
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(keyManagers.getKeyManagers(), null, null);
+            return context;
+        } catch (GeneralSecurityException e) {
+            throw LOGGER.logExceptionAsError(new IllegalStateException("failed to set up TLS for the stub", e));
+        }
+    }
+
+    private void metadata(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        ObjectNode metadata = JsonNodeFactory.instance.objectNode();
+        metadata.put("gallery", endpoint() + "/gallery/");
+        metadata.put("graph", endpoint() + "/graph/");
+        ObjectNode authentication = metadata.putObject("authentication");
+        authentication.put("loginEndpoint", endpoint() + "/login/");
+        authentication.putArray("audiences").add("https://management.stub/");
+        metadata.putObject("suffixes").put("storage", "stub.local").put("keyVaultDns", "vault.stub.local");
+        ArrayNode body = JsonNodeFactory.instance.arrayNode().add(metadata);
+        respond(exchange, 200, body);
+    }
+
+    private void resource(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            if (authorization == null || !authorization.startsWith("Bearer ")) {
+                respond(exchange, 401, error("AuthenticationFailed", "missing bearer token"));
+                return;
+            }
+            String path = exchange.getRequestURI().getPath();
+            String key = path.toLowerCase(Locale.ROOT);
+            switch (exchange.getRequestMethod()) {
+                case "PUT":
+                case "PATCH":
+                    respond(exchange, 200, store(key, path, exchange.getRequestBody()));
+                    break;
+                case "GET":
+                    respond(exchange, 200, get(key, exchange.getRequestURI().getQuery()));
+                    break;
+                case "DELETE":
+                    respond(exchange, delete(key) ? 200 : 204, null);
+                    break;
+                default:
+                    respond(exchange, 200, action(key));
+                    break;
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warning("stub request failed", e);
+            respond(exchange, 500, error("InternalServerError", String.valueOf(e)));
+        } finally {
+            firstResourceRequestNanos.compareAndSet(0, System.nanoTime());
+        }
+    }
+
+    /**
+     * Serves the secrets of the vaults, whose URIs point back at the stub. Like Key Vault, it answers a
+     * request without a token with a challenge that names the token resource.
+     */
+    private void secret(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            if (authorization == null || !authorization.startsWith("Bearer ")) {
+                readAll(exchange.getRequestBody());
+                exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer authorization=\""
+                        + endpoint() + "/login/" + TENANT_ID + "\", resource=\"https://vault.stub.local\"");
+                respond(exchange, 401, error("Unauthorized", "missing bearer token"));
+                return;
+            }
+            // /vaults/{vault}/secrets/{name}[/{version}]
+            String[] segments = exchange.getRequestURI().getPath().split("/+");
+            if (segments.length < 5 || !"secrets".equals(segments[3])) {
+                respond(exchange, 404, error("NotFound", "not a secret"));
+                return;
+            }
+            String key = (segments[2] + "/" + segments[4]).toLowerCase(Locale.ROOT);
+            if ("PUT".equals(exchange.getRequestMethod())) {
+                ObjectNode secret = SERIALIZER.deserialize(readAll(exchange.getRequestBody()), ObjectNode.class,
+                        SerializerEncoding.JSON);
+                secret.put("id", endpoint() + "/vaults/" + segments[2] + "/secrets/" + segments[4] + "/"
+                        + Long.toHexString(RANDOM.nextLong()));
+                secret.putObject("attributes").put("enabled", true);
+                secrets.put(key, secret);
+                respond(exchange, 200, secret);
+                return;
+            }
+            ObjectNode secret = secrets.get(key);
+            respond(exchange, secret != null ? 200 : 404,
+                    secret != null ? secret : error("SecretNotFound", "no secret " + segments[4]));
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warning("stub request failed", e);
+            respond(exchange, 500, error("InternalServerError", String.valueOf(e)));
+        }
+    }
+
+    private ObjectNode store(String key, String path, InputStream body) throws IOException {
+        byte[] bytes = readAll(body);
+        ObjectNode resource = bytes.length == 0
+                ? JsonNodeFactory.instance.objectNode()
+                : SERIALIZER.deserialize(bytes, ObjectNode.class, SerializerEncoding.JSON);
+        ObjectNode previous = resources.get(key);
+        if (previous != null) {
+            previous.setAll(resource);
+            resource = previous;
+        }
+        String[] segments = path.split("/");
+        resource.put("id", path);
+        resource.put("name", segments[segments.length - 1]);
+        if (segments.length > 2 && !"resourceGroups".equalsIgnoreCase(segments[segments.length - 2])) {
+            resource.put("type", type(segments));
+        }
+        ObjectNode properties = resource.has("properties") && resource.get("properties").isObject()
+                ? (ObjectNode) resource.get("properties")
+                : resource.putObject("properties");
+        properties.put("provisioningState", "Succeeded");
+        if ("vaults".equalsIgnoreCase(segments[segments.length - 2])) {
+            properties.put("vaultUri", endpoint() + "/vaults/" + segments[segments.length - 1] + "/");
+        }
+        identifyChildren(path, properties);
+        resources.put(key, resource);
+        return resource;
+    }
+
+    /** Gives inline child resources, such as the subnets of a virtual network, their ids. */
+    private static void identifyChildren(String path, ObjectNode properties) {
+        properties.fields().forEachRemaining(field -> {
+            if (!field.getValue().isArray()) {
+                return;
+            }
+            for (JsonNode child : field.getValue()) {
+                if (child.isObject() && child.hasNonNull("name") && !child.hasNonNull("id")) {
+                    ((ObjectNode) child).put("id", path + "/" + field.getKey() + "/" + child.get("name").asText());
+                }
+            }
+        });
+    }
+
+    private ObjectNode get(String key, String query) {
+        if (key.endsWith("/instanceview")) {
+            return instanceView();
+        }
+        ObjectNode resource = resources.get(key);
+        if (resource == null) {
+            return list(key);
+        }
+        if (query != null && query.toLowerCase(Locale.ROOT).contains("instanceview")) {
+            ObjectNode expanded = resource.deepCopy();
+            ((ObjectNode) expanded.get("properties")).set("instanceView", instanceView());
+            return expanded;
+        }
+        return resource;
+    }
+
+    private static ObjectNode instanceView() {
+        ObjectNode instanceView = JsonNodeFactory.instance.objectNode();
+        ArrayNode statuses = instanceView.putArray("statuses");
+        statuses.addObject().put("code", "ProvisioningState/succeeded").put("level", "Info");
+        statuses.addObject().put("code", "PowerState/running").put("level", "Info");
+        return instanceView;
+    }
+
+    /** Removes the resource and, like a resource group delete, everything below it. */
+    private boolean delete(String key) {
+        boolean deleted = resources.remove(key) != null;
+        resources.keySet().removeIf(child -> child.startsWith(key + "/"));
+        return deleted;
+    }
+
+    private ObjectNode list(String key) {
+        ObjectNode body = JsonNodeFactory.instance.objectNode();
+        ArrayNode value = body.putArray("value");
+        String prefix = key.endsWith("/") ? key : key + "/";
+        for (Map.Entry<String, ObjectNode> entry : resources.entrySet()) {
+            if (entry.getKey().startsWith(prefix) && entry.getKey().indexOf('/', prefix.length()) < 0) {
+                value.add(entry.getValue());
+            }
+        }
+        return body;
+    }
+
+    private ObjectNode action(String key) {
+        if (key.endsWith("/listkeys") || key.endsWith("/regeneratekey")) {
+            return storageAccountKeys();
+        }
+        if (key.endsWith("/checknameavailability")) {
+            return JsonNodeFactory.instance.objectNode().put("nameAvailable", true);
+        }
+        return JsonNodeFactory.instance.objectNode();
+    }
+
+    private static ObjectNode storageAccountKeys() {
+        ObjectNode body = JsonNodeFactory.instance.objectNode();
+        ArrayNode keys = body.putArray("keys");
+        for (String name : new String[] {"key1", "key2"}) {
+            byte[] value = new byte[64];
+            RANDOM.nextBytes(value);
+            keys.addObject()
+                    .put("keyName", name)
+                    .put("value", Base64.getEncoder().encodeToString(value))
+                    .put("permissions", "FULL");
+        }
+        return body;
+    }
+
+    private static String type(String[] segments) {
+        for (int i = 0; i < segments.length; i++) {
+            if ("providers".equalsIgnoreCase(segments[i]) && i + 1 < segments.length) {
+                StringBuilder type = new StringBuilder(segments[i + 1]);
+                for (int j = i + 2; j < segments.length; j += 2) {
+                    type.append('/').append(segments[j]);
+                }
+                return type.toString();
+            }
+        }
+        return "";
+    }
+
+    private static ObjectNode error(String code, String message) {
+        ObjectNode body = JsonNodeFactory.instance.objectNode();
+        body.putObject("error").put("code", code).put("message", message);
+        return body;
+    }
+
+    private static void respond(HttpExchange exchange, int status, JsonNode body) throws IOException {
+        try {
+            if (body == null) {
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            byte[] bytes = SERIALIZER.serialize(body, SerializerEncoding.JSON).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(bytes);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        int read;
+        while ((read = input.read(chunk)) > 0) {
+            buffer.write(chunk, 0, read);
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,275 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import com.azure.core.util.logging.ClientLogger;
+import com.azure.resourcemanager.AzureResourceManager;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Allocates resource names that do not collide within a process.
+ * <p>
+ * Each prefix and length gets its own sequence: a lock-free counter mapped onto a permutation of the
+ * base-36 suffixes, starting at a random offset with a random stride, so names look random and no
+ * suffix repeats until the sequence is exhausted. Names also carry a random per-process tag to keep
+ * separate runs apart: the suffix beyond six characters, and at least two characters of any suffix of
+ * four or more, so that even 8-character storage account names of two runs rarely meet. Only suffixes
+ * of one or two characters have no room for a tag. When a tagged sequence is exhausted, e.g. after
+ * 1296 names with a 4-character suffix, the prefix and length continue with a sequence over the whole
+ * suffix.
+ * <p>
+ * Names are reserved in a scope, e.g. a resource type or a resource group, and a name already
+ * reserved in the scope is never handed out again. Long-running callers can {@link #clear(String)} a
+ * scope to bound its memory. Globally unique names, like those of storage accounts and key vaults, can
+ * be verified with concurrent name availability checks before they are handed out.
+ */
+public final class NameAllocator {
+    private static final ClientLogger LOGGER = new ClientLogger(NameAllocator.class);
+    private static final String ALPHABET = "0123456789abcdefghijklmnopqrstuvwxyz";
+    /** 36^6 suffixes fit a long multiplication without overflow. */
+    private static final int SEQUENCE_LENGTH = 6;
+    /** The process tag characters taken from a short suffix, at the cost of a shorter sequence. */
+    private static final int MIN_TAG_LENGTH = 2;
+    private static final int MAX_AVAILABILITY_ROUNDS = 5;
+
+    /** The scope of storage account names, which are unique across Azure. */
+    public static final String STORAGE_ACCOUNTS = "Microsoft.Storage/storageAccounts";
+    /** The scope of key vault names, which are unique across Azure. */
+    public static final String VAULTS = "Microsoft.KeyVault/vaults";
+
+    private final SecureRandom random = new SecureRandom();
+    private final String processTag;
+    private final Map<String, Sequence> sequences = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> reserved = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an allocator with a random process tag.
+     */
+    public NameAllocator() {
+        StringBuilder tag = new StringBuilder();
+        for (int i = 0; i < 16; i++) {
+            tag.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        this.processTag = tag.toString();
+    }
+
+    /**
+     * Reserves one name.
+     *
+     * @param scope the scope in which the name must be unique
+     * @param prefix the prefix of the name
+     * @param maxLen the length of the name
+     * @return the name
+     */
+    public String next(String scope, String prefix, int maxLen) {
+        return reserve(scope, prefix, maxLen, 1).get(0);
+    }
+
+    /**
+     * Reserves a batch of names.
+     *
+     * @param scope the scope in which the names must be unique
+     * @param prefix the prefix of the names
+     * @param maxLen the length of the names
+     * @param count the number of names
+     * @return the names
+     * @throws IllegalArgumentException if the prefix leaves no room for a suffix
+     * @throws IllegalStateException if the names of the prefix and length are exhausted
+     */
+    public List<String> reserve(String scope, String prefix, int maxLen, int count) {
+        int suffixLength = maxLen - prefix.length();
+        if (suffixLength <= 0) {
+            throw LOGGER.logExceptionAsError(new IllegalArgumentException(
+                    "prefix '" + prefix + "' leaves no room for a suffix in " + maxLen + " characters"));
+        }
+        String sequenceKey = prefix + "/" + maxLen;
+        Sequence sequence = sequences.computeIfAbsent(sequenceKey, key -> new Sequence(suffixLength, true));
+        Set<String> names = reserved.computeIfAbsent(scope.toLowerCase(), key -> ConcurrentHashMap.newKeySet());
+        List<String> batch = new ArrayList<>(count);
+        while (batch.size() < count) {
+            int needed = count - batch.size();
+            long first = sequence.counter.getAndAdd(needed);
+            for (long index = first; index < first + needed; index++) {
+                if (index >= sequence.size) {
+                    sequence = untagged(sequenceKey, sequence, suffixLength);
+                    if (sequence == null) {
+                        throw LOGGER.logExceptionAsError(new IllegalStateException(
+                                "names with prefix '" + prefix + "' and length " + maxLen + " are exhausted"));
+                    }
+                    break;
+                }
+                String name = prefix + sequence.suffix(index);
+                // Another prefix can produce the same name, e.g. "sa" + "2..." and "sa2" + "...".
+                if (names.add(name.toLowerCase())) {
+                    batch.add(name);
+                }
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Releases names that were reserved but not used, so that availability checks can skip them.
+     *
+     * @param scope the scope the names were reserved in
+     * @param names the names
+     */
+    public void release(String scope, List<String> names) {
+        Set<String> scopeNames = reserved.get(scope.toLowerCase());
+        if (scopeNames != null) {
+            for (String name : names) {
+                scopeNames.remove(name.toLowerCase());
+            }
+        }
+    }
+
+    /**
+     * Forgets every name reserved in a scope, so that a long-running process does not keep them all.
+     * The sequences keep their position, so a name comes back only once its sequence is exhausted and
+     * the prefix and length continue without the process tag.
+     *
+     * @param scope the scope
+     */
+    public void clear(String scope) {
+        reserved.remove(scope.toLowerCase());
+    }
+
+    /**
+     * Reserves storage account names that are available across Azure.
+     *
+     * @param azure the AzureResourceManager instance.
+     * @param prefix the prefix of the names, lower-case letters and digits
+     * @param maxLen the length of the names, at most 24
+     * @param count the number of names
+     * @return the names
+     */
+    public Mono<List<String>> reserveStorageAccountNamesAsync(AzureResourceManager azure, String prefix, int maxLen,
+                                                              int count) {
+        return reserveAvailableAsync(STORAGE_ACCOUNTS, prefix, maxLen, count, 8,
+                name -> azure.storageAccounts().checkNameAvailabilityAsync(name).map(result -> result.isAvailable()));
+    }
+
+    /**
+     * Reserves key vault names that are available across Azure.
+     *
+     * @param azure the AzureResourceManager instance.
+     * @param prefix the prefix of the names, starting with a letter
+     * @param maxLen the length of the names, at most 24
+     * @param count the number of names
+     * @return the names
+     */
+    public Mono<List<String>> reserveVaultNamesAsync(AzureResourceManager azure, String prefix, int maxLen, int count) {
+        return reserveAvailableAsync(VAULTS, prefix, maxLen, count, 8,
+                name -> azure.vaults().checkNameAvailabilityAsync(name).map(result -> result.nameAvailable()));
+    }
+
+    /**
+     * Reserves names and keeps those that an availability check accepts, reserving more until there
+     * are enough.
+     *
+     * @param scope the scope in which the names must be unique
+     * @param prefix the prefix of the names
+     * @param maxLen the length of the names
+     * @param count the number of names
+     * @param concurrency the maximum number of availability checks in flight
+     * @param isAvailable checks whether a name is available
+     * @return the available names
+     */
+    public Mono<List<String>> reserveAvailableAsync(String scope, String prefix, int maxLen, int count, int concurrency,
+                                                    Function<String, Mono<Boolean>> isAvailable) {
+        final List<String> available = Collections.synchronizedList(new ArrayList<>(count));
+        return Mono.defer(() -> check(scope, prefix, maxLen, count, concurrency, isAvailable, available))
+                .repeat(MAX_AVAILABILITY_ROUNDS - 1)
+                .takeUntil(ignored -> available.size() >= count)
+                .then(Mono.defer(() -> available.size() >= count
+                        ? Mono.just(new ArrayList<>(available.subList(0, count)))
+                        : Mono.error(LOGGER.logExceptionAsError(new IllegalStateException(
+                                "found only " + available.size() + " of " + count + " available names with prefix '"
+                                        + prefix + "'")))));
+    }
+
+    private Mono<Integer> check(String scope, String prefix, int maxLen, int count, int concurrency,
+                                Function<String, Mono<Boolean>> isAvailable, List<String> available) {
+        int needed = count - available.size();
+        if (needed <= 0) {
+            return Mono.just(0);
+        }
+        return Flux.fromIterable(reserve(scope, prefix, maxLen, needed))
+                .flatMap(name -> isAvailable.apply(name)
+                        .doOnNext(free -> {
+                            if (free) {
+                                available.add(name);
+                            } else {
+                                LOGGER.info("name {} is taken", name);
+                            }
+                        }), concurrency)
+                .then(Mono.fromCallable(available::size));
+    }
+
+    /**
+     * Replaces an exhausted tagged sequence with one over the whole suffix, once for all callers.
+     *
+     * @return the sequence to continue with, or null if there is no longer one
+     */
+    private Sequence untagged(String sequenceKey, Sequence exhausted, int suffixLength) {
+        if (exhausted.length >= Math.min(suffixLength, SEQUENCE_LENGTH)) {
+            return null;
+        }
+        return sequences.compute(sequenceKey,
+                (key, current) -> current == exhausted ? new Sequence(suffixLength, false) : current);
+    }
+
+    private final class Sequence {
+        private final int length;
+        private final long size;
+        private final long offset;
+        private final long stride;
+        private final String tag;
+        private final AtomicLong counter = new AtomicLong();
+
+        private Sequence(int suffixLength, boolean tagged) {
+            int tagLength = Math.max(suffixLength - SEQUENCE_LENGTH,
+                    tagged ? Math.min(MIN_TAG_LENGTH, suffixLength - MIN_TAG_LENGTH) : 0);
+            tagLength = Math.max(0, Math.min(processTag.length(), tagLength));
+            this.length = Math.min(suffixLength - tagLength, SEQUENCE_LENGTH);
+            long size = 1;
+            for (int i = 0; i < length; i++) {
+                size *= ALPHABET.length();
+            }
+            this.size = size;
+            this.offset = Math.floorMod(random.nextLong(), size);
+            // A stride coprime with 36^n, i.e. not divisible by 2 or 3, visits every suffix once.
+            long candidate;
+            do {
+                candidate = 1 + Math.floorMod(random.nextLong(), size - 1);
+            } while (candidate % 2 == 0 || candidate % 3 == 0);
+            this.stride = candidate;
+            this.tag = processTag.substring(0, tagLength);
+        }
+
+        private String suffix(long index) {
+            long value = Math.floorMod(offset + index * stride, size);
+            char[] chars = new char[length];
+            for (int i = length - 1; i >= 0; i--) {
+                chars[i] = ALPHABET.charAt((int) (value % ALPHABET.length()));
+                value /= ALPHABET.length();
+            }
+            return tag + new String(chars);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import com.azure.core.credential.TokenCredential;
+import com.azure.core.management.profile.AzureProfile;
+import com.azure.resourcemanager.AzureResourceManager;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the workload of a sample against a {@link LocalArmStub}: load the configuration, discover the
+ * endpoints, authenticate, then the sample's own {@code runSample}.
+ * <p>
+ * The build runs it to record the classes of a class-data-sharing archive and the reflection metadata
+ * of a native image, so each sample trains on the code paths it runs against a stamp, and the startup
+ * benchmarks run it to time a start. It prints the time from process start to the first Resource
+ * Manager response and to the end of the run, both without the time spent setting up the stub and its
+ * certificate, and the peak resident set size where the OS reports it.
+ */
+public final class StartupTraining {
+    /** The command line argument with which a sample runs its workload against the stub. */
+    public static final String TRAINING_ARGUMENT = "--startup-training";
+
+    /**
+     * The workload of a sample.
+     */
+    @FunctionalInterface
+    public interface Workload {
+        /**
+         * @param azure the client, authenticated against the stub
+         * @param config the configuration of the stub
+         * @param credential the credential the stub accepts, also for data plane requests to it
+         * @throws Exception if the workload failed
+         */
+        void run(AzureResourceManager azure, SampleConfig config, TokenCredential credential) throws Exception;
+    }
+
+    private StartupTraining() {
+    }
+
+    /**
+     * @param args the command line arguments of a sample
+     * @return true if the arguments select the training workload
+     */
+    public static boolean isRequested(String[] args) {
+        return Arrays.asList(args).contains(TRAINING_ARGUMENT);
+    }
+
+    /**
+     * Runs the workload of a sample against a new stub.
+     *
+     * @param workload the workload, typically the {@code runSample} of the sample
+     */
+    public static void run(Workload workload) {
+        Path dir = null;
+        final long stubStart = System.nanoTime();
+        try (LocalArmStub stub = new LocalArmStub()) {
+            dir = Files.createTempDirectory("startup-training");
+            stub.trustInThisProcess(dir.resolve("truststore.p12"));
+            Path configFile = stub.writeConfig(dir.resolve("azureSecretSpConfig.json"), "local");
+            long stubMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stubStart);
+
+            SampleConfig config = SampleConfig.load(configFile).get(0);
+            AzureProfile profile = config.profile();
+            AzureResourceManager azure = config.authenticate(stub.credential(), profile);
+
+            workload.run(azure, config, stub.credential());
+
+            long endMillis = ManagementFactory.getRuntimeMXBean().getUptime() - stubMillis;
+            long firstRequestMillis = endMillis
+                    - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stub.firstResourceRequestNanos());
+            System.out.println("Served " + stub.requests() + " requests, " + stub.resources() + " resources left");
+            System.out.println("Time to first request: " + firstRequestMillis + " ms");
+            System.out.println("Time to end of run: " + endMillis + " ms");
+            long peakRss = peakResidentSetKilobytes();
+            if (peakRss > 0) {
+                System.out.println("Peak RSS: " + (peakRss >> 10) + " MB");
+            }
+        } catch (Exception e) {
+            System.out.println(e.getMessage());
+            throw new RuntimeException(e);
+        } finally {
+            if (dir != null) {
+                dir.resolve("azureSecretSpConfig.json").toFile().delete();
+                dir.resolve("truststore.p12").toFile().delete();
+                dir.toFile().delete();
+            }
+        }
+    }
+
+    /**
+     * Reads the high-water mark of the resident set from /proc, which covers the JVM and a native image
+     * alike.
+     */
+    private static long peakResidentSetKilobytes() {
+        Path status = Paths.get("/proc/self/status");
+        try {
+            if (Files.isReadable(status)) {
+                for (String line : Files.readAllLines(status)) {
+                    if (line.startsWith("VmHWM:")) {
+                        return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                    }
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Not available on this OS.
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,289 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import com.azure.core.exception.HttpResponseException;
+import com.azure.core.http.HttpMethod;
+import com.azure.core.http.HttpPipeline;
+import com.azure.core.http.HttpRequest;
+import com.azure.core.http.HttpResponse;
+import com.azure.core.util.FluxUtil;
+import com.azure.core.util.logging.ClientLogger;
+import com.azure.core.util.serializer.JacksonAdapter;
+import com.azure.core.util.serializer.SerializerAdapter;
+import com.azure.core.util.serializer.SerializerEncoding;
+import com.azure.resourcemanager.appservice.models.PublishingProfile;
+import com.fasterxml.jackson.databind.JsonNode;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Deploys a directory to an app service through the Kudu zip deploy API.
+ * <p>
+ * The directory is compressed on the fly into a pipe that feeds the request body, so the archive is
+ * never written to disk or held in memory, and the whole content goes up in a single POST instead of
+ * one FTP round-trip per file. The deployment runs asynchronously on the server; its status is polled
+ * until it completes.
+ */
+public final class ZipDeployment {
+    private static final ClientLogger LOGGER = new ClientLogger(ZipDeployment.class);
+    private static final SerializerAdapter SERIALIZER = JacksonAdapter.createDefaultSerializerAdapter();
+    private static final int PIPE_SIZE = 64 * 1024;
+
+    private final String scmUrl;
+    private final String authorization;
+    private final HttpPipeline httpPipeline;
+    private Duration pollInterval = Duration.ofSeconds(5);
+    private Duration timeout = Duration.ofMinutes(10);
+
+    /**
+     * Creates a deployment to the Kudu site of an app service.
+     *
+     * @param profile the publishing profile for the app service
+     */
+    public ZipDeployment(PublishingProfile profile) {
+        this(scmUrl(profile.gitUrl()), profile.gitUsername(), profile.gitPassword(), Utils.HTTP_PIPELINE);
+    }
+
+    /**
+     * Creates a deployment to a Kudu site.
+     *
+     * @param scmUrl the base URL of the Kudu site, e.g. "https://myapp.scm.azurewebsites.net"
+     * @param username the deployment user name
+     * @param password the deployment password
+     * @param httpPipeline the pipeline to send requests through
+     */
+    public ZipDeployment(String scmUrl, String username, String password, HttpPipeline httpPipeline) {
+        this.scmUrl = scmUrl.endsWith("/") ? scmUrl.substring(0, scmUrl.length() - 1) : scmUrl;
+        this.authorization = "Basic " + Base64.getEncoder()
+                .encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+        this.httpPipeline = httpPipeline;
+    }
+
+    /**
+     * @param pollInterval the interval between deployment status requests
+     * @return this deployment
+     */
+    public ZipDeployment withPollInterval(Duration pollInterval) {
+        this.pollInterval = pollInterval;
+        return this;
+    }
+
+    /**
+     * @param timeout the time to wait for the deployment to complete after the upload
+     * @return this deployment
+     */
+    public ZipDeployment withTimeout(Duration timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * Deploys a directory and blocks until the deployment has completed.
+     *
+     * @param localDirectory the directory to deploy
+     * @return the final deployment status
+     */
+    public DeploymentStatus deploy(Path localDirectory) {
+        return deployAsync(localDirectory).block();
+    }
+
+    /**
+     * Deploys a directory.
+     *
+     * @param localDirectory the directory to deploy
+     * @return the final deployment status, or an error if the upload fails or the deployment does not
+     * complete in time
+     */
+    public Mono<DeploymentStatus> deployAsync(Path localDirectory) {
+        return Mono.defer(() -> {
+            HttpRequest request = new HttpRequest(HttpMethod.POST, scmUrl + "/api/zipdeploy?isAsync=true")
+                    .setHeader("Authorization", authorization)
+                    .setHeader("Content-Type", "application/zip")
+                    .setBody(zip(localDirectory));
+            return httpPipeline.send(request);
+        }).flatMap(response -> {
+            int code = response.getStatusCode();
+            if (code != 200 && code != 202) {
+                return error(response);
+            }
+            String location = response.getHeaderValue("Location");
+            response.close();
+            return pollAsync(location == null ? scmUrl + "/api/deployments/latest" : location);
+        });
+    }
+
+    private Mono<DeploymentStatus> pollAsync(String statusUrl) {
+        return Mono.defer(() -> httpPipeline.send(new HttpRequest(HttpMethod.GET, statusUrl)
+                        .setHeader("Authorization", authorization)))
+                .flatMap(response -> {
+                    int code = response.getStatusCode();
+                    if (code == 202 || code == 404) {
+                        // Accepted but not yet visible.
+                        response.close();
+                        return Mono.<DeploymentStatus>empty();
+                    }
+                    if (code != 200) {
+                        return error(response);
+                    }
+                    return response.getBodyAsString().map(ZipDeployment::parseStatus);
+                })
+                .filter(DeploymentStatus::isComplete)
+                .repeatWhenEmpty(attempts -> attempts.delayElements(pollInterval))
+                .timeout(timeout)
+                .flatMap(status -> status.isSuccessful()
+                        ? Mono.just(status)
+                        : Mono.error(LOGGER.logExceptionAsError(
+                                new IllegalStateException("deployment " + status.id() + " failed: " + status.statusText()))));
+    }
+
+    private static <T> Mono<T> error(HttpResponse response) {
+        return response.getBodyAsString()
+                .defaultIfEmpty("")
+                .flatMap(body -> Mono.error(new HttpResponseException(
+                        "zip deploy request failed with status " + response.getStatusCode() + ": " + body, response)));
+    }
+
+    /**
+     * Compresses a directory into a stream of buffers. The archive is written by a worker into a pipe
+     * that is read on another worker as the request body is sent, and it is written again on every
+     * subscription so retries of the request resend the full content.
+     */
+    static Flux<ByteBuffer> zip(Path localDirectory) {
+        return Flux.defer(() -> {
+            PipedInputStream input = new PipedInputStream(PIPE_SIZE);
+            PipedOutputStream output;
+            try {
+                output = new PipedOutputStream(input);
+            } catch (IOException e) {
+                return Flux.error(e);
+            }
+            Mono.fromRunnable(() -> writeZip(localDirectory, input, output))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .subscribe(ignored -> { }, e -> LOGGER.warning("failed to zip {}", localDirectory, e));
+            // Reading the pipe blocks until the worker has compressed the next chunk, so read it on a
+            // thread that may block rather than on the HTTP client's event loop that requests the body.
+            return FluxUtil.toFluxByteBuffer(input, PIPE_SIZE)
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .doFinally(signal -> closeQuietly(input));
+        });
+    }
+
+    private static void writeZip(Path localDirectory, PipedInputStream input, PipedOutputStream output) {
+        ZipOutputStream zip = new ZipOutputStream(output);
+        try {
+            List<Path> files;
+            try (Stream<Path> paths = Files.walk(localDirectory)) {
+                files = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+            for (Path file : files) {
+                zip.putNextEntry(new ZipEntry(localDirectory.relativize(file).toString().replace('\\', '/')));
+                Files.copy(file, zip);
+                zip.closeEntry();
+            }
+            zip.close();
+        } catch (IOException e) {
+            // Break the pipe before the writer end is closed, so the reader fails instead of sending a truncated archive.
+            closeQuietly(input);
+            closeQuietly(zip);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void closeQuietly(Closeable stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            // The writer sees the broken pipe and stops.
+        }
+    }
+
+    private static DeploymentStatus parseStatus(String body) {
+        try {
+            JsonNode json = SERIALIZER.deserialize(body, JsonNode.class, SerializerEncoding.JSON);
+            return new DeploymentStatus(json.path("id").asText(), json.path("status").asInt(),
+                    json.path("status_text").asText(), json.path("complete").asBoolean());
+        } catch (IOException e) {
+            throw LOGGER.logExceptionAsError(new UncheckedIOException(e));
+        }
+    }
+
+    private static String scmUrl(String gitUrl) {
+        // The git URL is the Kudu site followed by "/<site>.git".
+        String url = gitUrl.startsWith("https://") ? gitUrl : "https://" + gitUrl;
+        URI uri = URI.create(url);
+        return uri.getScheme() + "://" + uri.getAuthority();
+    }
+
+    /**
+     * Status of a Kudu deployment.
+     */
+    public static final class DeploymentStatus {
+        private static final int SUCCESS = 4;
+
+        private final String id;
+        private final int status;
+        private final String statusText;
+        private final boolean complete;
+
+        private DeploymentStatus(String id, int status, String statusText, boolean complete) {
+            this.id = id;
+            this.status = status;
+            this.statusText = statusText;
+            this.complete = complete;
+        }
+
+        /** @return the deployment ID */
+        public String id() {
+            return id;
+        }
+
+        /** @return the Kudu status code: 0 pending, 1 building, 2 deploying, 3 failed, 4 success */
+        public int status() {
+            return status;
+        }
+
+        /** @return the status message */
+        public String statusText() {
+            return statusText;
+        }
+
+        /** @return true if the deployment has finished, successfully or not */
+        public boolean isComplete() {
+            return complete;
+        }
+
+        /** @return true if the deployment has finished successfully */
+        public boolean isSuccessful() {
+            return complete && status == SUCCESS;
+        }
+
+        @Override
+        public String toString() {
+            return "deployment " + id + ": status " + status + (statusText.isEmpty() ? "" : " (" + statusText + ")");
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.compute.samples;
+
+import com.azure.resourcemanager.AzureResourceManager;
+import com.azure.resourcemanager.compute.models.Disk;
+import com.azure.resourcemanager.samples.LocalArmStub;
+import com.azure.resourcemanager.samples.StubClients;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs {@link DiskWarmPool} against a {@link LocalArmStub}.
+ */
+public class DiskWarmPoolTest {
+    private static final String RG = "rgPool";
+    private static final String LOCATION = "local";
+
+    private LocalArmStub stub;
+    private AzureResourceManager azure;
+
+    @BeforeEach
+    public void startStub() throws IOException {
+        stub = new LocalArmStub();
+        azure = StubClients.azure(stub);
+        azure.resourceGroups().define(RG).withRegion(LOCATION).create();
+    }
+
+    @AfterEach
+    public void stopStub() {
+        stub.close();
+    }
+
+    @Test
+    public void lastAcquireCreatesNoSpareDisk() {
+        Disk disk;
+        try (DiskWarmPool pool = new DiskWarmPool(azure, RG, 1).warm(LOCATION, 10)) {
+            disk = pool.acquire(LOCATION, 10, false);
+
+            assertEquals(1, pool.hits());
+            assertEquals(0, pool.misses());
+        }
+
+        assertEquals(Collections.singletonList(disk.id()), diskIds());
+    }
+
+    @Test
+    public void acquireReplacesTheDiskAndCloseDeletesTheSpare() {
+        Disk first;
+        Disk second;
+        try (DiskWarmPool pool = new DiskWarmPool(azure, RG, 1).warm(LOCATION, 10)) {
+            first = pool.acquire(LOCATION, 10);
+            second = pool.acquire(LOCATION, 10);
+
+            assertEquals(2, pool.hits());
+            assertEquals(0, pool.misses());
+        }
+
+        assertEquals(Arrays.asList(first.id(), second.id()).stream().sorted().collect(Collectors.toList()), diskIds());
+    }
+
+    @Test
+    public void emptyPoolCreatesOnDemand() {
+        try (DiskWarmPool pool = new DiskWarmPool(azure, RG, 1)) {
+            Disk disk = pool.acquire(LOCATION, 20, false);
+
+            assertEquals(20, disk.sizeInGB());
+            assertEquals(0, pool.hits());
+            assertEquals(1, pool.misses());
+        }
+
+        assertEquals(1, diskIds().size());
+    }
+
+    private List<String> diskIds() {
+        return azure.disks().listByResourceGroup(RG).stream().map(Disk::id).sorted().collect(Collectors.toList());
+    }
+}
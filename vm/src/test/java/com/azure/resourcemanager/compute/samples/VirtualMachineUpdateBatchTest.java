@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.compute.samples;
+
+import com.azure.core.http.HttpMethod;
+import com.azure.core.http.policy.HttpPipelinePolicy;
+import com.azure.resourcemanager.AzureResourceManager;
+import com.azure.resourcemanager.compute.models.CachingTypes;
+import com.azure.resourcemanager.compute.models.Disk;
+import com.azure.resourcemanager.compute.models.KnownLinuxVirtualMachineImage;
+import com.azure.resourcemanager.compute.models.VirtualMachine;
+import com.azure.resourcemanager.compute.models.VirtualMachineSizeTypes;
+import com.azure.resourcemanager.samples.LocalArmStub;
+import com.azure.resourcemanager.samples.StubClients;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Runs {@link VirtualMachineUpdateBatch} against a {@link LocalArmStub}.
+ */
+public class VirtualMachineUpdateBatchTest {
+    private static final String RG = "rgBatch";
+    private static final String LOCATION = "local";
+    private static final Duration WRITE_DELAY = Duration.ofMillis(300);
+
+    private final AtomicInteger vmWrites = new AtomicInteger();
+    private final AtomicInteger vmWritesInFlight = new AtomicInteger();
+    private final AtomicInteger maxVmWritesInFlight = new AtomicInteger();
+    private LocalArmStub stub;
+    private AzureResourceManager azure;
+    private VirtualMachine virtualMachine;
+
+    @BeforeEach
+    public void createVirtualMachine() throws IOException {
+        stub = new LocalArmStub();
+        // Slows down every write of the virtual machine, so that overlapping updates would be seen.
+        HttpPipelinePolicy slowVmWrites = (context, next) -> {
+            HttpMethod method = context.getHttpRequest().getHttpMethod();
+            if ((method != HttpMethod.PUT && method != HttpMethod.PATCH)
+                    || !context.getHttpRequest().getUrl().getPath().contains("/virtualMachines/")) {
+                return next.process();
+            }
+            return Mono.fromRunnable(() -> {
+                vmWrites.incrementAndGet();
+                maxVmWritesInFlight.accumulateAndGet(vmWritesInFlight.incrementAndGet(), Math::max);
+            })
+                    .then(Mono.delay(WRITE_DELAY))
+                    .then(next.process())
+                    .doFinally(signal -> vmWritesInFlight.decrementAndGet());
+        };
+        azure = StubClients.azure(stub, slowVmWrites);
+        virtualMachine = azure.virtualMachines().define("vmBatch")
+                .withRegion(LOCATION)
+                .withNewResourceGroup(RG)
+                .withNewPrimaryNetwork("10.0.0.0/28")
+                .withPrimaryPrivateIPAddressDynamic()
+                .withoutPrimaryPublicIPAddress()
+                .withPopularLinuxImage(KnownLinuxVirtualMachineImage.UBUNTU_SERVER_16_04_LTS)
+                .withRootUsername("tirekicker")
+                .withRootPassword("Pa5$word-for-a-stub")
+                .withSize(VirtualMachineSizeTypes.STANDARD_A2)
+                .create();
+        vmWrites.set(0);
+    }
+
+    @AfterEach
+    public void stopStub() {
+        stub.close();
+    }
+
+    @Test
+    public void changesAreAppliedAsOneUpdate() {
+        try (VirtualMachineUpdateBatch batch = new VirtualMachineUpdateBatch(virtualMachine)) {
+            batch.withTag("who-rocks", "java")
+                    .withTag("where", "on azure")
+                    .withSize(VirtualMachineSizeTypes.STANDARD_A3);
+        }
+
+        assertEquals(1, vmWrites.get());
+        VirtualMachine updated = azure.virtualMachines().getById(virtualMachine.id());
+        assertEquals("java", updated.tags().get("who-rocks"));
+        assertEquals("on azure", updated.tags().get("where"));
+    }
+
+    @Test
+    public void lunDetachedInTheBatchCannotTakeANewDisk() {
+        Disk disk = azure.disks().define("dskBatch")
+                .withRegion(LOCATION)
+                .withExistingResourceGroup(RG)
+                .withData()
+                .withSizeInGB(10)
+                .create();
+        VirtualMachineUpdateBatch batch = new VirtualMachineUpdateBatch(virtualMachine).withoutDataDisk(1);
+
+        assertThrows(IllegalStateException.class, () -> batch.withExistingDataDisk(disk, 1, CachingTypes.READ_WRITE));
+        assertThrows(IllegalStateException.class, () -> batch.withNewDataDisk(10, 1, CachingTypes.READ_WRITE));
+        batch.withExistingDataDisk(disk, 2, CachingTypes.READ_WRITE);
+    }
+
+    @Test
+    public void applyWaitsForTheWindowedUpdate() throws InterruptedException {
+        VirtualMachineUpdateBatch batch = new VirtualMachineUpdateBatch(virtualMachine, Duration.ofMillis(50));
+        batch.withTag("first", "windowed");
+        // The window has passed and its update is still being sent.
+        Thread.sleep(150);
+        batch.withTag("second", "explicit");
+
+        batch.apply();
+
+        assertEquals(2, vmWrites.get());
+        assertEquals(1, maxVmWritesInFlight.get());
+        VirtualMachine updated = azure.virtualMachines().getById(virtualMachine.id());
+        assertEquals("windowed", updated.tags().get("first"));
+        assertEquals("explicit", updated.tags().get("second"));
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import com.azure.resourcemanager.AzureResourceManager;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Edits the file behind a {@link ConfigService} and checks what the service picks up.
+ */
+public class ConfigServiceTest {
+    /** Long enough that the file watcher never reloads during a test that reloads by hand. */
+    private static final Duration NO_WATCH = Duration.ofHours(1);
+
+    private HttpServer arm;
+    private ConfigService config;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    public void startArm() throws IOException {
+        arm = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        arm.createContext("/metadata/endpoints", ConfigServiceTest::metadata);
+        arm.start();
+    }
+
+    @AfterEach
+    public void stop() {
+        if (config != null) {
+            config.close();
+        }
+        arm.stop(0);
+    }
+
+    @Test
+    public void burstOfEditsIsReloadedOnce() throws Exception {
+        config = new ConfigService(write("c0", "sub"), null, Duration.ofMillis(500));
+        List<String> clientIds = new CopyOnWriteArrayList<>();
+        config.onReload(reloaded -> clientIds.add(reloaded.clientId()));
+
+        for (int i = 1; i <= 5; i++) {
+            write("c" + i, "sub");
+            Thread.sleep(50);
+        }
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (config.reloads() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        Thread.sleep(1000);
+
+        assertEquals(1, config.reloads());
+        assertEquals("c5", config.config().clientId());
+        assertEquals(1, clientIds.size());
+    }
+
+    @Test
+    public void failedReloadKeepsTheConfiguration() throws IOException {
+        config = new ConfigService(write("c0", "sub"), null, NO_WATCH);
+        Files.write(dir.resolve("azureSecretSpConfig.json"), "{\"clientId\": ".getBytes(StandardCharsets.UTF_8));
+
+        assertFalse(config.reload());
+
+        assertEquals(1, config.failedReloads());
+        assertEquals(0, config.reloads());
+        assertEquals("c0", config.config().clientId());
+    }
+
+    @Test
+    public void clientIsKeptUntilTheTargetChanges() throws IOException {
+        config = new ConfigService(write("c0", "sub"), null, NO_WATCH);
+        AzureResourceManager azure = config.azure();
+        assertSame(azure, config.azure());
+
+        write("c1", "sub");
+        assertTrue(config.reload());
+        // Another service principal reaches the client through the reloading credential.
+        assertSame(azure, config.azure());
+
+        write("c1", "other");
+        assertTrue(config.reload());
+        assertNotSame(azure, config.azure());
+        assertEquals("other", config.azure().subscriptionId());
+    }
+
+    private Path write(String clientId, String subscriptionId) throws IOException {
+        return Files.write(dir.resolve("azureSecretSpConfig.json"), ("{\"clientId\": \"" + clientId
+                + "\", \"clientSecret\": \"s\", \"subscriptionId\": \"" + subscriptionId + "\", \"tenantId\": \"t\", "
+                + "\"location\": \"local\", \"resourceManagerEndpointUrl\": \"http://localhost:"
+                + arm.getAddress().getPort() + "\"}").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void metadata(HttpExchange exchange) throws IOException {
+        byte[] body = ("[{\"graph\": \"https://graph.local/\", \"authentication\": {\"loginEndpoint\": "
+                + "\"https://login.local/\", \"audiences\": [\"https://management.local/\"]}, "
+                + "\"suffixes\": {\"storage\": \"local\", \"keyVaultDns\": \"vault.local\"}}]")
+                .getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+}
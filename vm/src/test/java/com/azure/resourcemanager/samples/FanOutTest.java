@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link FanOut} with operations that fail or outlive an interrupt of the caller.
+ */
+public class FanOutTest {
+    @Test
+    public void failureWaitsForTheOtherOperations() {
+        AtomicInteger finished = new AtomicInteger();
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> FanOut.map(Arrays.asList(1, 2, 3, 4), 2, item -> {
+                    Thread.sleep(50);
+                    finished.incrementAndGet();
+                    if (item % 2 == 0) {
+                        throw new IllegalArgumentException("item " + item);
+                    }
+                    return item;
+                }));
+
+        assertEquals(4, finished.get());
+        assertEquals("item 2", e.getMessage());
+        assertEquals(1, e.getSuppressed().length);
+    }
+
+    @Test
+    public void interruptWaitsForRunningOperations() throws InterruptedException {
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        AtomicInteger started = new AtomicInteger();
+        AtomicInteger finished = new AtomicInteger();
+        AtomicBoolean operationInterrupted = new AtomicBoolean();
+        AtomicReference<Exception> thrown = new AtomicReference<>();
+        AtomicBoolean callerInterrupted = new AtomicBoolean();
+        Thread caller = new Thread(() -> {
+            try {
+                FanOut.map(Arrays.asList(1, 2, 3), 1, item -> {
+                    started.incrementAndGet();
+                    firstStarted.countDown();
+                    try {
+                        Thread.sleep(300);
+                    } catch (InterruptedException e) {
+                        operationInterrupted.set(true);
+                        throw e;
+                    }
+                    return finished.incrementAndGet();
+                });
+            } catch (Exception e) {
+                thrown.set(e);
+                callerInterrupted.set(Thread.currentThread().isInterrupted());
+            }
+        });
+
+        caller.start();
+        firstStarted.await();
+        caller.interrupt();
+        caller.join(5000);
+
+        assertFalse(caller.isAlive());
+        assertFalse(operationInterrupted.get());
+        // On a platform pool of one thread the queued operations are skipped; on virtual threads all
+        // of them are already running. Either way every operation that started has finished.
+        assertEquals(started.get(), finished.get());
+        assertTrue(thrown.get() instanceof IllegalStateException, String.valueOf(thrown.get()));
+        assertTrue(callerInterrupted.get());
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs {@link FanOut} with the Java 21 version of {@link FanOutThreads}.
+ * <p>
+ * Tests run from {@code target/classes}, where the multi-release layout has no effect, so this test
+ * loads the fan-out classes itself with {@code META-INF/versions/21} ahead of the base classes. It
+ * skips unless the build ran on JDK 21 or later, which compiles that directory.
+ */
+public class FanOutVirtualThreadsTest {
+    private static final String PACKAGE = FanOut.class.getPackage().getName() + ".";
+
+    @Test
+    public void operationsRunOnTheirOwnVirtualThreads() throws Exception {
+        Path classes = Paths.get("target/classes");
+        Path versioned = classes.resolve("META-INF/versions/21");
+        assumeTrue(Files.isDirectory(versioned), "built without the java21 profile");
+
+        try (URLClassLoader loader = new Java21ClassLoader(versioned, classes)) {
+            Class<?> fanOut = loader.loadClass(FanOut.class.getName());
+            Class<?> operationType = loader.loadClass(FanOut.Operation.class.getName());
+            assertTrue((Boolean) fanOut.getMethod("virtualThreads").invoke(null));
+
+            // Every operation waits for all of them to start, which only finishes if none of them
+            // waits for a thread, although the parallelism is one.
+            int count = 64;
+            CountDownLatch started = new CountDownLatch(count);
+            Method isVirtual = Thread.class.getMethod("isVirtual");
+            Set<Thread> threads = ConcurrentHashMap.newKeySet();
+            Object operation = Proxy.newProxyInstance(loader, new Class<?>[] {operationType}, (proxy, method, args) -> {
+                started.countDown();
+                if (!started.await(10, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("operations did not run at the same time");
+                }
+                Thread thread = Thread.currentThread();
+                threads.add(thread);
+                return isVirtual.invoke(thread);
+            });
+            List<Integer> items = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                items.add(i);
+            }
+
+            List<?> results = (List<?>) fanOut.getMethod("map", Collection.class, int.class, operationType)
+                    .invoke(null, items, 1, operation);
+
+            assertEquals(count, results.size());
+            assertTrue(results.stream().allMatch(Boolean.TRUE::equals), String.valueOf(results));
+            assertEquals(count, threads.size());
+        }
+    }
+
+    /**
+     * Loads the fan-out classes from the versioned directory first, then from the base classes, and
+     * everything else, such as azure-core, from the test class path.
+     */
+    private static final class Java21ClassLoader extends URLClassLoader {
+        Java21ClassLoader(Path versioned, Path classes) throws Exception {
+            super(new URL[] {versioned.toUri().toURL(), classes.toUri().toURL()},
+                    FanOutVirtualThreadsTest.class.getClassLoader());
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.startsWith(PACKAGE + "FanOut")) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> loaded = findLoadedClass(name);
+                if (loaded == null) {
+                    loaded = findClass(name);
+                }
+                if (resolve) {
+                    resolveClass(loaded);
+                }
+                return loaded;
+            }
+        }
+    }
+}
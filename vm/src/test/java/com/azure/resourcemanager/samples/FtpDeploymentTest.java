@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Deploys files to a {@link LocalFtpServer} with {@link FtpDeployment}.
+ */
+public class FtpDeploymentTest {
+    private LocalFtpServer server;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    public void startServer() throws InterruptedException {
+        server = new LocalFtpServer();
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.close();
+    }
+
+    @Test
+    public void sessionsAreReusedAcrossFiles() throws IOException {
+        for (int i = 0; i < 8; i++) {
+            write("dir/file" + i + ".txt", "content " + i);
+        }
+
+        FtpDeployment.Result result;
+        try (FtpDeployment deployment = new FtpDeployment(server.profile("site/wwwroot"), "site/wwwroot", 2)) {
+            result = deployment.deploy(dir);
+        }
+
+        assertEquals(8, result.uploaded().size());
+        assertEquals("content 7", server.read("/site/wwwroot/dir/file7.txt"));
+        assertTrue(server.logins() <= 2, "logins: " + server.logins());
+    }
+
+    @Test
+    public void failedUploadIsRetriedOnANewSession() throws IOException {
+        write("a.txt", "a");
+        write("b.txt", "b");
+        server.failNextUpload("/site/wwwroot/b.txt");
+
+        FtpDeployment.Result result;
+        try (FtpDeployment deployment = new FtpDeployment(server.profile("site/wwwroot"), "site/wwwroot", 1)) {
+            result = deployment.deploy(dir);
+        }
+
+        assertEquals(2, result.uploaded().size());
+        assertEquals(0, result.failed().size());
+        assertEquals(1, result.retries());
+        assertEquals("b", server.read("/site/wwwroot/b.txt"));
+        // The failed session is discarded rather than returned to the pool.
+        assertEquals(2, server.logins());
+    }
+
+    @Test
+    public void fileFailingEveryAttemptIsReported() throws IOException {
+        write("a.txt", "a");
+        server.failNextUpload("/site/wwwroot/a.txt");
+
+        FtpDeployment.Result result;
+        try (FtpDeployment deployment = new FtpDeployment(server.profile("site/wwwroot"), "site/wwwroot", 1)
+                .withMaxAttempts(1)) {
+            result = deployment.deploy(dir);
+        }
+
+        assertEquals(0, result.uploaded().size());
+        assertTrue(result.failed().containsKey("a.txt"), String.valueOf(result.failed()));
+    }
+
+    private void write(String relativePath, String content) throws IOException {
+        Path file = dir.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
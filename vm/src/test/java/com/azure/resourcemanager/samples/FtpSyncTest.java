@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Syncs a local directory to a {@link LocalFtpServer} with {@link FtpSync}.
+ */
+public class FtpSyncTest {
+    private LocalFtpServer server;
+    private Path site;
+    private Path manifest;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    public void startServer() throws InterruptedException, IOException {
+        server = new LocalFtpServer();
+        site = Files.createDirectory(dir.resolve("site"));
+        manifest = dir.resolve("manifest.json");
+        write("index.html", "index");
+        write("css/site.css", "css");
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.close();
+    }
+
+    @Test
+    public void onlyChangedFilesAreUploaded() throws IOException {
+        assertEquals(2, sync("site/wwwroot").upload().uploaded().size());
+
+        FtpSync.SyncResult unchanged = sync("site/wwwroot");
+        assertEquals(0, unchanged.upload().uploaded().size());
+        assertEquals(2, unchanged.unchanged());
+
+        write("index.html", "new index");
+        Files.delete(site.resolve("css/site.css"));
+        FtpSync.SyncResult changed = sync("site/wwwroot");
+        assertEquals(1, changed.upload().uploaded().size());
+        assertEquals(1, changed.deleted());
+        assertEquals("new index", server.read("/site/wwwroot/index.html"));
+        assertNull(server.read("/site/wwwroot/css/site.css"));
+    }
+
+    @Test
+    public void manifestOfAnotherTargetIsIgnored() throws IOException {
+        sync("site/wwwroot");
+
+        FtpSync.SyncResult staging = sync("site/staging");
+
+        assertEquals(2, staging.upload().uploaded().size());
+        assertEquals("index", server.read("/site/staging/index.html"));
+        String saved = new String(Files.readAllBytes(manifest), StandardCharsets.UTF_8);
+        assertTrue(saved.contains("/site/staging"), saved);
+        // The sync to the other directory deletes nothing it did not deploy.
+        assertEquals(0, staging.deleted());
+    }
+
+    private FtpSync.SyncResult sync(String remoteRoot) throws IOException {
+        try (FtpDeployment deployment = new FtpDeployment(server.profile(remoteRoot), remoteRoot, 2)) {
+            return new FtpSync(deployment, manifest).withDeleteOrphans().sync(site);
+        }
+    }
+
+    private void write(String relativePath, String content) throws IOException {
+        Path file = site.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
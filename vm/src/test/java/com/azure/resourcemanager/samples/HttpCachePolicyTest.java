@@ -0,0 +1,186 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import com.azure.core.http.HttpMethod;
+import com.azure.core.http.HttpPipeline;
+import com.azure.core.http.HttpPipelineBuilder;
+import com.azure.core.http.HttpRequest;
+import com.azure.core.http.HttpResponse;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs {@link HttpCachePolicy} against a local server that answers with an ETag per caller.
+ */
+public class HttpCachePolicyTest {
+    private final AtomicInteger downloads = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+    private HttpServer server;
+    private HttpCachePolicy cache;
+    private HttpPipeline pipeline;
+    private String url;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::respond);
+        server.start();
+        use(new HttpCachePolicy(1024 * 1024));
+        url = base() + "/resource";
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void repeatedGetIsRevalidated() {
+        assertEquals("body for anonymous", get(null));
+        assertEquals("body for anonymous", get(null));
+
+        assertEquals(1, downloads.get());
+        assertEquals(1, notModified.get());
+        assertEquals(1, cache.metrics().revalidatedHits());
+    }
+
+    @Test
+    public void responsesAreNotSharedAcrossCredentials() {
+        assertEquals("body for Bearer alice", get("Bearer alice"));
+        assertEquals("body for Bearer bob", get("Bearer bob"));
+        assertEquals("body for Bearer alice", get("Bearer alice"));
+        assertEquals("body for anonymous", get(null));
+
+        assertEquals(3, downloads.get());
+        assertEquals(1, cache.metrics().revalidatedHits());
+    }
+
+    @Test
+    public void cachedHeadersAreCopies() {
+        get(null);
+        HttpResponse first = send(null);
+        first.getHeaders().set("ETag", "\"changed\"");
+
+        assertEquals("\"v1\"", send(null).getHeaderValue("ETag"));
+        assertEquals(2, notModified.get());
+    }
+
+    @Test
+    public void leastRecentlyUsedIsEvictedAtTheByteLimit() {
+        // Room for two 18 byte bodies, not three
+        use(new HttpCachePolicy(40));
+        get(base() + "/a", null);
+        get(base() + "/b", null);
+        get(base() + "/a", null);
+        get(base() + "/c", null);
+
+        assertEquals(1, cache.metrics().evictions());
+        get(base() + "/a", null);
+        assertEquals(2, notModified.get());
+        get(base() + "/b", null);
+        assertEquals(4, downloads.get());
+    }
+
+    @Test
+    public void freshResponseIsServedWithoutARequest() throws InterruptedException {
+        use(new HttpCachePolicy(1024 * 1024, Duration.ofMillis(300)));
+        get(null);
+        assertEquals("body for anonymous", get(null));
+
+        assertEquals(1, downloads.get());
+        assertEquals(0, notModified.get());
+        assertEquals(1, cache.metrics().freshHits());
+
+        Thread.sleep(500);
+        assertEquals("body for anonymous", get(null));
+        assertEquals(1, notModified.get());
+        assertEquals(1, cache.metrics().revalidatedHits());
+    }
+
+    @Test
+    public void writesInvalidateTheirPath() {
+        use(new HttpCachePolicy(1024 * 1024, Duration.ofMinutes(1)));
+        get(url + "?api-version=1", null);
+        get(base() + "/other", null);
+        int expectedDownloads = 2;
+        for (HttpMethod method : new HttpMethod[] {HttpMethod.PUT, HttpMethod.PATCH, HttpMethod.DELETE}) {
+            pipeline.send(new HttpRequest(method, url)).block().close();
+
+            get(url + "?api-version=1", null);
+            get(base() + "/other", null);
+            assertEquals(++expectedDownloads, downloads.get(), method.toString());
+        }
+        // Only the written path is dropped
+        assertEquals(3, cache.metrics().freshHits());
+    }
+
+    private void use(HttpCachePolicy policy) {
+        cache = policy;
+        pipeline = new HttpPipelineBuilder().policies(cache).build();
+    }
+
+    private String base() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    private String get(String authorization) {
+        return get(url, authorization);
+    }
+
+    private String get(String requestUrl, String authorization) {
+        return send(requestUrl, authorization).getBodyAsString().block();
+    }
+
+    private HttpResponse send(String authorization) {
+        return send(url, authorization);
+    }
+
+    private HttpResponse send(String requestUrl, String authorization) {
+        HttpRequest request = new HttpRequest(HttpMethod.GET, requestUrl);
+        if (authorization != null) {
+            request.setHeader("Authorization", authorization);
+        }
+        return pipeline.send(request).block();
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+            return;
+        }
+        String caller = exchange.getRequestHeaders().getFirst("Authorization");
+        String etag = "\"v1\"";
+        exchange.getResponseHeaders().set("ETag", etag);
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            notModified.incrementAndGet();
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        downloads.incrementAndGet();
+        byte[] body = ("body for " + (caller == null ? "anonymous" : caller)).getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+}
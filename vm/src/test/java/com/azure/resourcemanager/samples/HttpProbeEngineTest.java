@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link HttpProbeEngine} against local servers standing in for several hosts.
+ */
+public class HttpProbeEngineTest {
+    private static final int HOSTS = 3;
+
+    private final List<HttpServer> servers = new ArrayList<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicInteger[] hostInFlight = new AtomicInteger[HOSTS];
+    private final AtomicInteger[] hostMaxInFlight = new AtomicInteger[HOSTS];
+    private final AtomicInteger requests = new AtomicInteger();
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void startServers() throws IOException {
+        executor = Executors.newCachedThreadPool();
+        for (int i = 0; i < HOSTS; i++) {
+            final int host = i;
+            hostInFlight[host] = new AtomicInteger();
+            hostMaxInFlight[host] = new AtomicInteger();
+            HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            server.setExecutor(executor);
+            server.createContext("/", exchange -> respond(host, exchange));
+            server.start();
+            servers.add(server);
+        }
+    }
+
+    @AfterEach
+    public void stopServers() {
+        servers.forEach(server -> server.stop(0));
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void limitsRequestsPerHostAndInTotal() {
+        List<HttpProbeEngine.Probe> probes = new ArrayList<>();
+        // All probes of the first host come first, so a global limit taken by its waiting probes would show.
+        for (HttpServer server : servers) {
+            for (int i = 0; i < 6; i++) {
+                probes.add(HttpProbeEngine.Probe.containing(url(server, "/item" + i), "ok"));
+            }
+        }
+
+        // Three hosts of two requests each could take six; the total limit of five applies.
+        HttpProbeEngine.Report report = new HttpProbeEngine(5, 2).run(probes);
+
+        assertEquals(18, report.results().size());
+        assertEquals(1.0, report.availability());
+        assertEquals(5, maxInFlight.get());
+        for (int host = 0; host < HOSTS; host++) {
+            assertEquals(2, hostMaxInFlight[host].get(), "host " + host);
+        }
+    }
+
+    @Test
+    public void probesAreNotCachedOrRetried() {
+        HttpServer server = servers.get(0);
+        List<HttpProbeEngine.Probe> probes = new ArrayList<>();
+        probes.add(HttpProbeEngine.Probe.ok(url(server, "/unavailable")));
+        probes.add(HttpProbeEngine.Probe.ok(url(server, "/unavailable")));
+
+        HttpProbeEngine.Report report = new HttpProbeEngine(4, 2).run(probes);
+
+        assertEquals(2, report.failures().size());
+        assertEquals(503, report.failures().get(0).status());
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void cancelledWaitingProbesGiveBackTheirPermits() {
+        HttpProbeEngine.Permits permits = new HttpProbeEngine.Permits(1);
+        Sinks.Empty<Void> first = Sinks.empty();
+        AtomicInteger started = new AtomicInteger();
+        Mono<Void> counted = Mono.fromRunnable(started::incrementAndGet);
+
+        Disposable running = permits.run(first.asMono()).subscribe();
+        Disposable waiting = permits.run(counted).subscribe();
+        Disposable cancelledToo = permits.run(counted).subscribe();
+        waiting.dispose();
+        cancelledToo.dispose();
+        first.tryEmitEmpty();
+
+        assertTrue(running.isDisposed());
+        assertEquals(0, started.get());
+        assertEquals(1, permits.available());
+        assertEquals(1, permits.run(Mono.just(1)).block());
+        assertEquals(1, permits.available());
+    }
+
+    private static String url(HttpServer server, String path) {
+        return "http://localhost:" + server.getAddress().getPort() + path;
+    }
+
+    private void respond(int host, HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        hostMaxInFlight[host].accumulateAndGet(hostInFlight[host].incrementAndGet(), Math::max);
+        try {
+            Thread.sleep(200);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+            hostInFlight[host].decrementAndGet();
+        }
+        int status = exchange.getRequestURI().getPath().equals("/unavailable") ? 503 : 200;
+        byte[] body = (status == 200 ? "ok" : "unavailable").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Cache-Control", "max-age=60");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import com.azure.resourcemanager.appservice.models.PublishingProfile;
+import org.mockftpserver.core.command.Command;
+import org.mockftpserver.core.command.CommandNames;
+import org.mockftpserver.core.session.Session;
+import org.mockftpserver.fake.FakeFtpServer;
+import org.mockftpserver.fake.UserAccount;
+import org.mockftpserver.fake.command.PassCommandHandler;
+import org.mockftpserver.fake.command.StorCommandHandler;
+import org.mockftpserver.fake.filesystem.DirectoryEntry;
+import org.mockftpserver.fake.filesystem.FileEntry;
+import org.mockftpserver.fake.filesystem.UnixFakeFileSystem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An FTP server on a local port with an in-memory file system, for {@link FtpDeployment} tests. It counts
+ * logins and can fail the next upload of chosen files.
+ */
+final class LocalFtpServer implements AutoCloseable {
+    private static final String USER = "deployer";
+    private static final String PASSWORD = "secret";
+
+    private final FakeFtpServer server = new FakeFtpServer();
+    private final UnixFakeFileSystem fileSystem = new UnixFakeFileSystem();
+    private final AtomicInteger logins = new AtomicInteger();
+    private final Set<String> failOnce = ConcurrentHashMap.newKeySet();
+
+    LocalFtpServer() throws InterruptedException {
+        fileSystem.add(new DirectoryEntry("/"));
+        server.setFileSystem(fileSystem);
+        server.addUserAccount(new UserAccount(USER, PASSWORD, "/"));
+        server.setServerControlPort(0);
+        server.setCommandHandler(CommandNames.PASS, new PassCommandHandler() {
+            @Override
+            protected void handle(Command command, Session session) {
+                logins.incrementAndGet();
+                super.handle(command, session);
+            }
+        });
+        server.setCommandHandler(CommandNames.STOR, new StorCommandHandler() {
+            @Override
+            protected void handle(Command command, Session session) {
+                if (failOnce.remove(command.getRequiredParameter(0))) {
+                    session.sendReply(451, "Requested action aborted: local error in processing.");
+                } else {
+                    super.handle(command, session);
+                }
+            }
+        });
+        server.start();
+        while (!server.isStarted()) {
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * @param remoteRoot the directory the profile deploys to, e.g. "site/wwwroot"
+     * @return a publishing profile of this server
+     */
+    PublishingProfile profile(String remoteRoot) {
+        String ftpUrl = "localhost:" + server.getServerControlPort() + "/" + remoteRoot;
+        return new PublishingProfile() {
+            @Override
+            public String ftpUrl() {
+                return ftpUrl;
+            }
+
+            @Override
+            public String ftpUsername() {
+                return USER;
+            }
+
+            @Override
+            public String ftpPassword() {
+                return PASSWORD;
+            }
+
+            @Override
+            public String gitUrl() {
+                return null;
+            }
+
+            @Override
+            public String gitUsername() {
+                return null;
+            }
+
+            @Override
+            public String gitPassword() {
+                return null;
+            }
+        };
+    }
+
+    /** @param path an absolute remote path whose next upload fails */
+    void failNextUpload(String path) {
+        failOnce.add(path);
+    }
+
+    /** @return the number of successful and failed logins */
+    int logins() {
+        return logins.get();
+    }
+
+    /**
+     * @param path an absolute remote path
+     * @return the content of the file, or null if there is none
+     */
+    String read(String path) throws IOException {
+        if (!fileSystem.isFile(path)) {
+            return null;
+        }
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (InputStream input = ((FileEntry) fileSystem.getEntry(path)).createInputStream()) {
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = input.read(chunk)) > 0) {
+                content.write(chunk, 0, read);
+            }
+        }
+        return new String(content.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() {
+        server.stop();
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the names of {@link NameAllocator}.
+ */
+public class NameAllocatorTest {
+    @Test
+    public void shortNamesCarryTheProcessTag() {
+        List<String> names = new NameAllocator().reserve("", "sa", 8, 1000);
+        String tag = names.get(0).substring(2, 4);
+
+        Set<String> distinct = new HashSet<>();
+        for (String name : names) {
+            assertEquals(8, name.length());
+            assertEquals(tag, name.substring(2, 4), name);
+            distinct.add(name);
+        }
+        assertEquals(1000, distinct.size());
+        // Two runs draw different tags, except once in 36^2 pairs; four draws make a false failure negligible.
+        boolean differs = false;
+        for (int i = 0; i < 4 && !differs; i++) {
+            differs = !tag.equals(new NameAllocator().next("", "sa", 8).substring(2, 4));
+        }
+        assertTrue(differs);
+    }
+
+    @Test
+    public void longNamesKeepASixCharacterSequence() {
+        NameAllocator allocator = new NameAllocator();
+
+        String name = allocator.next("", "rg", 24);
+        String other = allocator.next("", "rg", 24);
+
+        assertEquals(24, name.length());
+        // The tag fills everything but the last six characters.
+        assertEquals(name.substring(0, 18), other.substring(0, 18));
+    }
+
+    @Test
+    public void suffixWithoutRoomForATagIsExhausted() {
+        NameAllocator allocator = new NameAllocator();
+
+        assertEquals(36 * 36, new HashSet<>(allocator.reserve("", "rgSTMS", 8, 36 * 36)).size());
+        assertThrows(IllegalStateException.class, () -> allocator.next("", "rgSTMS", 8));
+    }
+
+    @Test
+    public void shortTaggedSuffixFallsBackToTheWholeSuffix() {
+        NameAllocator allocator = new NameAllocator();
+
+        List<String> names = allocator.reserve("", "sa", 6, 2000);
+
+        assertEquals(2000, new HashSet<>(names).size());
+        String tag = names.get(0).substring(2, 4);
+        for (int i = 0; i < 36 * 36; i++) {
+            assertEquals(tag, names.get(i).substring(2, 4), names.get(i));
+        }
+    }
+
+    @Test
+    public void clearedScopeForgetsItsNames() {
+        NameAllocator allocator = new NameAllocator();
+        // A prefix that can produce names of the shorter prefix, e.g. "sa2" + "..." and "sa" + "2...".
+        Set<String> longer = new HashSet<>(allocator.reserve("", "sa2", 5, 36 * 36));
+
+        allocator.clear("");
+        Set<String> shorter = new HashSet<>(allocator.reserve("", "sa", 5, 36 * 36 * 36));
+
+        assertEquals(36 * 36 * 36, shorter.size());
+        assertTrue(shorter.containsAll(longer));
+    }
+
+    @Test
+    public void concurrentReservationsDoNotOverlap() throws Exception {
+        NameAllocator allocator = new NameAllocator();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<String>>> batches = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                batches.add(executor.submit(() -> allocator.reserve("", "vm", 6, 50)));
+            }
+            Set<String> names = new HashSet<>();
+            for (Future<List<String>> batch : batches) {
+                names.addAll(batch.get());
+            }
+            // 3200 names run past the 1296 of the tagged sequence.
+            assertEquals(64 * 50, names.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
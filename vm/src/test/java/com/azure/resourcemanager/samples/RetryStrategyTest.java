@@ -0,0 +1,229 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import com.azure.core.exception.HttpResponseException;
+import com.azure.core.http.HttpClient;
+import com.azure.core.http.HttpMethod;
+import com.azure.core.http.HttpPipeline;
+import com.azure.core.http.HttpPipelineBuilder;
+import com.azure.core.http.HttpRequest;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link RetryStrategy} against a local server that fails or stalls on cue.
+ */
+public class RetryStrategyTest {
+    private static final Predicate<Throwable> RETRY_503 = t -> t instanceof TimeoutException
+            || (t instanceof HttpResponseException && ((HttpResponseException) t).getResponse().getStatusCode() == 503);
+
+    /** The status and delay of the next responses; once one is left, it is repeated. */
+    private final Queue<int[]> script = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private ExecutorService executor;
+    private HttpServer server;
+    private HttpPipeline pipeline;
+    private String url;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        executor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::respond);
+        server.start();
+        pipeline = new HttpPipelineBuilder().httpClient(HttpClient.createDefault()).build();
+        url = "http://localhost:" + server.getAddress().getPort() + "/flaky";
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void fastFailureIsRetriedWithoutHedging() {
+        respond(503, 0);
+        respond(503, 0);
+        respond(200, 0);
+        RetryStrategy strategy = fastStrategy().withHedging(Duration.ofSeconds(5));
+
+        assertEquals("ok", strategy.execute(this::get, RETRY_503, true).block());
+
+        assertEquals(3, requests.get());
+        assertEquals(2, strategy.metrics().retries());
+        assertEquals(0, strategy.metrics().hedges());
+    }
+
+    @Test
+    public void slowAttemptIsHedged() {
+        respond(200, 3000);
+        respond(200, 0);
+        RetryStrategy strategy = fastStrategy().withHedging(Duration.ofMillis(200));
+
+        assertEquals("ok", strategy.execute(this::get, RETRY_503, true).block(Duration.ofSeconds(2)));
+
+        assertEquals(1, strategy.metrics().attempts());
+        assertEquals(1, strategy.metrics().hedges());
+        assertEquals(1, strategy.metrics().hedgeWins());
+        assertEquals(0, strategy.metrics().retries());
+    }
+
+    @Test
+    public void failedHedgeWaitsForThePrimary() {
+        respond(200, 600);
+        respond(503, 0);
+        RetryStrategy strategy = fastStrategy().withHedging(Duration.ofMillis(200));
+
+        assertEquals("ok", strategy.execute(this::get, RETRY_503, true).block(Duration.ofSeconds(2)));
+
+        assertEquals(1, strategy.metrics().hedges());
+        assertEquals(0, strategy.metrics().hedgeWins());
+        assertEquals(0, strategy.metrics().retries());
+    }
+
+    @Test
+    public void bothAttemptsFailingSurfaceOneRetryableError() {
+        respond(503, 600);
+        respond(503, 0);
+        RetryStrategy strategy = fastStrategy().withMaxAttempts(1).withHedging(Duration.ofMillis(200));
+
+        HttpResponseException e = assertThrows(HttpResponseException.class,
+                () -> strategy.execute(this::get, RETRY_503, true).block(Duration.ofSeconds(2)));
+
+        assertEquals(503, e.getResponse().getStatusCode());
+        // block() adds its own suppressed exception for the blocking call site.
+        assertEquals(1, Arrays.stream(e.getSuppressed()).filter(HttpResponseException.class::isInstance).count());
+        assertEquals(1, strategy.metrics().exhausted());
+    }
+
+    @Test
+    public void nonRetryableErrorIsNotRetried() {
+        respond(500, 0);
+        RetryStrategy strategy = fastStrategy();
+
+        HttpResponseException e = assertThrows(HttpResponseException.class,
+                () -> strategy.execute(this::get, RETRY_503, false).block());
+
+        assertEquals(500, e.getResponse().getStatusCode());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void retriesStopAtTheDeadline() {
+        respond(503, 0);
+        RetryStrategy strategy = new RetryStrategy()
+                .withMaxAttempts(100)
+                .withBackoff(Duration.ofMillis(100), Duration.ofMillis(100))
+                .withDeadline(Duration.ofMillis(450));
+
+        long start = System.nanoTime();
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> strategy.execute(this::get, RETRY_503, false).block());
+
+        // A retry that would end past the deadline is not scheduled, and an attempt that is still
+        // running at the deadline times out; which one ends the call depends on timing.
+        Throwable error = Exceptions.unwrap(e);
+        assertTrue(error instanceof HttpResponseException || error instanceof TimeoutException, String.valueOf(error));
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 2000);
+        assertEquals(1, strategy.metrics().deadlineExceeded());
+        assertTrue(requests.get() >= 2 && requests.get() <= 5, "requests: " + requests.get());
+    }
+
+    @Test
+    public void timeoutAtTheDeadlineIsCountedOnce() {
+        RetryStrategy strategy = new RetryStrategy()
+                .withBackoff(Duration.ofMillis(100), Duration.ofMillis(100))
+                .withDeadline(Duration.ofMillis(250));
+
+        // Each attempt times out on its own; the retry that would pass the deadline is not scheduled.
+        assertThrows(RuntimeException.class, () -> strategy.execute(
+                () -> Mono.error(new TimeoutException("attempt")), RETRY_503, false).block());
+
+        assertEquals(1, strategy.metrics().deadlineExceeded());
+        assertEquals(0, strategy.metrics().exhausted());
+    }
+
+    @Test
+    public void sendGetRequestRetriesA503() {
+        // The pipeline's RetryPolicy retries a 503 three times before the strategy sees it.
+        for (int i = 0; i < 4; i++) {
+            respond(503, 0);
+        }
+        respond(200, 0);
+        long retries = Utils.httpRetryStrategy().metrics().retries();
+        long hedges = Utils.httpRetryStrategy().metrics().hedges();
+
+        assertEquals("ok", Utils.sendGetRequest(url));
+
+        assertEquals(5, requests.get());
+        assertEquals(retries + 1, Utils.httpRetryStrategy().metrics().retries());
+        assertEquals(hedges, Utils.httpRetryStrategy().metrics().hedges());
+    }
+
+    private RetryStrategy fastStrategy() {
+        return new RetryStrategy()
+                .withMaxAttempts(4)
+                .withBackoff(Duration.ofMillis(10), Duration.ofMillis(50))
+                .withDeadline(Duration.ofSeconds(10));
+    }
+
+    private Mono<String> get() {
+        return pipeline.send(new HttpRequest(HttpMethod.GET, url))
+                .flatMap(response -> response.getStatusCode() == 200
+                        ? response.getBodyAsString()
+                        : response.getBodyAsString().defaultIfEmpty("")
+                                .flatMap(body -> Mono.error(new HttpResponseException("status " + response.getStatusCode(), response))));
+    }
+
+    private void respond(int status, int delayMillis) {
+        script.add(new int[] {status, delayMillis});
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        int[] next = script.size() > 1 ? script.poll() : script.peek();
+        try {
+            Thread.sleep(next[1]);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        byte[] body = (next[0] == 200 ? "ok" : "unavailable").getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(next[0], body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+}
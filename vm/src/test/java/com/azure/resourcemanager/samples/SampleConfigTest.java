@@ -0,0 +1,65 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks how {@link SampleConfig} reads configuration files.
+ */
+public class SampleConfigTest {
+    private static final String STAMP = "\"clientId\": \"c\", \"clientSecret\": \"s\", \"subscriptionId\": \"sub\", "
+            + "\"tenantId\": \"t\", \"resourceManagerEndpointUrl\": \"https://management.local\", \"location\": \"local\"";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void readsEveryStamp() throws IOException {
+        List<SampleConfig> stamps = SampleConfig.load(write(
+                "{\"stamps\": [{\"name\": \"east\", " + STAMP + "}, {" + STAMP + ", \"tuning\": {\"fanOutParallelism\": 4}}]}"));
+
+        assertEquals(2, stamps.size());
+        assertEquals("east", stamps.get(0).name());
+        assertEquals("stamp2", stamps.get(1).name());
+        assertEquals(4, stamps.get(1).tuning("fanOutParallelism", 16));
+        assertEquals(16, stamps.get(0).tuning("fanOutParallelism", 16));
+    }
+
+    @Test
+    public void blankNameFallsBackToThePosition() throws IOException {
+        List<SampleConfig> stamps = SampleConfig.load(write(
+                "{\"stamps\": [{\"name\": \"\", " + STAMP + "}, {\"name\": \" \", " + STAMP + "}]}"));
+
+        assertEquals("stamp1", stamps.get(0).name());
+        assertEquals("stamp2", stamps.get(1).name());
+    }
+
+    @Test
+    public void missingRequiredSettingNamesTheStamp() throws IOException {
+        Path file = write("{\"stamps\": [{" + STAMP + "}, {\"name\": \"west\", "
+                + STAMP.replace("\"tenantId\": \"t\", ", "") + "}]}");
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> SampleConfig.load(file));
+
+        assertEquals("stamp 'west' has no tenantId", e.getMessage());
+    }
+
+    private Path write(String json) throws IOException {
+        return Files.write(dir.resolve("azureSecretSpConfig.json"), json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks which requests {@link SampleDaemon} accepts.
+ */
+public class SampleDaemonTest {
+    private final AtomicInteger runs = new AtomicInteger();
+    private HttpServer arm;
+    private ConfigService config;
+    private SampleDaemon daemon;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    public void startDaemon() throws IOException {
+        arm = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        arm.createContext("/metadata/endpoints", SampleDaemonTest::metadata);
+        arm.start();
+        Path file = Files.write(dir.resolve("azureSecretSpConfig.json"), ("{\"clientId\": \"c\", \"clientSecret\": \"s\", "
+                + "\"subscriptionId\": \"sub\", \"tenantId\": \"t\", \"location\": \"local\", \"resourceManagerEndpointUrl\": "
+                + "\"http://localhost:" + arm.getAddress().getPort() + "\", \"tuning\": {\"daemonMaxCount\": 3}}")
+                .getBytes(StandardCharsets.UTF_8));
+        config = new ConfigService(file, null, Duration.ofMillis(100));
+        daemon = new SampleDaemon(config, 0, 1, 4)
+                .register("count", context -> {
+                    context.count("count", 1);
+                    runs.incrementAndGet();
+                })
+                .start();
+    }
+
+    @AfterEach
+    public void stopDaemon() {
+        daemon.close();
+        config.close();
+        arm.stop(0);
+    }
+
+    @Test
+    public void runsAnAuthorizedJsonRequest() throws IOException {
+        HttpURLConnection connection = post("Bearer " + daemon.token(), "application/json; charset=utf-8");
+
+        assertEquals(200, connection.getResponseCode());
+        assertTrue(read(connection.getInputStream()).contains("\"succeeded\""));
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void rejectsRequestsWithoutTheToken() throws IOException {
+        assertEquals(401, post(null, "application/json").getResponseCode());
+        assertEquals(401, post("Bearer wrong", "application/json").getResponseCode());
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    public void rejectsSimpleCrossOriginRequests() throws IOException {
+        assertEquals(415, post("Bearer " + daemon.token(), "text/plain").getResponseCode());
+        assertEquals("HTTP/1.1 403", send("localhost", "Origin: https://example.com\r\n"));
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    public void rejectsAForeignHost() throws IOException {
+        assertEquals("HTTP/1.1 403", send("attacker.example", ""));
+        assertEquals(0, runs.get());
+        assertEquals("HTTP/1.1 200", send("127.0.0.1", ""));
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void countIsCapped() throws IOException {
+        HttpURLConnection connection = post("Bearer " + daemon.token(), "application/json");
+        connection.getOutputStream().write("{\"count\": 4}".getBytes(StandardCharsets.UTF_8));
+
+        String events = read(connection.getInputStream());
+        assertTrue(events.contains("\"failed\"") && events.contains("between 1 and 3"), events);
+        assertEquals(0, runs.get());
+    }
+
+    private HttpURLConnection post(String authorization, String contentType) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + daemon.port()
+                + "/workflows/count").openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        if (authorization != null) {
+            connection.setRequestProperty("Authorization", authorization);
+        }
+        connection.setRequestProperty("Content-Type", contentType);
+        return connection;
+    }
+
+    /**
+     * HttpURLConnection neither sends Origin nor lets a caller set Host, so write the request by hand.
+     *
+     * @return the status line of the response
+     */
+    private String send(String host, String headers) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), daemon.port())) {
+            socket.getOutputStream().write(("POST /workflows/count HTTP/1.1\r\nHost: " + host + ":" + daemon.port()
+                    + "\r\nAuthorization: Bearer " + daemon.token() + "\r\nContent-Type: application/json\r\n"
+                    + headers + "Content-Length: 0\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            return read(socket.getInputStream()).substring(0, "HTTP/1.1 200".length());
+        }
+    }
+
+    private static void metadata(HttpExchange exchange) throws IOException {
+        byte[] body = ("[{\"graph\": \"https://graph.local/\", \"authentication\": {\"loginEndpoint\": "
+                + "\"https://login.local/\", \"audiences\": [\"https://management.local/\"]}, "
+                + "\"suffixes\": {\"storage\": \"local\", \"keyVaultDns\": \"vault.local\"}}]")
+                .getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    private static String read(InputStream input) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        int read;
+        while ((read = input.read(chunk)) > 0) {
+            buffer.write(chunk, 0, read);
+        }
+        return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
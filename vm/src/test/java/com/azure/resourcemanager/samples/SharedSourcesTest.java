@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Keeps the copies of the shared {@code com.azure.resourcemanager.samples} package identical.
+ * <p>
+ * Every sample is a standalone Maven project that can be built and run on its own, so each one carries
+ * its own copy of the package, as it does of {@link Utils}. A change to one copy has to be made to all
+ * of them; this test names the files that differ. It runs from the vm module and skips when the other
+ * samples are not checked out next to it.
+ */
+public class SharedSourcesTest {
+    private static final List<String> SAMPLES = Arrays.asList("resourcegroup", "secret", "storage", "vm");
+    private static final List<String> SOURCE_ROOTS = Arrays.asList("src/main/java", "src/main/java21");
+    private static final String PACKAGE = "com/azure/resourcemanager/samples";
+
+    @Test
+    public void sharedPackageIsIdenticalInEverySample() throws IOException {
+        Path root = Paths.get("..").toAbsolutePath().normalize();
+        List<String> differences = new ArrayList<>();
+        for (String sourceRoot : SOURCE_ROOTS) {
+            Map<String, byte[]> reference = null;
+            String referenceSample = null;
+            for (String sample : SAMPLES) {
+                Path dir = root.resolve(sample).resolve(sourceRoot).resolve(PACKAGE);
+                if (!Files.isDirectory(root.resolve(sample).resolve("src"))) {
+                    // Only this sample is checked out.
+                    continue;
+                }
+                Map<String, byte[]> files = read(dir);
+                if (reference == null) {
+                    reference = files;
+                    referenceSample = sample;
+                    continue;
+                }
+                for (String name : union(reference, files)) {
+                    if (!reference.containsKey(name) || !files.containsKey(name)) {
+                        differences.add(sourceRoot + "/" + PACKAGE + "/" + name + " is missing in "
+                                + (reference.containsKey(name) ? sample : referenceSample));
+                    } else if (!Arrays.equals(reference.get(name), files.get(name))) {
+                        differences.add(sourceRoot + "/" + PACKAGE + "/" + name + " differs between "
+                                + referenceSample + " and " + sample);
+                    }
+                }
+            }
+        }
+        assertEquals(new ArrayList<String>(), differences);
+        assertTrue(Files.isDirectory(Paths.get("src/main/java").resolve(PACKAGE)));
+    }
+
+    private static Map<String, byte[]> read(Path dir) throws IOException {
+        Map<String, byte[]> files = new TreeMap<>();
+        if (!Files.isDirectory(dir)) {
+            return files;
+        }
+        try (Stream<Path> list = Files.list(dir)) {
+            for (Path file : list.filter(path -> path.toString().endsWith(".java")).collect(Collectors.toList())) {
+                files.put(file.getFileName().toString(), Files.readAllBytes(file));
+            }
+        }
+        return files;
+    }
+
+    private static Set<String> union(Map<String, byte[]> first, Map<String, byte[]> second) {
+        Set<String> names = new TreeSet<>(first.keySet());
+        names.addAll(second.keySet());
+        return names;
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Takes keys from {@link SshKeyPool} and checks the hit and miss counts.
+ */
+public class SshKeyPoolTest {
+    @Test
+    public void countsHitsAndMisses() throws InterruptedException {
+        SshKeyPool pool = new SshKeyPool(SshKeyPool.Algorithm.RSA_2048, 2);
+        long deadline = System.nanoTime() + 30_000_000_000L;
+        while (pool.available() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, pool.available());
+        // With the pool full, the generator waits to add a key; closing it stops the refill.
+        pool.close();
+
+        Set<String> keys = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            String key = pool.take().publicKey();
+            assertTrue(key.startsWith("ssh-rsa "), key);
+            keys.add(key);
+        }
+
+        assertEquals(3, keys.size());
+        assertEquals(2, pool.hits());
+        assertEquals(1, pool.misses());
+        assertEquals(0, pool.available());
+    }
+
+    @Test
+    public void encodesEd25519Keys() {
+        try (SshKeyPool pool = new SshKeyPool(SshKeyPool.Algorithm.ED25519, 1)) {
+            String key = pool.take().publicKey();
+
+            assertTrue(key.startsWith("ssh-ed25519 "), key);
+            assertEquals(1, pool.hits());
+        }
+    }
+
+    @Test
+    public void sharedKeyIsStable() {
+        assertEquals(Utils.sshPublicKey(), Utils.sshPublicKey());
+        assertTrue(!Utils.newSshPublicKey().equals(Utils.sshPublicKey()));
+    }
+}
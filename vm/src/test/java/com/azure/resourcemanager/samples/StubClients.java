@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import com.azure.core.http.HttpClient;
+import com.azure.core.http.netty.NettyAsyncHttpClientBuilder;
+import com.azure.core.http.policy.HttpPipelinePolicy;
+import com.azure.core.management.AzureEnvironment;
+import com.azure.core.management.profile.AzureProfile;
+import com.azure.resourcemanager.AzureResourceManager;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+
+import javax.net.ssl.SSLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Connects SDK clients to a {@link LocalArmStub} in tests. The client trusts the certificate of the stub
+ * itself, so that the trust store of the test JVM stays as it is.
+ */
+public final class StubClients {
+    private StubClients() {
+    }
+
+    /**
+     * @param stub the stub
+     * @param policies additional policies of the client pipeline
+     * @return a client of the stub's subscription
+     */
+    public static AzureResourceManager azure(LocalArmStub stub, HttpPipelinePolicy... policies) {
+        Map<String, String> endpoints = new HashMap<>();
+        endpoints.put("resourceManagerEndpointUrl", stub.endpoint());
+        endpoints.put("managementEndpointUrl", "https://management.stub/");
+        endpoints.put("activeDirectoryEndpointUrl", stub.endpoint() + "/login/");
+        // The hybrid SDK reads the Azure AD Graph endpoint, the public one the Microsoft Graph endpoint.
+        endpoints.put("activeDirectoryGraphResourceId", stub.endpoint() + "/graph/");
+        endpoints.put("microsoftGraphResourceId", stub.endpoint() + "/graph/");
+        AzureProfile profile = new AzureProfile(LocalArmStub.TENANT_ID, LocalArmStub.SUBSCRIPTION_ID,
+                new AzureEnvironment(endpoints));
+        AzureResourceManager.Configurable configurable = AzureResourceManager.configure().withHttpClient(httpClient());
+        for (HttpPipelinePolicy policy : policies) {
+            configurable.withPolicy(policy);
+        }
+        return configurable
+                .authenticate(stub.credential(), profile)
+                .withDefaultSubscription();
+    }
+
+    /** @return an HTTP client that trusts the certificate of any stub */
+    public static HttpClient httpClient() {
+        SslContext ssl;
+        try {
+            ssl = SslContextBuilder.forClient().trustManager(InsecureTrustManagerFactory.INSTANCE).build();
+        } catch (SSLException e) {
+            throw new IllegalStateException(e);
+        }
+        return new NettyAsyncHttpClientBuilder(
+                reactor.netty.http.client.HttpClient.create().secure(spec -> spec.sslContext(ssl))).build();
+    }
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.azure.resourcemanager.samples;
+
+import com.azure.core.exception.HttpResponseException;
+import com.azure.core.http.HttpClient;
+import com.azure.core.http.HttpPipeline;
+import com.azure.core.http.HttpPipelineBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link ZipDeployment} against a local stand-in for the Kudu zip deploy API.
+ */
+public class ZipDeploymentTest {
+    private static final String USER = "$site";
+    private static final String PASSWORD = "secret";
+
+    private final Map<String, String> received = new TreeMap<>();
+    private final Queue<String> statuses = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger polls = new AtomicInteger();
+    private HttpServer kudu;
+    private HttpPipeline pipeline;
+
+    @TempDir
+    Path site;
+
+    @BeforeEach
+    public void startKudu() throws IOException {
+        kudu = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        kudu.createContext("/api/zipdeploy", this::zipDeploy);
+        kudu.createContext("/api/deployments/latest", this::deploymentStatus);
+        kudu.start();
+        pipeline = new HttpPipelineBuilder().httpClient(HttpClient.createDefault()).build();
+    }
+
+    @AfterEach
+    public void stopKudu() {
+        kudu.stop(0);
+    }
+
+    @Test
+    public void uploadsTheDirectoryAndPollsUntilComplete() throws IOException {
+        Files.write(site.resolve("index.html"), "<h1>hello</h1>".getBytes(StandardCharsets.UTF_8));
+        Files.createDirectories(site.resolve("WEB-INF/lib"));
+        byte[] large = new byte[1024 * 1024];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) (i * 31 % 251);
+        }
+        Files.write(site.resolve("WEB-INF/lib/app.jar"), large);
+        statuses.add("{\"id\":\"d1\",\"status\":1,\"complete\":false}");
+        statuses.add("{\"id\":\"d1\",\"status\":4,\"status_text\":\"done\",\"complete\":true}");
+
+        ZipDeployment.DeploymentStatus status = deployment().deploy(site);
+
+        assertTrue(status.isSuccessful());
+        assertEquals("d1", status.id());
+        assertEquals(2, received.size());
+        assertEquals("<h1>hello</h1>", received.get("index.html"));
+        assertEquals(new String(large, StandardCharsets.ISO_8859_1), received.get("WEB-INF/lib/app.jar"));
+        // One 202 while the deployment is not visible yet, one in progress, one complete.
+        assertEquals(3, polls.get());
+    }
+
+    @Test
+    public void failedDeploymentIsAnError() throws IOException {
+        Files.write(site.resolve("index.html"), "x".getBytes(StandardCharsets.UTF_8));
+        statuses.add("{\"id\":\"d2\",\"status\":3,\"status_text\":\"build failed\",\"complete\":true}");
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> deployment().deploy(site));
+        assertTrue(e.getMessage().contains("build failed"), e.getMessage());
+    }
+
+    @Test
+    public void rejectedUploadIsAnError() throws IOException {
+        Files.write(site.resolve("index.html"), "x".getBytes(StandardCharsets.UTF_8));
+        ZipDeployment deployment = new ZipDeployment("http://localhost:" + kudu.getAddress().getPort(),
+                USER, "wrong", pipeline);
+
+        HttpResponseException e = assertThrows(HttpResponseException.class, () -> deployment.deploy(site));
+        assertEquals(401, e.getResponse().getStatusCode());
+    }
+
+    @Test
+    public void archiveIsReadOffTheCallerThread() throws IOException {
+        Files.write(site.resolve("index.html"), "x".getBytes(StandardCharsets.UTF_8));
+
+        String reader = ZipDeployment.zip(site).map(buffer -> Thread.currentThread().getName()).blockFirst();
+
+        assertTrue(reader.startsWith("boundedElastic"), reader);
+    }
+
+    private ZipDeployment deployment() {
+        return new ZipDeployment("http://localhost:" + kudu.getAddress().getPort(), USER, PASSWORD, pipeline)
+                .withPollInterval(Duration.ofMillis(10))
+                .withTimeout(Duration.ofSeconds(10));
+    }
+
+    private void zipDeploy(HttpExchange exchange) throws IOException {
+        String expected = "Basic " + Base64.getEncoder()
+                .encodeToString((USER + ":" + PASSWORD).getBytes(StandardCharsets.UTF_8));
+        if (!expected.equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+            drain(exchange.getRequestBody());
+            respond(exchange, 401, "unauthorized");
+            return;
+        }
+        try (ZipInputStream zip = new ZipInputStream(exchange.getRequestBody())) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                received.put(entry.getName(), new String(drain(zip), StandardCharsets.ISO_8859_1));
+            }
+        }
+        exchange.getResponseHeaders().set("Location",
+                "http://localhost:" + kudu.getAddress().getPort() + "/api/deployments/latest");
+        respond(exchange, 202, "");
+    }
+
+    private void deploymentStatus(HttpExchange exchange) throws IOException {
+        if (polls.incrementAndGet() == 1) {
+            respond(exchange, 202, "");
+            return;
+        }
+        String status = statuses.size() > 1 ? statuses.poll() : statuses.peek();
+        respond(exchange, 200, status);
+    }
+
+    private static byte[] drain(InputStream input) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        int read;
+        while ((read = input.read(chunk)) > 0) {
+            buffer.write(chunk, 0, read);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static void respond(HttpExchange exchange, int code, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(code, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+}